@@ -2,18 +2,18 @@ package com.buddy.ui.assistant;
 
 import dev.langchain4j.service.SystemMessage;
 import dev.langchain4j.service.UserMessage;
-import dev.langchain4j.service.spring.AiService;
 
 /**
  * AI Assistant interface for Buddy Service
  * This interface defines the contract for AI interactions with RAG and Agent capabilities
+ * Used for the FULL_AGENT route; built in LangChain4jConfig together with the slimmer route assistants
  */
-@AiService
 public interface BuddyAssistant {
     
     /**
      * Generates a response to user input
      * System automatically decides whether to use RAG or Agent based on query intent
+     * The conversation is the session of the current chat turn (ChatTurnContext)
      * 
      * @param userMessage The user's message
      * @return AI's response
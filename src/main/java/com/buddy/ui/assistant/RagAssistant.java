@@ -0,0 +1,22 @@
+package com.buddy.ui.assistant;
+
+import com.buddy.ui.config.AiConfig;
+import dev.langchain4j.service.SystemMessage;
+import dev.langchain4j.service.UserMessage;
+
+/**
+ * Slim assistant for question answering and small talk
+ * Carries no tool specifications; retrieval is decided per turn by the router
+ */
+public interface RagAssistant {
+    
+    /**
+     * Generates an answer based on retrieved context (if any)
+     * The conversation is the session of the current chat turn (ChatTurnContext)
+     * 
+     * @param userMessage The user's message
+     * @return AI's response
+     */
+    @SystemMessage(AiConfig.SYSTEM_PROMPT)
+    String chat(@UserMessage String userMessage);
+}
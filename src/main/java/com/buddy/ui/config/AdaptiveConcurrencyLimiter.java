@@ -0,0 +1,332 @@
+package com.buddy.ui.config;
+
+import com.buddy.ui.service.ChatTurnCancelledException;
+import com.buddy.ui.service.ChatTurnContext;
+import com.buddy.ui.service.DeadlineExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control for outbound LLM calls
+ * - Adaptive limit (gradient): the limit shrinks when the latency of recent calls rises above the long-term
+ *   average and grows by ~sqrt(limit) while latency stays flat, so the gateway is kept just below saturation
+ * - Calls above the limit wait in a bounded queue, served round-robin per user so one user's burst
+ *   cannot starve the others
+ * - A full queue (or per-user queue) rejects immediately with LlmOverloadedException
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double LONG_RTT_WINDOW = 600;
+    private static final double RTT_TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final int maxQueuePerUser;
+    private final long maxWaitNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Users with waiting calls, in round-robin order; each user's calls are served FIFO
+    private final Map<String, Deque<Waiter>> queues = new HashMap<>();
+    private final Deque<String> userOrder = new ArrayDeque<>();
+    private int queued;
+    private int inFlight;
+    private double limit;
+    private double longRttNanos;
+
+    private final Counter rejected;
+    private final Counter timedOut;
+
+    public AdaptiveConcurrencyLimiter(String name, boolean enabled, int initialLimit, int minLimit, int maxLimit,
+                                      int maxQueue, int maxQueuePerUser, Duration maxWait,
+                                      MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueue = maxQueue;
+        this.maxQueuePerUser = maxQueuePerUser;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.limit = initialLimit;
+        Gauge.builder("llm.limiter.limit", this, limiter -> limiter.limit)
+                .description("Current adaptive concurrency limit")
+                .tag("limiter", name)
+                .register(meterRegistry);
+        Gauge.builder("llm.limiter.inflight", this, limiter -> limiter.inFlight)
+                .tag("limiter", name)
+                .register(meterRegistry);
+        Gauge.builder("llm.limiter.queued", this, limiter -> limiter.queued)
+                .tag("limiter", name)
+                .register(meterRegistry);
+        this.rejected = Counter.builder("llm.limiter.rejected")
+                .description("Calls rejected because the wait queue was full")
+                .tag("limiter", name)
+                .register(meterRegistry);
+        this.timedOut = Counter.builder("llm.limiter.timeouts")
+                .description("Calls that gave up waiting for a slot")
+                .tag("limiter", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Wait for a slot, blocking the caller at most maxWait
+     */
+    public Permit acquire(String userId) {
+        return acquire(userId, null);
+    }
+
+    /**
+     * Wait for a slot at most min(maxWait, timeout); a null timeout means maxWait
+     * A wait ended by the timeout (the turn's remaining budget) rather than maxWait fails with
+     * DeadlineExceededException; cancelling the current chat turn leaves the queue at once
+     */
+    public Permit acquire(String userId, Duration timeout) {
+        CompletableFuture<Permit> slot = enqueue(userId);
+        // A cancelled slot leaves the queue through the removal callback registered in enqueue
+        ChatTurnContext.current().ifPresent(turn -> turn.track(slot));
+        boolean deadlineBound = timeout != null && timeout.toNanos() < maxWaitNanos;
+        long waitNanos = deadlineBound ? timeout.toNanos() : maxWaitNanos;
+        try {
+            return slot.get(waitNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw giveUp(slot, deadlineBound);
+        } catch (CancellationException e) {
+            throw new ChatTurnCancelledException("Chat turn cancelled while waiting for LLM capacity");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw giveUp(slot, false);
+        } catch (ExecutionException e) {
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    /**
+     * Slot for a non-blocking call; the future completes when the call may start,
+     * or fails with LlmOverloadedException when the queue is full or the wait exceeds maxWait
+     */
+    public CompletableFuture<Permit> acquireAsync(String userId) {
+        CompletableFuture<Permit> slot;
+        try {
+            slot = enqueue(userId);
+        } catch (LlmOverloadedException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (slot.isDone()) {
+            return slot;
+        }
+        // A timed-out waiter leaves the queue through the removal callback registered in enqueue
+        return slot.orTimeout(maxWaitNanos, TimeUnit.NANOSECONDS).exceptionallyCompose(error -> {
+            if (error instanceof TimeoutException) {
+                timedOut.increment();
+                return CompletableFuture.failedFuture(
+                        new LlmOverloadedException("Timed out waiting for LLM capacity", retryAfterSeconds()));
+            }
+            return CompletableFuture.failedFuture(error);
+        });
+    }
+
+    private CompletableFuture<Permit> enqueue(String userId) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(new Permit(System.nanoTime(), false));
+        }
+        lock.lock();
+        try {
+            if (inFlight < (int) limit && queued == 0) {
+                inFlight++;
+                return CompletableFuture.completedFuture(new Permit(System.nanoTime(), true));
+            }
+            Deque<Waiter> userQueue = queues.get(userId);
+            if (queued >= maxQueue || (userQueue != null && userQueue.size() >= maxQueuePerUser)) {
+                rejected.increment();
+                throw new LlmOverloadedException("LLM capacity exhausted, " + queued + " calls waiting",
+                        retryAfterSeconds());
+            }
+            if (userQueue == null) {
+                userQueue = new ArrayDeque<>();
+                queues.put(userId, userQueue);
+                userOrder.addLast(userId);
+            }
+            Waiter waiter = new Waiter(userId);
+            userQueue.addLast(waiter);
+            queued++;
+            waiter.slot.whenComplete((permit, error) -> {
+                if (error != null) {
+                    remove(waiter);
+                }
+            });
+            return waiter.slot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private RuntimeException giveUp(CompletableFuture<Permit> slot, boolean deadlineBound) {
+        if (!slot.cancel(false)) {
+            // Granted while we were giving up, hand the slot back
+            slot.join().free(null);
+        }
+        if (deadlineBound) {
+            // Out of time, not out of capacity: no retry-after, the turn falls back instead
+            return new DeadlineExceededException("Chat turn deadline reached while waiting for LLM capacity");
+        }
+        timedOut.increment();
+        return new LlmOverloadedException("Timed out waiting for LLM capacity", retryAfterSeconds());
+    }
+
+    private void remove(Waiter waiter) {
+        lock.lock();
+        try {
+            Deque<Waiter> userQueue = queues.get(waiter.userId);
+            if (userQueue != null && userQueue.remove(waiter)) {
+                queued--;
+                if (userQueue.isEmpty()) {
+                    queues.remove(waiter.userId);
+                    userOrder.remove(waiter.userId);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take free slots for waiting calls, one user at a time in round-robin order; call with the lock held
+     * The waiters are completed by grant() after the lock is released, since completing runs their callbacks
+     */
+    private List<Waiter> dispatch() {
+        List<Waiter> granted = new ArrayList<>();
+        while (inFlight < (int) limit && !userOrder.isEmpty()) {
+            String userId = userOrder.pollFirst();
+            Deque<Waiter> userQueue = queues.get(userId);
+            granted.add(userQueue.pollFirst());
+            queued--;
+            if (userQueue.isEmpty()) {
+                queues.remove(userId);
+            } else {
+                userOrder.addLast(userId);
+            }
+            inFlight++;
+        }
+        return granted;
+    }
+
+    private void grant(List<Waiter> granted) {
+        for (Waiter waiter : granted) {
+            Permit permit = new Permit(System.nanoTime(), true);
+            if (!waiter.slot.complete(permit)) {
+                // Cancelled concurrently, the slot is free again
+                permit.free(null);
+            }
+        }
+    }
+
+    /**
+     * Gradient update: shrink towards longRtt/rtt when latency rises, grow by the queue allowance otherwise
+     */
+    private void onSample(long rttNanos, boolean success) {
+        if (!success) {
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            return;
+        }
+        longRttNanos = longRttNanos == 0
+                ? rttNanos
+                : longRttNanos + (rttNanos - longRttNanos) / LONG_RTT_WINDOW;
+        if (longRttNanos > 2 * rttNanos) {
+            // Latency dropped for good (e.g. a replica was added), let the baseline catch up faster
+            longRttNanos *= 0.95;
+        }
+        if (inFlight + 1 < limit / 2) {
+            // Not using the current limit, the latency says nothing about a higher one
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * longRttNanos / rttNanos));
+        double target = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + target * SMOOTHING));
+    }
+
+    /**
+     * Rough time until the queue drains at the current limit and latency
+     */
+    private long retryAfterSeconds() {
+        // Read without the lock, an estimate is all that is needed
+        double rttSeconds = longRttNanos / 1e9;
+        return Math.max(1, (long) Math.ceil((queued / Math.max(1, limit) + 1) * rttSeconds));
+    }
+
+    private static final class Waiter {
+
+        private final String userId;
+        private final CompletableFuture<Permit> slot = new CompletableFuture<>();
+
+        private Waiter(String userId) {
+            this.userId = userId;
+        }
+    }
+
+    /**
+     * One admitted call; release it exactly once when the call ends
+     */
+    public final class Permit {
+
+        private final long start;
+        private final boolean counted;
+        private boolean released;
+
+        private Permit(long start, boolean counted) {
+            this.start = start;
+            this.counted = counted;
+        }
+
+        /**
+         * @param success false for timeouts and server errors, which back the limit off
+         */
+        public void release(boolean success) {
+            free(success);
+        }
+
+        /**
+         * Release without a latency sample: the call was never sent, or was cut short by the caller
+         */
+        public void cancel() {
+            free(null);
+        }
+
+        private void free(Boolean success) {
+            if (!counted || released) {
+                return;
+            }
+            released = true;
+            List<Waiter> granted;
+            lock.lock();
+            try {
+                inFlight--;
+                if (success != null) {
+                    onSample(System.nanoTime() - start, success);
+                }
+                granted = dispatch();
+            } finally {
+                lock.unlock();
+            }
+            grant(granted);
+        }
+    }
+}
@@ -1,23 +1,13 @@
 package com.buddy.ui.config;
 
 import jakarta.annotation.PostConstruct;
-import org.apache.hc.client5.http.config.RequestConfig;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
-import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
-import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
-import org.apache.hc.client5.http.ssl.NoopHostnameVerifier;
-import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactory;
-import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactoryBuilder;
-import org.apache.hc.core5.util.Timeout;
-import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
-import org.springframework.web.client.RestTemplate;
 
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
 import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
+import javax.net.ssl.X509ExtendedTrustManager;
+import java.net.Socket;
 import java.security.cert.X509Certificate;
 
 @Configuration
@@ -71,15 +61,26 @@ public class AiConfig {
             // Disable SSL verification at JVM level (equivalent to verify=False in Python)
             // This is acceptable for internal/local services
             sslContext = SSLContext.getInstance("TLS");
+            // An extended trust manager: the JDK wraps a plain X509TrustManager in one that still checks
+            // the hostname, which the JDK HttpClient always asks for; this one skips it, like the
+            // NoopHostnameVerifier of the Apache clients
             TrustManager[] trustAllCerts = new TrustManager[]{
-                new X509TrustManager() {
+                new X509ExtendedTrustManager() {
                     public X509Certificate[] getAcceptedIssuers() {
-                        return null;
+                        return new X509Certificate[0];
                     }
                     public void checkClientTrusted(X509Certificate[] certs, String authType) {
                     }
                     public void checkServerTrusted(X509Certificate[] certs, String authType) {
                     }
+                    public void checkClientTrusted(X509Certificate[] certs, String authType, Socket socket) {
+                    }
+                    public void checkServerTrusted(X509Certificate[] certs, String authType, Socket socket) {
+                    }
+                    public void checkClientTrusted(X509Certificate[] certs, String authType, SSLEngine engine) {
+                    }
+                    public void checkServerTrusted(X509Certificate[] certs, String authType, SSLEngine engine) {
+                    }
                 }
             };
             sslContext.init(null, trustAllCerts, new java.security.SecureRandom());
@@ -99,48 +100,14 @@ public class AiConfig {
         }
     }
     
-    @Bean
-    public RestTemplate restTemplate() {
-        try {
-            // Ensure SSL context is initialized
-            if (sslContext == null) {
-                init();
-            }
-            
-            // Configure request timeout (60 seconds, equivalent to timeout=60.0 in Python)
-            RequestConfig requestConfig = RequestConfig.custom()
-                    .setConnectionRequestTimeout(Timeout.ofSeconds(60))
-                    .setResponseTimeout(Timeout.ofSeconds(60))
-                    .setConnectTimeout(Timeout.ofSeconds(60))
-                    .build();
-            
-            // Build SSL connection socket factory (HttpClient 5 way)
-            SSLConnectionSocketFactory sslSocketFactory = SSLConnectionSocketFactoryBuilder.create()
-                    .setSslContext(sslContext)
-                    .setHostnameVerifier(NoopHostnameVerifier.INSTANCE)
-                    .build();
-            
-            // Build connection manager with SSL socket factory
-            PoolingHttpClientConnectionManager connectionManager = 
-                    PoolingHttpClientConnectionManagerBuilder.create()
-                            .setSSLSocketFactory(sslSocketFactory)
-                            .build();
-            
-            // Build HttpClient with SSL verification disabled and timeout
-            CloseableHttpClient httpClient = HttpClients.custom()
-                    .setConnectionManager(connectionManager)
-                    .setDefaultRequestConfig(requestConfig)
-                    .build();
-            
-            // Create RestTemplate with HttpClient
-            HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory(httpClient);
-            return new RestTemplate(factory);
-            
-        } catch (Exception e) {
-            // Fallback to default RestTemplate if setup fails
-            System.err.println("Failed to configure RestTemplate: " + e.getMessage());
-            e.printStackTrace();
-            return new RestTemplate();
+    /**
+     * Trust-all SSL context shared by the outbound HTTP clients (see OutboundHttpConfig)
+     * Neither certificates nor hostnames are verified, on both the Apache and the JDK transports
+     */
+    public SSLContext getSslContext() {
+        if (sslContext == null) {
+            init();
         }
+        return sslContext;
     }
 }
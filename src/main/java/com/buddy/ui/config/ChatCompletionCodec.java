@@ -0,0 +1,394 @@
+package com.buddy.ui.config;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolParameters;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Streaming JSON codec for the OpenAI-compatible /chat/completions API
+ * Requests are written with a JsonGenerator straight into pooled buffers (no intermediate Maps),
+ * tool schemas are serialized once per ToolSpecification and spliced in as raw JSON,
+ * and responses are read with a JsonParser, picking only the fields the model needs.
+ * Field order is fixed so identical prompts produce byte-identical requests (gateway prefix cache).
+ */
+public class ChatCompletionCodec {
+
+    private static final int MAX_POOLED_BUFFERS = 32;
+    private static final int MAX_POOLED_BUFFER_SIZE = 256 * 1024;
+    private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+
+    private final ObjectMapper objectMapper;
+    private final String model;
+    private final double temperature;
+    private final int maxTokens;
+    private final double topP;
+    private final double frequencyPenalty;
+    private final double presencePenalty;
+    private final int seed;
+    private final String username;
+    private final String password;
+
+    // Tool specifications come from @Tool methods, so this set is small and fixed
+    private final Map<ToolSpecification, String> toolSchemaCache = new ConcurrentHashMap<>();
+    private final Queue<RequestBuffer> bufferPool = new ConcurrentLinkedQueue<>();
+
+    public ChatCompletionCodec(ObjectMapper objectMapper, String model,
+                               double temperature, int maxTokens, double topP,
+                               double frequencyPenalty, double presencePenalty, int seed,
+                               String username, String password) {
+        this.objectMapper = objectMapper;
+        this.model = model;
+        this.temperature = temperature;
+        this.maxTokens = maxTokens;
+        this.topP = topP;
+        this.frequencyPenalty = frequencyPenalty;
+        this.presencePenalty = presencePenalty;
+        this.seed = seed;
+        this.username = username;
+        this.password = password;
+    }
+
+    /**
+     * Encode a request body into a pooled buffer; hand it back with release() once it has been sent
+     */
+    public RequestBuffer encodeRequest(List<ChatMessage> messages, List<ToolSpecification> toolSpecifications) {
+        return encodeRequest(messages, toolSpecifications, maxTokens);
+    }
+
+    /**
+     * Encode with a lower max_tokens (e.g. when the turn's deadline is close)
+     * max_tokens comes after the messages, so the cacheable prefix is unchanged
+     */
+    public RequestBuffer encodeRequest(List<ChatMessage> messages, List<ToolSpecification> toolSpecifications,
+                                       int maxTokens) {
+        RequestBuffer buffer = bufferPool.poll();
+        if (buffer == null) {
+            buffer = new RequestBuffer();
+        }
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer)) {
+            generator.writeStartObject();
+            generator.writeStringField("model", model);
+            writeTools(generator, toolSpecifications);
+            generator.writeArrayFieldStart("messages");
+            for (ChatMessage message : messages) {
+                writeMessage(generator, message);
+            }
+            generator.writeEndArray();
+            generator.writeNumberField("temperature", temperature);
+            generator.writeNumberField("max_tokens", maxTokens);
+            generator.writeNumberField("top_p", topP);
+            generator.writeNumberField("frequency_penalty", frequencyPenalty);
+            generator.writeNumberField("presence_penalty", presencePenalty);
+            generator.writeNumberField("seed", seed);
+            generator.writeObjectFieldStart("metadata");
+            generator.writeStringField("username", username);
+            generator.writeStringField("pwd", password);
+            generator.writeEndObject();
+            generator.writeEndObject();
+        } catch (IOException e) {
+            release(buffer);
+            throw new UncheckedIOException("Failed to encode chat completion request", e);
+        }
+        return buffer;
+    }
+
+    /**
+     * Return a buffer obtained from encodeRequest to the pool
+     */
+    public void release(RequestBuffer buffer) {
+        if (buffer.size() > MAX_POOLED_BUFFER_SIZE || bufferPool.size() >= MAX_POOLED_BUFFERS) {
+            return;
+        }
+        buffer.reset();
+        bufferPool.offer(buffer);
+    }
+
+    private void writeTools(JsonGenerator generator, List<ToolSpecification> toolSpecifications) throws IOException {
+        if (toolSpecifications == null || toolSpecifications.isEmpty()) {
+            return;
+        }
+        List<ToolSpecification> sorted = new ArrayList<>(toolSpecifications);
+        sorted.sort(Comparator.comparing(ToolSpecification::name));
+
+        generator.writeArrayFieldStart("tools");
+        for (ToolSpecification spec : sorted) {
+            generator.writeRawValue(toolSchemaCache.computeIfAbsent(spec, this::serializeTool));
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * Serialize one tool in the OpenAI tools format
+     * Schema properties are sorted by key so the fragment is stable regardless of map implementation
+     */
+    private String serializeTool(ToolSpecification spec) {
+        Map<String, Object> function = new LinkedHashMap<>();
+        function.put("name", spec.name());
+        function.put("description", spec.description() != null ? spec.description() : "");
+
+        // ToolParameters.properties() returns Map<String, Map<String, Object>>, required() returns List<String>
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        ToolParameters toolParams = spec.parameters();
+        parameters.put("type", toolParams != null && toolParams.type() != null ? toolParams.type() : "object");
+        parameters.put("properties", toolParams != null && toolParams.properties() != null
+                ? canonical(toolParams.properties())
+                : new TreeMap<>());
+        parameters.put("required", toolParams != null && toolParams.required() != null
+                ? toolParams.required()
+                : new ArrayList<>());
+        function.put("parameters", parameters);
+
+        Map<String, Object> tool = new LinkedHashMap<>();
+        tool.put("type", "function");
+        tool.put("function", function);
+        try {
+            return objectMapper.writeValueAsString(tool);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to serialize tool " + spec.name(), e);
+        }
+    }
+
+    /**
+     * Recursively copy a JSON schema map into sorted maps
+     */
+    private Map<String, Object> canonical(Map<String, ?> map) {
+        Map<String, Object> sorted = new TreeMap<>();
+        for (Map.Entry<String, ?> entry : map.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof Map<?, ?> nested) {
+                @SuppressWarnings("unchecked")
+                Map<String, ?> nestedMap = (Map<String, ?>) nested;
+                value = canonical(nestedMap);
+            }
+            sorted.put(entry.getKey(), value);
+        }
+        return sorted;
+    }
+
+    private void writeMessage(JsonGenerator generator, ChatMessage message) throws IOException {
+        generator.writeStartObject();
+        if (message instanceof UserMessage userMessage) {
+            generator.writeStringField("role", "user");
+            generator.writeStringField("content", userMessage.singleText());
+        } else if (message instanceof AiMessage aiMessage) {
+            generator.writeStringField("role", "assistant");
+            if (aiMessage.toolExecutionRequests() != null && !aiMessage.toolExecutionRequests().isEmpty()) {
+                // Content might be null when there are tool calls
+                String content = aiMessage.text();
+                generator.writeStringField("content", content != null && !content.isEmpty() ? content : null);
+                generator.writeArrayFieldStart("tool_calls");
+                for (ToolExecutionRequest toolRequest : aiMessage.toolExecutionRequests()) {
+                    generator.writeStartObject();
+                    generator.writeStringField("id", toolRequest.id());
+                    generator.writeStringField("type", "function");
+                    generator.writeObjectFieldStart("function");
+                    generator.writeStringField("name", toolRequest.name());
+                    generator.writeStringField("arguments", toolRequest.arguments());
+                    generator.writeEndObject();
+                    generator.writeEndObject();
+                }
+                generator.writeEndArray();
+            } else {
+                generator.writeStringField("content", aiMessage.text());
+            }
+        } else if (message instanceof SystemMessage systemMessage) {
+            generator.writeStringField("role", "system");
+            generator.writeStringField("content", systemMessage.text());
+        } else if (message instanceof ToolExecutionResultMessage toolMessage) {
+            generator.writeStringField("role", "tool");
+            generator.writeStringField("tool_call_id", toolMessage.id());
+            generator.writeStringField("content", toolMessage.text());
+        } else {
+            generator.writeStringField("role", "system");
+            generator.writeStringField("content", message.toString());
+        }
+        generator.writeEndObject();
+    }
+
+    public ChatCompletion decodeResponse(byte[] body) {
+        try {
+            return decodeResponse(new ByteArrayInputStream(body));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to parse chat completion response", e);
+        }
+    }
+
+    /**
+     * Read the first choice's message and the usage block, skipping everything else
+     */
+    public ChatCompletion decodeResponse(InputStream body) throws IOException {
+        ChatCompletion.Builder result = new ChatCompletion.Builder();
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Chat completion response is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("choices".equals(field) && value == JsonToken.START_ARRAY) {
+                    readChoices(parser, result);
+                } else if ("usage".equals(field) && value == JsonToken.START_OBJECT) {
+                    readUsage(parser, result);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return result.build();
+    }
+
+    private void readChoices(JsonParser parser, ChatCompletion.Builder result) throws IOException {
+        boolean first = true;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (!first || parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            first = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("message".equals(field) && value == JsonToken.START_OBJECT) {
+                    readMessage(parser, result);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    private void readMessage(JsonParser parser, ChatCompletion.Builder result) throws IOException {
+        result.hasMessage = true;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("content".equals(field) && value != JsonToken.VALUE_NULL) {
+                result.content = value.isScalarValue() ? parser.getText() : parser.readValueAsTree().toString();
+            } else if ("tool_calls".equals(field) && value == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    result.toolCalls.add(readToolCall(parser));
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private ToolExecutionRequest readToolCall(JsonParser parser) throws IOException {
+        ToolExecutionRequest.Builder toolCall = ToolExecutionRequest.builder();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("id".equals(field)) {
+                toolCall.id(parser.getText());
+            } else if ("function".equals(field) && value == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String functionField = parser.currentName();
+                    JsonToken functionValue = parser.nextToken();
+                    if ("name".equals(functionField)) {
+                        toolCall.name(parser.getText());
+                    } else if ("arguments".equals(functionField)) {
+                        // Some gateways send arguments as an object instead of a JSON string
+                        toolCall.arguments(functionValue.isScalarValue()
+                                ? parser.getText()
+                                : parser.readValueAsTree().toString());
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return toolCall.build();
+    }
+
+    private void readUsage(JsonParser parser, ChatCompletion.Builder result) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "prompt_tokens" -> result.promptTokens = parser.getValueAsInt();
+                case "completion_tokens" -> result.completionTokens = parser.getValueAsInt();
+                case "total_tokens" -> result.totalTokens = parser.getValueAsInt();
+                case "prompt_tokens_details" -> {
+                    if (value != JsonToken.START_OBJECT) {
+                        parser.skipChildren();
+                        break;
+                    }
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String detail = parser.currentName();
+                        parser.nextToken();
+                        if ("cached_tokens".equals(detail)) {
+                            result.cachedPromptTokens = parser.getValueAsInt(-1);
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Growable request buffer that exposes its backing array, so the body can be sent without a copy
+     */
+    public static final class RequestBuffer extends ByteArrayOutputStream {
+
+        private RequestBuffer() {
+            super(INITIAL_BUFFER_SIZE);
+        }
+
+        public byte[] array() {
+            return buf;
+        }
+    }
+
+    /**
+     * Decoded chat completion: first choice plus usage
+     * cachedPromptTokens is -1 when the gateway does not report prefix cache hits
+     */
+    public record ChatCompletion(boolean hasMessage, String content, List<ToolExecutionRequest> toolCalls,
+                                 int promptTokens, int completionTokens, int totalTokens, int cachedPromptTokens) {
+
+        private static final class Builder {
+            private boolean hasMessage;
+            private String content;
+            private final List<ToolExecutionRequest> toolCalls = new ArrayList<>();
+            private int promptTokens;
+            private int completionTokens;
+            private int totalTokens = -1;
+            private int cachedPromptTokens = -1;
+
+            private ChatCompletion build() {
+                return new ChatCompletion(hasMessage, content, toolCalls, promptTokens, completionTokens,
+                        totalTokens >= 0 ? totalTokens : promptTokens + completionTokens, cachedPromptTokens);
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.buddy.ui.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executor for chat turns served asynchronously by ChatController
+ * Turns mostly wait on the LLM gateway, so each runs on its own virtual thread; the number of
+ * concurrent LLM calls is bounded by the adaptive concurrency limiter, not by this executor
+ */
+@Configuration
+public class ChatExecutionConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService chatTurnExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("chat-turn-", 0).factory());
+    }
+}
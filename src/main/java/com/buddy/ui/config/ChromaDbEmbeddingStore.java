@@ -1,7 +1,8 @@
 package com.buddy.ui.config;
 
+import com.buddy.ui.service.ChatTurnCancelledException;
 import com.buddy.ui.service.ChromaDbService;
-import com.buddy.ui.service.EmbeddingService;
+import com.buddy.ui.service.DeadlineExceededException;
 import dev.langchain4j.data.document.Metadata;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
@@ -27,7 +28,6 @@ import java.util.stream.Collectors;
 public class ChromaDbEmbeddingStore implements EmbeddingStore<TextSegment> {
     
     private final ChromaDbService chromaDbService;
-    private final EmbeddingService embeddingService;
     
     @Override
     public String add(Embedding embedding) {
@@ -122,26 +122,22 @@ public class ChromaDbEmbeddingStore implements EmbeddingStore<TextSegment> {
                         metadata.add("id", id);
                         TextSegment segment = new TextSegment(text, metadata);
                         
-                        // Generate embedding for the segment
-                        // Note: In a real implementation, you'd store the embedding with the segment
-                        List<Float> embeddingFloats = embeddingService.generateEmbedding(text);
-                        float[] segmentEmbeddingArray = new float[embeddingFloats.size()];
-                        for (int i = 0; i < embeddingFloats.size(); i++) {
-                            segmentEmbeddingArray[i] = embeddingFloats.get(i);
-                        }
-                        Embedding embedding = new Embedding(segmentEmbeddingArray);
-                        
                         // Convert distance to score (ChromaDB uses distance, LangChain4j uses score)
                         // Lower distance = higher score
                         // Normalize score to 0-1 range
                         double score = 1.0 / (1.0 + distance);
                         
-                        return new EmbeddingMatch<>(score, id, embedding, segment);
+                        // No segment embedding: the content retriever only reads score and segment, and
+                        // embedding each match again would cost one call per chunk on every turn
+                        return new EmbeddingMatch<>(score, id, null, segment);
                     })
                     .collect(Collectors.toList());
             
             return new EmbeddingSearchResult<>(matches);
             
+        } catch (DeadlineExceededException | ChatTurnCancelledException e) {
+            // Out of time, not a ChromaDB failure: the turn falls back on what it has
+            throw e;
         } catch (Exception e) {
             log.error("Error searching ChromaDB", e);
             return new EmbeddingSearchResult<>(List.of());
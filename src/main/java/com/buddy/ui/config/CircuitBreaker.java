@@ -0,0 +1,128 @@
+package com.buddy.ui.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+
+/**
+ * Circuit breaker over a sliding window of the last windowSize call outcomes
+ * - CLOSED: calls pass; once minimumCalls are recorded and the failure rate reaches the threshold, it opens
+ * - OPEN: calls are rejected with LlmUnavailableException until openDuration has passed
+ * - HALF_OPEN: a single trial call is let through; success closes the breaker, failure opens it again
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final boolean[] outcomes;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int recorded;
+    private int next;
+    private int failures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    private final Counter rejected;
+
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, double failureRateThreshold,
+                          Duration openDuration, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.outcomes = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = openDuration.toNanos();
+        Gauge.builder("llm.circuit.state", this, breaker -> breaker.getState().ordinal())
+                .description("Circuit breaker state (0 closed, 1 open, 2 half-open)")
+                .tag("breaker", name)
+                .register(meterRegistry);
+        this.rejected = Counter.builder("llm.circuit.rejected")
+                .description("Calls rejected while the circuit was open")
+                .tag("breaker", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ask to make a call; every permitted call must be followed by onSuccess or onFailure
+     */
+    public synchronized void acquirePermission() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.OPEN || (state == State.HALF_OPEN && trialInFlight)) {
+            rejected.increment();
+            throw new LlmUnavailableException("Circuit " + name + " is " + state.name().toLowerCase());
+        }
+        if (state == State.HALF_OPEN) {
+            trialInFlight = true;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            transition(State.CLOSED);
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            transition(State.OPEN);
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && recorded >= minimumCalls
+                && (double) failures / recorded >= failureRateThreshold) {
+            transition(State.OPEN);
+        }
+    }
+
+    /**
+     * Release a permission without an outcome (e.g. the call was rejected before it was sent)
+     */
+    public synchronized void onIgnored() {
+        trialInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (recorded == outcomes.length) {
+            if (outcomes[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        outcomes[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % outcomes.length;
+    }
+
+    private void transition(State target) {
+        log.warn("Circuit {} {} -> {} (failures {}/{})", name, state, target, failures, recorded);
+        state = target;
+        trialInFlight = false;
+        if (target == State.OPEN) {
+            openedAt = System.nanoTime();
+        }
+        if (target == State.CLOSED) {
+            recorded = 0;
+            next = 0;
+            failures = 0;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.buddy.ui.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Circuit breaker around the LLM gateway (spring.ai.circuit-breaker.*)
+ */
+@Configuration
+@Slf4j
+public class CircuitBreakerConfig {
+
+    @Value("${spring.ai.circuit-breaker.window-size:20}")
+    private int windowSize;
+
+    @Value("${spring.ai.circuit-breaker.minimum-calls:10}")
+    private int minimumCalls;
+
+    @Value("${spring.ai.circuit-breaker.failure-rate-threshold:0.5}")
+    private double failureRateThreshold;
+
+    @Value("${spring.ai.circuit-breaker.open-duration:30s}")
+    private Duration openDuration;
+
+    @Bean
+    public CircuitBreaker llmCircuitBreaker(MeterRegistry meterRegistry) {
+        log.info("LLM circuit breaker: opens at {}% failures over the last {} calls (min {}), stays open {}",
+                Math.round(failureRateThreshold * 100), windowSize, minimumCalls, openDuration);
+        return new CircuitBreaker("llm", windowSize, minimumCalls, failureRateThreshold, openDuration, meterRegistry);
+    }
+}
@@ -0,0 +1,89 @@
+package com.buddy.ui.config;
+
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * HttpTransport on top of a pooled RestTemplate (Apache HttpClient 5 classic)
+ * Async calls run the blocking exchange on the given executor
+ * Per-call timeouts reach the HttpClient through callContext(), which the RestTemplate's request
+ * factory must be configured with (see OutboundHttpConfig)
+ */
+public class ClassicHttpTransport implements HttpTransport {
+    
+    // Timeout of the exchange running on this thread, read by the request factory's context factory
+    private static final ThreadLocal<Duration> CALL_TIMEOUT = new ThreadLocal<>();
+    
+    private final RestTemplate restTemplate;
+    private final Executor executor;
+    
+    public ClassicHttpTransport(RestTemplate restTemplate, Executor executor) {
+        this.restTemplate = restTemplate;
+        this.executor = executor;
+    }
+    
+    @Override
+    public byte[] post(String url, HttpHeaders headers, byte[] body, int length, Duration timeout) {
+        CALL_TIMEOUT.set(timeout);
+        try {
+            return restTemplate.execute(url, HttpMethod.POST,
+                    request -> {
+                        request.getHeaders().putAll(headers);
+                        request.getHeaders().setContentLength(length);
+                        if (request instanceof StreamingHttpOutputMessage streaming) {
+                            streaming.setBody(out -> out.write(body, 0, length));
+                        } else {
+                            request.getBody().write(body, 0, length);
+                        }
+                    },
+                    response -> response.getBody().readAllBytes());
+        } catch (RestClientResponseException e) {
+            throw new HttpTransportException("POST " + url + " failed with status " + e.getStatusCode().value(),
+                    e.getStatusCode().value(), e.getResponseBodyAsString(), e);
+        } catch (RestClientException e) {
+            throw new HttpTransportException("POST " + url + " failed: " + e.getMessage(), 0, null, e);
+        } finally {
+            CALL_TIMEOUT.remove();
+        }
+    }
+    
+    @Override
+    public CompletableFuture<byte[]> postAsync(String url, HttpHeaders headers, byte[] body, int length,
+                                               Duration timeout) {
+        return CompletableFuture.supplyAsync(() -> post(url, headers, body, length, timeout), executor);
+    }
+    
+    /**
+     * HttpContext carrying the defaults with the response and pool-wait timeouts capped by the current
+     * call's timeout, or null (factory defaults) when the call has none
+     */
+    static HttpContext callContext(RequestConfig defaults) {
+        Duration timeout = CALL_TIMEOUT.get();
+        if (timeout == null) {
+            return null;
+        }
+        Timeout cap = Timeout.of(timeout);
+        HttpClientContext context = HttpClientContext.create();
+        context.setRequestConfig(RequestConfig.copy(defaults)
+                .setResponseTimeout(min(defaults.getResponseTimeout(), cap))
+                .setConnectionRequestTimeout(min(defaults.getConnectionRequestTimeout(), cap))
+                .build());
+        return context;
+    }
+    
+    private static Timeout min(Timeout configured, Timeout cap) {
+        return configured == null || configured.toMilliseconds() > cap.toMilliseconds() ? cap : configured;
+    }
+}
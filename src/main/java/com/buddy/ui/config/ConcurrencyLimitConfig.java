@@ -0,0 +1,46 @@
+package com.buddy.ui.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Admission control in front of the LLM gateway (spring.ai.concurrency-limit.*)
+ */
+@Configuration
+@Slf4j
+public class ConcurrencyLimitConfig {
+
+    @Value("${spring.ai.concurrency-limit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${spring.ai.concurrency-limit.initial-limit:10}")
+    private int initialLimit;
+
+    @Value("${spring.ai.concurrency-limit.min-limit:2}")
+    private int minLimit;
+
+    @Value("${spring.ai.concurrency-limit.max-limit:64}")
+    private int maxLimit;
+
+    @Value("${spring.ai.concurrency-limit.max-queue:100}")
+    private int maxQueue;
+
+    @Value("${spring.ai.concurrency-limit.max-queue-per-user:3}")
+    private int maxQueuePerUser;
+
+    @Value("${spring.ai.concurrency-limit.max-wait:20s}")
+    private Duration maxWait;
+
+    @Bean
+    public AdaptiveConcurrencyLimiter llmConcurrencyLimiter(MeterRegistry meterRegistry) {
+        log.info("LLM concurrency limit: enabled={}, initial {} (min {}, max {}), queue {} ({} per user), max wait {}",
+                enabled, initialLimit, minLimit, maxLimit, maxQueue, maxQueuePerUser, maxWait);
+        return new AdaptiveConcurrencyLimiter("llm", enabled, initialLimit, minLimit, maxLimit,
+                maxQueue, maxQueuePerUser, maxWait, meterRegistry);
+    }
+}
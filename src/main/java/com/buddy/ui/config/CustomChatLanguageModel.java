@@ -1,5 +1,10 @@
 package com.buddy.ui.config;
 
+import com.buddy.ui.service.ChatTurnCancelledException;
+import com.buddy.ui.service.ChatTurnContext;
+import com.buddy.ui.service.DeadlineExceededException;
+import com.buddy.ui.service.DeadlinePolicy;
+import com.buddy.ui.service.PromptAssembler;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import dev.langchain4j.agent.tool.ToolExecutionRequest;
@@ -7,21 +12,21 @@ import dev.langchain4j.agent.tool.ToolParameters;
 import dev.langchain4j.agent.tool.ToolSpecification;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.ChatMessage;
-import dev.langchain4j.data.message.SystemMessage;
-import dev.langchain4j.data.message.ToolExecutionResultMessage;
-import dev.langchain4j.data.message.UserMessage;
 import dev.langchain4j.model.chat.ChatLanguageModel;
 import dev.langchain4j.model.output.Response;
 import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.*;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Custom ChatLanguageModel that wraps the existing OpenAI-compatible LLM API
@@ -30,7 +35,9 @@ import java.util.stream.Collectors;
 @Slf4j
 public class CustomChatLanguageModel implements ChatLanguageModel {
     
-    private final String baseUrl;
+    private final EndpointBalancer endpoints;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final CircuitBreaker circuitBreaker;
     private final String apiKey;
     private final String model;
     private final String username;
@@ -42,14 +49,26 @@ public class CustomChatLanguageModel implements ChatLanguageModel {
     private final double presencePenalty;
     private final int seed;
     
-    private final RestTemplate restTemplate;
+    private final HttpTransport transport;
+    private final PromptAssembler promptAssembler;
+    private final DeadlinePolicy deadlinePolicy;
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ChatCompletionCodec codec;
+    
+    private final Counter promptTokensCounter;
+    private final Counter cachedPromptTokensCounter;
+    private final DistributionSummary cachedPromptShare;
     
     public CustomChatLanguageModel(
-            String baseUrl, String apiKey, String model, String username, String password,
+            EndpointBalancer endpoints, AdaptiveConcurrencyLimiter limiter, CircuitBreaker circuitBreaker,
+            String apiKey, String model, String username, String password,
             double temperature, int maxTokens, double topP, 
-            double frequencyPenalty, double presencePenalty, int seed) {
-        this.baseUrl = baseUrl;
+            double frequencyPenalty, double presencePenalty, int seed,
+            HttpTransport transport, PromptAssembler promptAssembler, DeadlinePolicy deadlinePolicy,
+            MeterRegistry meterRegistry) {
+        this.endpoints = endpoints;
+        this.limiter = limiter;
+        this.circuitBreaker = circuitBreaker;
         this.apiKey = apiKey;
         this.model = model;
         this.username = username;
@@ -60,7 +79,20 @@ public class CustomChatLanguageModel implements ChatLanguageModel {
         this.frequencyPenalty = frequencyPenalty;
         this.presencePenalty = presencePenalty;
         this.seed = seed;
-        this.restTemplate = new RestTemplate();
+        this.transport = transport;
+        this.promptAssembler = promptAssembler;
+        this.deadlinePolicy = deadlinePolicy;
+        this.codec = new ChatCompletionCodec(objectMapper, model, temperature, maxTokens, topP,
+                frequencyPenalty, presencePenalty, seed, username, password);
+        this.promptTokensCounter = Counter.builder("llm.prompt.tokens")
+                .description("Prompt tokens reported by the LLM gateway")
+                .register(meterRegistry);
+        this.cachedPromptTokensCounter = Counter.builder("llm.prompt.tokens.cached")
+                .description("Prompt tokens served from the gateway prefix cache")
+                .register(meterRegistry);
+        this.cachedPromptShare = DistributionSummary.builder("llm.prompt.cached.share")
+                .description("Share of prompt tokens served from the prefix cache per call (0-1)")
+                .register(meterRegistry);
     }
     
     @Override
@@ -73,238 +105,243 @@ public class CustomChatLanguageModel implements ChatLanguageModel {
         return generateInternal(messages, toolSpecifications);
     }
     
-    private Response<AiMessage> generateInternal(List<ChatMessage> messages, List<ToolSpecification> toolSpecifications) {
+    /**
+     * Non-blocking variant of generate; the HTTP call does not hold the caller's thread
+     * Token accounting is recorded on the chat turn that was current when the call was made
+     */
+    public CompletableFuture<Response<AiMessage>> generateAsync(List<ChatMessage> messages,
+                                                                List<ToolSpecification> toolSpecifications) {
+        Optional<ChatTurnContext> turn = ChatTurnContext.current();
+        PromptAssembler.AssembledPrompt prompt = promptAssembler.assemble(messages, toolSpecifications);
+        logTools(toolSpecifications);
+        
         try {
-            // Convert LangChain4j messages to OpenAI format
-            List<Map<String, Object>> openAiMessages = new ArrayList<>();
-            
-            for (ChatMessage message : messages) {
-                Map<String, Object> msg = new HashMap<>();
-                
-                if (message instanceof UserMessage) {
-                    msg.put("role", "user");
-                    msg.put("content", ((UserMessage) message).singleText());
-                } else if (message instanceof AiMessage) {
-                    AiMessage aiMsg = (AiMessage) message;
-                    msg.put("role", "assistant");
-                    
-                    // Check if AI message has tool calls
-                    if (aiMsg.toolExecutionRequests() != null && !aiMsg.toolExecutionRequests().isEmpty()) {
-                        // Handle tool calls in response
-                        List<Map<String, Object>> toolCalls = new ArrayList<>();
-                        for (var toolRequest : aiMsg.toolExecutionRequests()) {
-                            Map<String, Object> toolCall = new HashMap<>();
-                            toolCall.put("id", toolRequest.id());
-                            toolCall.put("type", "function");
-                            
-                            Map<String, Object> function = new HashMap<>();
-                            function.put("name", toolRequest.name());
-                            function.put("arguments", toolRequest.arguments());
-                            toolCall.put("function", function);
-                            
-                            toolCalls.add(toolCall);
-                        }
-                        msg.put("tool_calls", toolCalls);
-                        // Content might be null when there are tool calls
-                        String content = aiMsg.text();
-                        msg.put("content", content != null && !content.isEmpty() ? content : null);
-                    } else {
-                        msg.put("content", aiMsg.text());
+            circuitBreaker.acquirePermission();
+        } catch (LlmUnavailableException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return limiter.acquireAsync(userId(turn)).whenComplete((permit, error) -> {
+                    if (error != null) {
+                        circuitBreaker.onIgnored();
                     }
-                } else if (message instanceof SystemMessage) {
-                    msg.put("role", "system");
-                    msg.put("content", ((SystemMessage) message).text());
-                } else if (message instanceof ToolExecutionResultMessage) {
-                    // Handle tool execution results
-                    ToolExecutionResultMessage toolMsg = (ToolExecutionResultMessage) message;
-                    msg.put("role", "tool");
-                    msg.put("tool_call_id", toolMsg.id());
-                    msg.put("content", toolMsg.text());
-                } else {
-                    // Handle other message types
-                    msg.put("role", "system");
-                    msg.put("content", message.toString());
-                }
-                
-                openAiMessages.add(msg);
-            }
-            
-            // Convert tool specifications to OpenAI tools format
-            List<Map<String, Object>> tools = null;
-            if (toolSpecifications != null && !toolSpecifications.isEmpty()) {
-                tools = new ArrayList<>();
-                for (ToolSpecification spec : toolSpecifications) {
-                    Map<String, Object> tool = new HashMap<>();
-                    tool.put("type", "function");
-                    
-                    Map<String, Object> function = new HashMap<>();
-                    function.put("name", spec.name());
-                    function.put("description", spec.description() != null ? spec.description() : "");
-                    
-                    // Convert parameters from ToolParameters
-                    Map<String, Object> parameters = new HashMap<>();
-                    ToolParameters toolParams = spec.parameters();
-                    
-                    if (toolParams != null) {
-                        parameters.put("type", toolParams.type() != null ? toolParams.type() : "object");
-                        
-                        // ToolParameters.properties() returns Map<String, Map<String, Object>>
-                        Map<String, Map<String, Object>> properties = toolParams.properties();
-                        if (properties != null && !properties.isEmpty()) {
-                            parameters.put("properties", properties);
-                        } else {
-                            parameters.put("properties", new HashMap<>());
-                        }
-                        
-                        // ToolParameters.required() returns List<String>
-                        List<String> required = toolParams.required();
-                        if (required != null && !required.isEmpty()) {
-                            parameters.put("required", required);
-                        } else {
-                            parameters.put("required", new ArrayList<>());
+                })
+                .thenCompose(permit -> {
+                    ChatCompletionCodec.RequestBuffer body = encode(prompt, toolSpecifications, permit, turn);
+                    CompletableFuture<byte[]> call;
+                    try {
+                        Duration timeout = timeout(turn);
+                        call = endpoints.executeAsync(baseUrl -> {
+                            log.debug("📤 Calling LLM API async ({} bytes): {}", body.size(), baseUrl);
+                            return send(baseUrl, body, timeout);
+                        });
+                        if (turn.isPresent()) {
+                            turn.get().track(call);
                         }
-                    } else {
-                        // Default empty parameters
-                        parameters.put("type", "object");
-                        parameters.put("properties", new HashMap<>());
-                        parameters.put("required", new ArrayList<>());
+                    } catch (RuntimeException e) {
+                        call = CompletableFuture.failedFuture(e);
                     }
-                    
-                    function.put("parameters", parameters);
-                    tool.put("function", function);
-                    tools.add(tool);
-                }
-                
-                // Debug: Log tool names being sent
-                List<String> toolNames = toolSpecifications.stream()
-                    .map(ToolSpecification::name)
-                    .collect(java.util.stream.Collectors.toList());
-                log.info("🔧 Sending {} tool(s) to LLM: {}", tools.size(), toolNames);
-            } else {
-                log.debug("⚠️ No tools provided to LLM");
-            }
-            
-            // Build API request
-            String url = baseUrl.endsWith("/") 
-                    ? baseUrl + "chat/completions" 
-                    : baseUrl + "/chat/completions";
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Authorization", "Bearer " + apiKey);
-            
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", model);
-            requestBody.put("messages", openAiMessages);
-            requestBody.put("temperature", temperature);
-            requestBody.put("max_tokens", maxTokens);
-            requestBody.put("top_p", topP);
-            requestBody.put("frequency_penalty", frequencyPenalty);
-            requestBody.put("presence_penalty", presencePenalty);
-            requestBody.put("seed", seed);
+                    return call.whenComplete((response, error) -> finish(permit, error, turn));
+                })
+                .thenApply(response -> toResponse(codec.decodeResponse(response), toolSpecifications, prompt, turn));
+    }
+    
+    private Response<AiMessage> generateInternal(List<ChatMessage> messages, List<ToolSpecification> toolSpecifications) {
+        try {
+            // Enforce per-section token budgets before serializing
+            PromptAssembler.AssembledPrompt prompt = promptAssembler.assemble(messages, toolSpecifications);
+            logTools(toolSpecifications);
             
-            // Add tools if available
-            if (tools != null && !tools.isEmpty()) {
-                requestBody.put("tools", tools);
+            // Fail fast while the gateway is known to be down, then wait (fairly per user)
+            // for a slot under the adaptive concurrency limit, at most until the turn's deadline
+            Optional<ChatTurnContext> turn = ChatTurnContext.current();
+            circuitBreaker.acquirePermission();
+            AdaptiveConcurrencyLimiter.Permit permit;
+            try {
+                permit = limiter.acquire(userId(turn), timeout(turn));
+            } catch (RuntimeException e) {
+                circuitBreaker.onIgnored();
+                throw e;
             }
             
-            // Add metadata
-            Map<String, Object> metadata = new HashMap<>();
-            metadata.put("username", username);
-            metadata.put("pwd", password);
-            requestBody.put("metadata", metadata);
-            
-            HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
-            
-            log.debug("📤 Calling LLM API with {} tools: {}", tools != null ? tools.size() : 0, url);
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.POST, request, String.class);
-            
-            // Parse response
-            JsonNode jsonResponse = objectMapper.readTree(response.getBody());
-            JsonNode choices = jsonResponse.get("choices");
-            
-            if (choices != null && choices.isArray() && choices.size() > 0) {
-                JsonNode choice = choices.get(0);
-                JsonNode message = choice.get("message");
-                
-                if (message != null) {
-                    // Check for tool calls in response
-                    JsonNode toolCalls = message.get("tool_calls");
-                    if (toolCalls != null && toolCalls.isArray() && toolCalls.size() > 0) {
-                        // Handle tool calls
-                        log.info("✅ LLM returned {} tool call(s)", toolCalls.size());
-                        List<ToolExecutionRequest> toolExecutionRequests = new ArrayList<>();
-                        
-                        for (JsonNode toolCall : toolCalls) {
-                            String id = toolCall.get("id").asText();
-                            JsonNode function = toolCall.get("function");
-                            String name = function.get("name").asText();
-                            String arguments = function.get("arguments").asText();
-                            
-                            log.info("🔨 Tool call: {} with arguments: {}", name, arguments);
-                            
-                            toolExecutionRequests.add(
-                                ToolExecutionRequest.builder()
-                                    .id(id)
-                                    .name(name)
-                                    .arguments(arguments)
-                                    .build()
-                            );
-                        }
-                        
-                        // Create AiMessage with tool execution requests
-                        // If there's content, we'll include it, but AiMessage constructor
-                        // doesn't support both text and tool requests together
-                        // So we'll use toolExecutionRequests only
-                        AiMessage aiMessage = new AiMessage(toolExecutionRequests);
-                        
-                        // Extract token usage from response if available
-                        TokenUsage tokenUsage = extractTokenUsage(jsonResponse);
-                        
-                        return Response.from(aiMessage, tokenUsage);
-                    } else {
-                        // Regular text response - but check for tool call in content
-                        log.debug("📝 LLM returned text response (checking for tool call in content)");
-                        JsonNode content = message.get("content");
-                        if (content != null && !content.isNull()) {
-                            String responseText = content.asText();
-                            log.debug("Response text length: {} characters", responseText.length());
-                            
-                            // FALLBACK: Check if content contains tool call JSON
-                            // Some LLMs return tool calls as JSON string in content instead of tool_calls array
-                            ToolExecutionRequest parsedToolCall = tryParseToolCallFromContent(responseText, toolSpecifications);
-                            
-                            if (parsedToolCall != null) {
-                                log.info("✅ FALLBACK: Successfully parsed tool call from content: {}", 
-                                    parsedToolCall.name());
-                                AiMessage aiMessage = new AiMessage(List.of(parsedToolCall));
-                                
-                                // Extract token usage from response if available
-                                TokenUsage tokenUsage = extractTokenUsage(jsonResponse);
-                                
-                                return Response.from(aiMessage, tokenUsage);
-                            }
-                            
-                            // Normal text response
-                            AiMessage aiMessage = new AiMessage(responseText);
-                            
-                            // Extract token usage from response if available
-                            TokenUsage tokenUsage = extractTokenUsage(jsonResponse);
-                            
-                            return Response.from(aiMessage, tokenUsage);
-                        }
-                    }
-                }
+            // Canonical request layout so the gateway can reuse its prefix cache:
+            // static system prompt first, then tool schemas in a fixed order, then the
+            // variable part (summary, history, current turn with retrieved context)
+            ChatCompletionCodec.RequestBuffer body = encode(prompt, toolSpecifications, permit, turn);
+            byte[] response;
+            Throwable failure = null;
+            try {
+                Duration timeout = timeout(turn);
+                // Sent as an async exchange the caller waits on, so a cancelled turn aborts it
+                response = ChatTurnContext.await(endpoints.executeAsync(baseUrl -> {
+                    log.debug("📤 Calling LLM API ({} bytes): {}", body.size(), baseUrl);
+                    return send(baseUrl, body, timeout);
+                }));
+            } catch (RuntimeException e) {
+                failure = e;
+                throw e;
+            } finally {
+                finish(permit, failure, turn);
             }
             
-            throw new RuntimeException("Failed to parse API response");
+            return toResponse(codec.decodeResponse(response), toolSpecifications, prompt, turn);
             
+        } catch (LlmOverloadedException | LlmUnavailableException | DeadlineExceededException
+                 | ChatTurnCancelledException e) {
+            log.warn("LLM call not sent: {}", e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("Error calling custom LLM API", e);
             throw new RuntimeException("Failed to generate AI response: " + e.getMessage(), e);
         }
     }
     
+    /**
+     * POST the pooled body, handing the buffer back to the pool once the exchange reading it is over
+     * A cancelled exchange may still be sending the body in the background (the classic transport runs
+     * to completion, the JDK client's cancel is best-effort), so its buffer is left to the GC instead
+     * of being reused by the next call
+     */
+    private CompletableFuture<byte[]> send(String baseUrl, ChatCompletionCodec.RequestBuffer body, Duration timeout) {
+        CompletableFuture<byte[]> exchange;
+        try {
+            exchange = transport.postAsync(chatCompletionsUrl(baseUrl), headers(), body.array(), body.size(), timeout);
+        } catch (RuntimeException e) {
+            codec.release(body);
+            throw e;
+        }
+        exchange.whenComplete((response, error) -> {
+            if (!exchange.isCancelled()) {
+                codec.release(body);
+            }
+        });
+        return exchange;
+    }
+    
+    /**
+     * Encode the request, with max_tokens cut down when the turn's deadline is close
+     */
+    private ChatCompletionCodec.RequestBuffer encode(PromptAssembler.AssembledPrompt prompt,
+                                                     List<ToolSpecification> toolSpecifications,
+                                                     AdaptiveConcurrencyLimiter.Permit permit,
+                                                     Optional<ChatTurnContext> turn) {
+        try {
+            int callMaxTokens = turn.map(context -> deadlinePolicy.maxTokens(context, maxTokens)).orElse(maxTokens);
+            return codec.encodeRequest(prompt.messages(), toolSpecifications, callMaxTokens);
+        } catch (RuntimeException e) {
+            permit.cancel();
+            circuitBreaker.onIgnored();
+            throw e;
+        }
+    }
+    
+    /**
+     * Remaining budget of the turn as the call timeout (null: transport default)
+     */
+    private static Duration timeout(Optional<ChatTurnContext> turn) {
+        return turn.flatMap(ChatTurnContext::remaining).orElse(null);
+    }
+    
+    /**
+     * Release the concurrency slot and record the outcome on the circuit breaker
+     * A call cut short by the turn's deadline or cancellation says nothing about the gateway and is not counted
+     */
+    private void finish(AdaptiveConcurrencyLimiter.Permit permit, Throwable error, Optional<ChatTurnContext> turn) {
+        if (error != null && turn.map(context -> context.isExpired() || context.isCancelled()).orElse(false)) {
+            permit.cancel();
+            circuitBreaker.onIgnored();
+            return;
+        }
+        boolean overload = isOverload(error);
+        permit.release(!overload);
+        if (overload) {
+            circuitBreaker.onFailure();
+        } else {
+            circuitBreaker.onSuccess();
+        }
+    }
+    
+    /**
+     * Background calls (e.g. conversation summaries) run outside a chat turn and share one queue
+     */
+    private static String userId(Optional<ChatTurnContext> turn) {
+        return turn.map(ChatTurnContext::getUserId).orElse("background");
+    }
+    
+    /**
+     * Timeouts, throttling and server errors back the concurrency limit off and count against the
+     * circuit breaker; client errors do not
+     */
+    private static boolean isOverload(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpTransportException transportException) {
+                return transportException.isServerError();
+            }
+        }
+        return false;
+    }
+    
+    private static String chatCompletionsUrl(String baseUrl) {
+        return baseUrl.endsWith("/")
+                ? baseUrl + "chat/completions"
+                : baseUrl + "/chat/completions";
+    }
+    
+    private HttpHeaders headers() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("Authorization", "Bearer " + apiKey);
+        return headers;
+    }
+    
+    private void logTools(List<ToolSpecification> toolSpecifications) {
+        if (toolSpecifications != null && !toolSpecifications.isEmpty()) {
+            log.info("🔧 Sending {} tool(s) to LLM", toolSpecifications.size());
+        } else {
+            log.debug("⚠️ No tools provided to LLM");
+        }
+    }
+    
+    /**
+     * Turn a decoded completion into an AiMessage (tool calls, tool call embedded in content, or text)
+     */
+    private Response<AiMessage> toResponse(ChatCompletionCodec.ChatCompletion completion,
+                                           List<ToolSpecification> toolSpecifications,
+                                           PromptAssembler.AssembledPrompt prompt,
+                                           Optional<ChatTurnContext> turn) {
+        if (completion.hasMessage()) {
+            if (!completion.toolCalls().isEmpty()) {
+                // Handle tool calls
+                log.info("✅ LLM returned {} tool call(s)", completion.toolCalls().size());
+                for (ToolExecutionRequest toolCall : completion.toolCalls()) {
+                    log.info("🔨 Tool call: {} with arguments: {}", toolCall.name(), toolCall.arguments());
+                }
+                
+                // AiMessage constructor doesn't support both text and tool requests together,
+                // so we'll use toolExecutionRequests only
+                return respond(new AiMessage(completion.toolCalls()), completion, prompt, turn);
+            } else if (completion.content() != null) {
+                // Regular text response - but check for tool call in content
+                String responseText = completion.content();
+                log.debug("📝 LLM returned text response ({} characters)", responseText.length());
+                
+                // FALLBACK: Check if content contains tool call JSON
+                // Some LLMs return tool calls as JSON string in content instead of tool_calls array
+                ToolExecutionRequest parsedToolCall = tryParseToolCallFromContent(responseText, toolSpecifications);
+                
+                if (parsedToolCall != null) {
+                    log.info("✅ FALLBACK: Successfully parsed tool call from content: {}", 
+                        parsedToolCall.name());
+                    return respond(new AiMessage(List.of(parsedToolCall)), completion, prompt, turn);
+                }
+                
+                // Normal text response
+                return respond(new AiMessage(responseText), completion, prompt, turn);
+            }
+        }
+        
+        throw new RuntimeException("Failed to parse API response");
+    }
+    
     /**
      * Fallback method to parse tool call from content if LLM returns it as JSON string
      * Handles cases where LLM doesn't support tool_calls array and returns tool call in content
@@ -398,25 +435,32 @@ public class CustomChatLanguageModel implements ChatLanguageModel {
     }
     
     /**
-     * Extract token usage from API response if available
-     * Returns empty TokenUsage if not available to prevent NullPointerException
+     * Build the response and record estimated vs actual prompt tokens for this call
      */
-    private TokenUsage extractTokenUsage(JsonNode jsonResponse) {
-        try {
-            JsonNode usage = jsonResponse.get("usage");
-            if (usage != null) {
-                int promptTokens = usage.has("prompt_tokens") ? usage.get("prompt_tokens").asInt() : 0;
-                int completionTokens = usage.has("completion_tokens") ? usage.get("completion_tokens").asInt() : 0;
-                int totalTokens = usage.has("total_tokens") ? usage.get("total_tokens").asInt() : (promptTokens + completionTokens);
-                
-                return new TokenUsage(promptTokens, completionTokens, totalTokens);
-            }
-        } catch (Exception e) {
-            log.debug("Could not extract token usage from response: {}", e.getMessage());
-        }
+    private Response<AiMessage> respond(AiMessage aiMessage, ChatCompletionCodec.ChatCompletion completion,
+                                        PromptAssembler.AssembledPrompt prompt, Optional<ChatTurnContext> turn) {
+        int actualPromptTokens = completion.promptTokens();
+        int completionTokens = completion.completionTokens();
+        int cachedPromptTokens = completion.cachedPromptTokens();
+        log.info("📊 Prompt tokens: estimated {}, actual {}, cached {} (completion: {})",
+                prompt.estimatedTokens(), actualPromptTokens, cachedPromptTokens, completionTokens);
+        recordPromptCacheMetrics(actualPromptTokens, cachedPromptTokens);
+        turn.ifPresent(context -> context.recordLlmCall(
+                prompt.estimatedTokens(), actualPromptTokens, cachedPromptTokens, completionTokens));
         
-        // Return empty TokenUsage to prevent NullPointerException
-        return new TokenUsage(0, 0, 0);
+        return Response.from(aiMessage, new TokenUsage(actualPromptTokens, completionTokens, completion.totalTokens()));
+    }
+    
+    /**
+     * Cache-hit metrics are only recorded when the gateway reports cached tokens
+     */
+    private void recordPromptCacheMetrics(int promptTokens, int cachedPromptTokens) {
+        if (cachedPromptTokens < 0 || promptTokens <= 0) {
+            return;
+        }
+        promptTokensCounter.increment(promptTokens);
+        cachedPromptTokensCounter.increment(cachedPromptTokens);
+        cachedPromptShare.record((double) cachedPromptTokens / promptTokens);
     }
     
     /**
@@ -1,5 +1,7 @@
 package com.buddy.ui.config;
 
+import com.buddy.ui.service.ChatTurnCancelledException;
+import com.buddy.ui.service.DeadlineExceededException;
 import com.buddy.ui.service.EmbeddingService;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
@@ -30,6 +32,8 @@ public class CustomEmbeddingModel implements EmbeddingModel {
             }
             Embedding embedding = new Embedding(embeddingArray);
             return new Response<>(embedding);
+        } catch (DeadlineExceededException | ChatTurnCancelledException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error generating embedding", e);
             throw new RuntimeException("Failed to generate embedding: " + e.getMessage(), e);
@@ -56,6 +60,8 @@ public class CustomEmbeddingModel implements EmbeddingModel {
                     })
                     .collect(Collectors.toList());
             return new Response<>(embeddings);
+        } catch (DeadlineExceededException | ChatTurnCancelledException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error generating embeddings", e);
             throw new RuntimeException("Failed to generate embeddings: " + e.getMessage(), e);
@@ -0,0 +1,234 @@
+package com.buddy.ui.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Client-side load balancer over replicas of one downstream (LLM gateway, embeddings)
+ * - Picks an endpoint with power-of-two-choices on EWMA latency x (in-flight + 1)
+ * - Passive ejection: an endpoint failing failureThreshold times in a row is skipped for ejectionDuration
+ * - Active probing: probe() marks endpoints unhealthy/healthy from a cheap health check
+ * If every endpoint is ejected or unhealthy, all of them are used again (fail open).
+ */
+@Slf4j
+public class EndpointBalancer {
+
+    private final String name;
+    private final List<Endpoint> endpoints;
+    private final double ewmaAlpha;
+    private final int failureThreshold;
+    private final long ejectionNanos;
+
+    public EndpointBalancer(String name, List<String> baseUrls, double ewmaAlpha, int failureThreshold,
+                            Duration ejectionDuration, MeterRegistry meterRegistry) {
+        if (baseUrls.isEmpty()) {
+            throw new IllegalArgumentException("No endpoints configured for " + name);
+        }
+        this.name = name;
+        this.ewmaAlpha = ewmaAlpha;
+        this.failureThreshold = failureThreshold;
+        this.ejectionNanos = ejectionDuration.toNanos();
+        this.endpoints = new ArrayList<>();
+        for (String baseUrl : baseUrls) {
+            Endpoint endpoint = new Endpoint(baseUrl.trim());
+            endpoints.add(endpoint);
+            Gauge.builder("llm.endpoint.latency.ewma", endpoint, e -> e.ewmaMillis)
+                    .description("EWMA latency of the endpoint in milliseconds")
+                    .tags("balancer", name, "endpoint", endpoint.baseUrl)
+                    .register(meterRegistry);
+            Gauge.builder("llm.endpoint.inflight", endpoint, e -> e.inFlight.get())
+                    .tags("balancer", name, "endpoint", endpoint.baseUrl)
+                    .register(meterRegistry);
+            Gauge.builder("llm.endpoint.available", endpoint, e -> e.isAvailable(System.nanoTime()) ? 1 : 0)
+                    .tags("balancer", name, "endpoint", endpoint.baseUrl)
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Run a blocking call against the chosen endpoint's base URL
+     */
+    public <T> T execute(Function<String, T> call) {
+        Endpoint endpoint = choose();
+        long start = endpoint.start();
+        try {
+            T result = call.apply(endpoint.baseUrl);
+            endpoint.succeeded(start);
+            return result;
+        } catch (RuntimeException e) {
+            endpoint.failed(start, isEndpointFailure(e));
+            throw e;
+        }
+    }
+
+    /**
+     * Run an async call against the chosen endpoint's base URL
+     */
+    public <T> CompletableFuture<T> executeAsync(Function<String, CompletableFuture<T>> call) {
+        Endpoint endpoint = choose();
+        long start = endpoint.start();
+        CompletableFuture<T> future;
+        try {
+            future = call.apply(endpoint.baseUrl);
+        } catch (RuntimeException e) {
+            endpoint.failed(start, isEndpointFailure(e));
+            throw e;
+        }
+        CompletableFuture<T> tracked = future.whenComplete((result, error) -> {
+            if (error == null) {
+                endpoint.succeeded(start);
+            } else if (error instanceof CancellationException) {
+                // Abandoned by the caller (e.g. a losing hedge), says nothing about the endpoint
+                endpoint.inFlight.decrementAndGet();
+            } else {
+                endpoint.failed(start, isEndpointFailure(error));
+            }
+        });
+        // Cancelling the returned future aborts the underlying call
+        tracked.whenComplete((result, error) -> {
+            if (tracked.isCancelled()) {
+                future.cancel(true);
+            }
+        });
+        return tracked;
+    }
+
+    /**
+     * Active health check of every endpoint; a failing probe takes the endpoint out of rotation
+     * until a later probe succeeds
+     */
+    public void probe(Predicate<String> healthCheck) {
+        for (Endpoint endpoint : endpoints) {
+            boolean healthy;
+            try {
+                healthy = healthCheck.test(endpoint.baseUrl);
+            } catch (RuntimeException e) {
+                healthy = false;
+            }
+            if (healthy != endpoint.probeHealthy) {
+                log.warn("{} endpoint {} is now {}", name, endpoint.baseUrl, healthy ? "healthy" : "unhealthy");
+            }
+            endpoint.probeHealthy = healthy;
+            if (healthy && endpoint.ejectedUntil != 0) {
+                // Probe confirmed recovery, no need to wait for the ejection to expire
+                endpoint.consecutiveFailures.set(0);
+                endpoint.ejectedUntil = 0;
+            }
+        }
+    }
+
+    public List<String> baseUrls() {
+        return endpoints.stream().map(endpoint -> endpoint.baseUrl).toList();
+    }
+
+    private Endpoint choose() {
+        if (endpoints.size() == 1) {
+            return endpoints.get(0);
+        }
+        long now = System.nanoTime();
+        List<Endpoint> candidates = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.isAvailable(now)) {
+                candidates.add(endpoint);
+            }
+        }
+        if (candidates.isEmpty()) {
+            candidates = endpoints;
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        Endpoint a = candidates.get(first);
+        Endpoint b = candidates.get(second);
+        return a.score() <= b.score() ? a : b;
+    }
+
+    /**
+     * Server errors, throttling and transport failures count against the endpoint; client errors do not
+     */
+    private static boolean isEndpointFailure(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpTransportException transportException) {
+                return transportException.isServerError();
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return true;
+    }
+
+    private final class Endpoint {
+
+        private final String baseUrl;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private volatile double ewmaMillis;
+        private volatile long ejectedUntil;
+        private volatile boolean probeHealthy = true;
+
+        private Endpoint(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        private boolean isAvailable(long now) {
+            return probeHealthy && !isEjected(now);
+        }
+
+        private boolean isEjected(long now) {
+            return ejectedUntil != 0 && now - ejectedUntil < 0;
+        }
+
+        private double score() {
+            return (ewmaMillis + 1) * (inFlight.get() + 1);
+        }
+
+        private long start() {
+            inFlight.incrementAndGet();
+            return System.nanoTime();
+        }
+
+        private void succeeded(long start) {
+            inFlight.decrementAndGet();
+            consecutiveFailures.set(0);
+            ejectedUntil = 0;
+            recordLatency(start);
+        }
+
+        private void failed(long start, boolean endpointFailure) {
+            inFlight.decrementAndGet();
+            recordLatency(start);
+            long now = System.nanoTime();
+            // After an ejection expires, a single further failure ejects the endpoint again
+            if (endpointFailure && consecutiveFailures.incrementAndGet() >= failureThreshold && !isEjected(now)) {
+                ejectedUntil = now + ejectionNanos;
+                log.warn("Ejecting {} endpoint {} for {} ms after {} consecutive failures",
+                        name, baseUrl, ejectionNanos / 1_000_000, consecutiveFailures.get());
+            }
+        }
+
+        private void recordLatency(long start) {
+            double millis = (System.nanoTime() - start) / 1_000_000.0;
+            // Races between concurrent updates only lose a sample, which is fine for a moving average
+            ewmaMillis = ewmaMillis == 0 ? millis : ewmaAlpha * millis + (1 - ewmaAlpha) * ewmaMillis;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.buddy.ui.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Multi-endpoint configuration for the LLM gateway
+ * Builds the chat and embedding load balancers and probes every replica periodically
+ * (GET .../v1/models, any non-5xx answer counts as healthy)
+ */
+@Configuration
+@RequiredArgsConstructor
+@Slf4j
+public class EndpointBalancingConfig {
+    
+    private final AiConfig aiConfig;
+    
+    @Value("${spring.ai.custom-llm.base-urls:${spring.ai.custom-llm.base-url}}")
+    private List<String> baseUrls;
+    
+    @Value("${spring.ai.custom-llm.api-key}")
+    private String apiKey;
+    
+    @Value("${spring.ai.load-balancer.ewma-alpha:0.3}")
+    private double ewmaAlpha;
+    
+    @Value("${spring.ai.load-balancer.failure-threshold:3}")
+    private int failureThreshold;
+    
+    @Value("${spring.ai.load-balancer.ejection-duration:30s}")
+    private Duration ejectionDuration;
+    
+    @Value("${spring.ai.load-balancer.probe-timeout:2s}")
+    private Duration probeTimeout;
+    
+    private HttpClient probeClient;
+    private LlmEndpoints llmEndpoints;
+    
+    @Bean
+    public LlmEndpoints llmEndpoints(MeterRegistry meterRegistry) {
+        log.info("LLM gateway endpoints: {}", baseUrls);
+        probeClient = HttpClient.newBuilder()
+                .connectTimeout(probeTimeout)
+                .sslContext(aiConfig.getSslContext())
+                .build();
+        llmEndpoints = new LlmEndpoints(
+                new EndpointBalancer("chat", baseUrls, ewmaAlpha, failureThreshold, ejectionDuration, meterRegistry),
+                new EndpointBalancer("embeddings", baseUrls, ewmaAlpha, failureThreshold, ejectionDuration, meterRegistry));
+        return llmEndpoints;
+    }
+    
+    @Scheduled(initialDelayString = "${spring.ai.load-balancer.probe-interval:PT10S}",
+               fixedDelayString = "${spring.ai.load-balancer.probe-interval:PT10S}")
+    public void probeEndpoints() {
+        if (llmEndpoints == null || baseUrls.size() < 2) {
+            return;
+        }
+        // Chat and embeddings run on the same replicas, so one probe per replica serves both
+        Map<String, Boolean> health = new HashMap<>();
+        for (String baseUrl : llmEndpoints.chat().baseUrls()) {
+            health.put(baseUrl, isHealthy(baseUrl));
+        }
+        llmEndpoints.chat().probe(health::get);
+        llmEndpoints.embeddings().probe(health::get);
+    }
+    
+    private boolean isHealthy(String baseUrl) {
+        String url = baseUrl.replace("/v1", "") + "/v1/models";
+        try {
+            HttpResponse<Void> response = probeClient.send(HttpRequest.newBuilder(URI.create(url))
+                            .timeout(probeTimeout)
+                            .header("Authorization", "Bearer " + apiKey)
+                            .GET()
+                            .build(),
+                    HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() < 500;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            log.debug("Health probe of {} failed: {}", url, e.getMessage());
+            return false;
+        }
+    }
+    
+    @PreDestroy
+    public void close() {
+        if (probeClient != null) {
+            probeClient.close();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.buddy.ui.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Hedged requests for query embeddings and ChromaDB queries
+ * Off by default; both calls are read-only, so a duplicate attempt is safe
+ */
+@Configuration
+@Slf4j
+public class HedgingConfig {
+
+    @Value("${spring.ai.hedging.embeddings.enabled:false}")
+    private boolean embeddingsEnabled;
+
+    @Value("${spring.ai.hedging.chroma.enabled:false}")
+    private boolean chromaEnabled;
+
+    @Value("${spring.ai.hedging.percentile:0.95}")
+    private double percentile;
+
+    @Value("${spring.ai.hedging.min-delay:50ms}")
+    private Duration minDelay;
+
+    @Value("${spring.ai.hedging.max-delay:2s}")
+    private Duration maxDelay;
+
+    @Value("${spring.ai.hedging.max-hedge-rate:0.05}")
+    private double maxHedgeRate;
+
+    @Value("${spring.ai.hedging.window:1000}")
+    private int window;
+
+    // Only fires the hedge timers; the attempts themselves run on the transports' own threads
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("hedging-timer").daemon().factory());
+
+    @Bean
+    public HedgingPolicies hedgingPolicies(MeterRegistry meterRegistry) {
+        log.info("Request hedging: embeddings={}, chroma={} (p{}, max hedge rate {})",
+                embeddingsEnabled, chromaEnabled, Math.round(percentile * 100), maxHedgeRate);
+        return new HedgingPolicies(policy("embeddings", embeddingsEnabled, meterRegistry),
+                policy("chroma", chromaEnabled, meterRegistry));
+    }
+
+    private HedgingPolicy policy(String name, boolean enabled, MeterRegistry meterRegistry) {
+        return new HedgingPolicy(name, enabled, percentile, minDelay, maxDelay, maxHedgeRate, window,
+                scheduler, meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
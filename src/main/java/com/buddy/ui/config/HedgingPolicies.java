@@ -0,0 +1,10 @@
+package com.buddy.ui.config;
+
+/**
+ * Hedging policies of the idempotent read paths (spring.ai.hedging.*)
+ *
+ * @param embeddings single-text embedding calls (query embeddings)
+ * @param chroma     ChromaDB similarity queries
+ */
+public record HedgingPolicies(HedgingPolicy embeddings, HedgingPolicy chroma) {
+}
@@ -0,0 +1,182 @@
+package com.buddy.ui.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Hedged requests for idempotent calls
+ * If the first attempt has not answered within the recent p-th percentile latency, a second attempt
+ * is sent; the first answer wins and the other attempt is cancelled.
+ * Hedges are paid from a budget that grows by maxHedgeRate per call, so at most that share of calls
+ * is duplicated and hedging cannot amplify an overload.
+ */
+@Slf4j
+public class HedgingPolicy {
+
+    private static final long TOKEN = 1000;
+    private static final long MAX_BUDGET = 10 * TOKEN;
+    private static final int MIN_SAMPLES = 20;
+    private static final int RECOMPUTE_EVERY = 32;
+
+    private final String name;
+    private final boolean enabled;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    private final long tokensPerCall;
+    private final ScheduledExecutorService scheduler;
+
+    private final long[] samples;
+    private final AtomicLong sampleCount = new AtomicLong();
+    private final AtomicLong hedgeBudget = new AtomicLong(TOKEN);
+    private volatile long hedgeDelayNanos;
+
+    private final Counter hedgesSent;
+    private final Counter hedgesWon;
+    private final Counter hedgesThrottled;
+
+    public HedgingPolicy(String name, boolean enabled, double percentile, Duration minDelay, Duration maxDelay,
+                         double maxHedgeRate, int window, ScheduledExecutorService scheduler,
+                         MeterRegistry meterRegistry) {
+        this.name = name;
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.minDelayNanos = minDelay.toNanos();
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.tokensPerCall = Math.round(maxHedgeRate * TOKEN);
+        this.scheduler = scheduler;
+        this.samples = new long[window];
+        this.hedgeDelayNanos = maxDelayNanos;
+        this.hedgesSent = Counter.builder("hedging.hedges").tag("call", name).register(meterRegistry);
+        this.hedgesWon = Counter.builder("hedging.hedges.won").tag("call", name).register(meterRegistry);
+        this.hedgesThrottled = Counter.builder("hedging.hedges.throttled").tag("call", name).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Run the call, hedging it when the first attempt is slow
+     * The supplier is invoked once per attempt and must be safe to repeat
+     */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> attempt) {
+        if (!enabled) {
+            return attempt.get();
+        }
+        hedgeBudget.accumulateAndGet(tokensPerCall, (budget, add) -> Math.min(MAX_BUDGET, budget + add));
+
+        long start = System.nanoTime();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        // Attempts still running; the result fails only when every launched attempt has failed
+        AtomicInteger outstanding = new AtomicInteger(1);
+
+        CompletableFuture<T> primary = attempt.get();
+        primary.whenComplete((value, error) -> {
+            if (error == null) {
+                recordLatency(System.nanoTime() - start);
+                result.complete(value);
+            } else if (outstanding.decrementAndGet() == 0) {
+                result.completeExceptionally(error);
+            }
+        });
+
+        ScheduledFuture<?> timer = scheduler.schedule(() -> {
+            if (result.isDone() || !tryAcquireHedge() || !incrementIfRunning(outstanding)) {
+                return;
+            }
+            log.debug("Hedging {} call after {} ms", name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            hedgesSent.increment();
+            CompletableFuture<T> hedge;
+            try {
+                hedge = attempt.get();
+            } catch (RuntimeException e) {
+                releaseAttempt(outstanding, result, e);
+                return;
+            }
+            hedge.whenComplete((value, error) -> {
+                if (error == null) {
+                    if (result.complete(value)) {
+                        hedgesWon.increment();
+                    }
+                } else {
+                    releaseAttempt(outstanding, result, error);
+                }
+            });
+            result.whenComplete((value, error) -> hedge.cancel(true));
+        }, hedgeDelayNanos, TimeUnit.NANOSECONDS);
+
+        // The loser is cancelled (aborts the exchange on the JDK transport) and a pending hedge is not sent
+        result.whenComplete((value, error) -> {
+            timer.cancel(false);
+            primary.cancel(true);
+        });
+        return result;
+    }
+
+    /**
+     * Blocking variant of execute
+     */
+    public <T> T executeBlocking(Supplier<CompletableFuture<T>> attempt) {
+        try {
+            return execute(attempt).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    private static boolean incrementIfRunning(AtomicInteger outstanding) {
+        int current;
+        do {
+            current = outstanding.get();
+            if (current == 0) {
+                return false;
+            }
+        } while (!outstanding.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private static <T> void releaseAttempt(AtomicInteger outstanding, CompletableFuture<T> result, Throwable error) {
+        if (outstanding.decrementAndGet() == 0) {
+            result.completeExceptionally(error);
+        }
+    }
+
+    private boolean tryAcquireHedge() {
+        long budget;
+        do {
+            budget = hedgeBudget.get();
+            if (budget < TOKEN) {
+                hedgesThrottled.increment();
+                return false;
+            }
+        } while (!hedgeBudget.compareAndSet(budget, budget - TOKEN));
+        return true;
+    }
+
+    private void recordLatency(long nanos) {
+        long count = sampleCount.getAndIncrement();
+        samples[(int) (count % samples.length)] = nanos;
+        if (count >= MIN_SAMPLES && count % RECOMPUTE_EVERY == 0) {
+            long[] window = Arrays.copyOf(samples, (int) Math.min(count + 1, samples.length));
+            Arrays.sort(window);
+            long delay = window[(int) Math.min(window.length - 1, Math.floor(percentile * window.length))];
+            hedgeDelayNanos = Math.max(minDelayNanos, Math.min(maxDelayNanos, delay));
+        }
+    }
+}
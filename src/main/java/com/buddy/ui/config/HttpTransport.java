@@ -0,0 +1,52 @@
+package com.buddy.ui.config;
+
+import org.springframework.http.HttpHeaders;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Pluggable transport for the JSON POST calls on the hot path (chat, embeddings, vector search)
+ * Implementations: ClassicHttpTransport (pooled Apache HttpClient via RestTemplate) and
+ * JdkHttpTransport (java.net.http.HttpClient with HTTP/2 multiplexing).
+ * Non-2xx responses and I/O failures are reported as HttpTransportException.
+ */
+public interface HttpTransport {
+    
+    /**
+     * POST the first length bytes of body and return the response body
+     * A non-null timeout caps the response timeout of this call (e.g. the remaining deadline of a chat turn)
+     */
+    byte[] post(String url, HttpHeaders headers, byte[] body, int length, Duration timeout);
+    
+    /**
+     * Non-blocking variant of post; body must not be modified until the future completes
+     * Cancelling the future does not guarantee that the body is no longer read: a cancelled call's
+     * body must not be reused
+     */
+    CompletableFuture<byte[]> postAsync(String url, HttpHeaders headers, byte[] body, int length, Duration timeout);
+    
+    default byte[] post(String url, HttpHeaders headers, byte[] body, int length) {
+        return post(url, headers, body, length, null);
+    }
+    
+    default CompletableFuture<byte[]> postAsync(String url, HttpHeaders headers, byte[] body, int length) {
+        return postAsync(url, headers, body, length, null);
+    }
+    
+    default byte[] post(String url, HttpHeaders headers, byte[] body, Duration timeout) {
+        return post(url, headers, body, body.length, timeout);
+    }
+    
+    default CompletableFuture<byte[]> postAsync(String url, HttpHeaders headers, byte[] body, Duration timeout) {
+        return postAsync(url, headers, body, body.length, timeout);
+    }
+    
+    default byte[] post(String url, HttpHeaders headers, byte[] body) {
+        return post(url, headers, body, body.length, null);
+    }
+    
+    default CompletableFuture<byte[]> postAsync(String url, HttpHeaders headers, byte[] body) {
+        return postAsync(url, headers, body, body.length, null);
+    }
+}
@@ -0,0 +1,25 @@
+package com.buddy.ui.config;
+
+import lombok.Getter;
+
+/**
+ * Failure of an outbound HTTP call
+ * statusCode is the HTTP status for error responses, or 0 when no response was received
+ * (connection failure, timeout, interruption)
+ */
+@Getter
+public class HttpTransportException extends RuntimeException {
+    
+    private final int statusCode;
+    private final String responseBody;
+    
+    public HttpTransportException(String message, int statusCode, String responseBody, Throwable cause) {
+        super(message, cause);
+        this.statusCode = statusCode;
+        this.responseBody = responseBody;
+    }
+    
+    public boolean isServerError() {
+        return statusCode == 0 || statusCode >= 500 || statusCode == 429;
+    }
+}
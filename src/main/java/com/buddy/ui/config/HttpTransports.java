@@ -0,0 +1,11 @@
+package com.buddy.ui.config;
+
+/**
+ * Transport per downstream, selected with spring.outbound-http.transport (classic | jdk)
+ *
+ * @param llm        OpenAI-compatible chat completions gateway
+ * @param embeddings OpenAI-compatible embeddings endpoint
+ * @param chroma     ChromaDB REST API
+ */
+public record HttpTransports(HttpTransport llm, HttpTransport embeddings, HttpTransport chroma) {
+}
@@ -0,0 +1,88 @@
+package com.buddy.ui.config;
+
+import org.springframework.http.HttpHeaders;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * HttpTransport on java.net.http.HttpClient
+ * Negotiates HTTP/2 (ALPN on https, h2c upgrade on http) so concurrent calls to the same host are
+ * multiplexed over a few connections, and has no synchronized pool sections that pin virtual threads
+ */
+public class JdkHttpTransport implements HttpTransport {
+    
+    private final HttpClient httpClient;
+    private final Duration requestTimeout;
+    
+    public JdkHttpTransport(HttpClient httpClient, Duration requestTimeout) {
+        this.httpClient = httpClient;
+        this.requestTimeout = requestTimeout;
+    }
+    
+    @Override
+    public byte[] post(String url, HttpHeaders headers, byte[] body, int length, Duration timeout) {
+        try {
+            return checkStatus(url, httpClient.send(buildRequest(url, headers, body, length, timeout),
+                    HttpResponse.BodyHandlers.ofByteArray()));
+        } catch (IOException e) {
+            throw new HttpTransportException("POST " + url + " failed: " + e.getMessage(), 0, null, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HttpTransportException("POST " + url + " interrupted", 0, null, e);
+        }
+    }
+    
+    @Override
+    public CompletableFuture<byte[]> postAsync(String url, HttpHeaders headers, byte[] body, int length,
+                                               Duration timeout) {
+        CompletableFuture<HttpResponse<byte[]>> exchange = httpClient.sendAsync(
+                buildRequest(url, headers, body, length, timeout), HttpResponse.BodyHandlers.ofByteArray());
+        CompletableFuture<byte[]> result = exchange.handle((response, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                throw cause instanceof HttpTransportException transportException
+                        ? transportException
+                        : new HttpTransportException("POST " + url + " failed: " + cause.getMessage(), 0, null, cause);
+            }
+            return checkStatus(url, response);
+        });
+        // cancel(true) on the client's future aborts the exchange (resets the HTTP/2 stream)
+        result.whenComplete((response, error) -> {
+            if (result.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return result;
+    }
+    
+    private HttpRequest buildRequest(String url, HttpHeaders headers, byte[] body, int length, Duration timeout) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .timeout(timeout != null && timeout.compareTo(requestTimeout) < 0 ? timeout : requestTimeout)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body, 0, length));
+        headers.forEach((name, values) -> {
+            // Content-Length is set by the client from the body publisher
+            if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                values.forEach(value -> builder.header(name, value));
+            }
+        });
+        return builder.build();
+    }
+    
+    private byte[] checkStatus(String url, HttpResponse<byte[]> response) {
+        int status = response.statusCode();
+        if (status < 200 || status >= 300) {
+            throw new HttpTransportException("POST " + url + " failed with status " + status,
+                    status, new String(response.body(), StandardCharsets.UTF_8), null);
+        }
+        return response.body();
+    }
+}
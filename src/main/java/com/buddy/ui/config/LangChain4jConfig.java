@@ -1,16 +1,25 @@
 package com.buddy.ui.config;
 
+import com.buddy.ui.assistant.AgentAssistant;
+import com.buddy.ui.assistant.BuddyAssistant;
+import com.buddy.ui.assistant.RagAssistant;
 import com.buddy.ui.service.ChromaDbService;
+import com.buddy.ui.service.ConversationMemoryService;
+import com.buddy.ui.service.DeadlinePolicy;
 import com.buddy.ui.service.EmbeddingService;
+import com.buddy.ui.service.PromptAssembler;
 import com.buddy.ui.tool.AccessRequestTool;
 import com.buddy.ui.tool.MentorMatchingTool;
 import dev.langchain4j.data.segment.TextSegment;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.memory.ChatMemory;
 import dev.langchain4j.model.chat.ChatLanguageModel;
 import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.rag.RetrievalAugmentor;
 import dev.langchain4j.rag.content.retriever.ContentRetriever;
 import dev.langchain4j.rag.content.retriever.EmbeddingStoreContentRetriever;
+import dev.langchain4j.service.AiServices;
 import dev.langchain4j.store.embedding.EmbeddingStore;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -31,9 +40,8 @@ public class LangChain4jConfig {
     private final EmbeddingService embeddingService;
     private final AccessRequestTool accessRequestTool;
     private final MentorMatchingTool mentorMatchingTool;
-    
-    @Value("${spring.ai.custom-llm.base-url}")
-    private String baseUrl;
+    private final PromptAssembler promptAssembler;
+    private final DeadlinePolicy deadlinePolicy;
     
     @Value("${spring.ai.custom-llm.api-key}")
     private String apiKey;
@@ -72,10 +80,15 @@ public class LangChain4jConfig {
      * Custom ChatLanguageModel that uses existing LLM API
      */
     @Bean
-    public ChatLanguageModel chatLanguageModel() {
+    public CustomChatLanguageModel chatLanguageModel(LlmEndpoints llmEndpoints,
+                                                     AdaptiveConcurrencyLimiter llmConcurrencyLimiter,
+                                                     CircuitBreaker llmCircuitBreaker,
+                                                     HttpTransports httpTransports,
+                                                     MeterRegistry meterRegistry) {
         return new CustomChatLanguageModel(
-            baseUrl, apiKey, model, username, password,
-            temperature, maxTokens, topP, frequencyPenalty, presencePenalty, seed
+            llmEndpoints.chat(), llmConcurrencyLimiter, llmCircuitBreaker, apiKey, model, username, password,
+            temperature, maxTokens, topP, frequencyPenalty, presencePenalty, seed,
+            httpTransports.llm(), promptAssembler, deadlinePolicy, meterRegistry
         );
     }
     
@@ -92,7 +105,7 @@ public class LangChain4jConfig {
      */
     @Bean
     public EmbeddingStore<TextSegment> embeddingStore() {
-        return new ChromaDbEmbeddingStore(chromaDbService, embeddingService);
+        return new ChromaDbEmbeddingStore(chromaDbService);
     }
     
     /**
@@ -110,12 +123,58 @@ public class LangChain4jConfig {
     }
     
     /**
-     * MessageWindowChatMemory for conversation history
-     * Keeps last 10 messages
+     * Chat memory of the current turn's session: rolling summary plus the most recent persisted turns
+     * A single instance for all sessions, AiServices caches the memory of every memory ID it sees
+     */
+    @Bean
+    public ChatMemory chatMemory(ConversationMemoryService conversationMemoryService) {
+        return new SummarizingChatMemory(conversationMemoryService);
+    }
+    
+    /**
+     * RetrievalAugmentor that only queries ChromaDB when the turn's route asks for retrieval
      */
     @Bean
-    public MessageWindowChatMemory chatMemory() {
-        return MessageWindowChatMemory.withMaxMessages(10);
+    public RetrievalAugmentor retrievalAugmentor(ContentRetriever contentRetriever) {
+        return new RoutingRetrievalAugmentor(contentRetriever, promptAssembler, deadlinePolicy);
+    }
+    
+    /**
+     * One assistant per route variant, all sharing the same model, memory and retrieval
+     * - FULL_AGENT: full RAG-vs-AGENT prompt with every tool attached
+     * - RAG_ONLY: slim RAG prompt, no tools
+     * - TOOL_ONLY: slim agent prompt with only the tool group the router picked
+     */
+    @Bean
+    public RoutedAssistants routedAssistants(ChatLanguageModel chatLanguageModel,
+                                             ChatMemory chatMemory,
+                                             RetrievalAugmentor retrievalAugmentor) {
+        BuddyAssistant fullAgent = AiServices.builder(BuddyAssistant.class)
+                .chatLanguageModel(chatLanguageModel)
+                .chatMemory(chatMemory)
+                .retrievalAugmentor(retrievalAugmentor)
+                .tools(accessRequestTool, mentorMatchingTool)
+                .build();
+        
+        RagAssistant ragAssistant = AiServices.builder(RagAssistant.class)
+                .chatLanguageModel(chatLanguageModel)
+                .chatMemory(chatMemory)
+                .retrievalAugmentor(retrievalAugmentor)
+                .build();
+        
+        AgentAssistant accessRequestAgent = AiServices.builder(AgentAssistant.class)
+                .chatLanguageModel(chatLanguageModel)
+                .chatMemory(chatMemory)
+                .tools(accessRequestTool)
+                .build();
+        
+        AgentAssistant mentorMatchingAgent = AiServices.builder(AgentAssistant.class)
+                .chatLanguageModel(chatLanguageModel)
+                .chatMemory(chatMemory)
+                .tools(mentorMatchingTool)
+                .build();
+        
+        return new RoutedAssistants(fullAgent, ragAssistant, accessRequestAgent, mentorMatchingAgent);
     }
 }
 
@@ -0,0 +1,11 @@
+package com.buddy.ui.config;
+
+/**
+ * Load balancers over the configured LLM gateway replicas (spring.ai.custom-llm.base-urls)
+ * Chat and embeddings share the replica list but keep separate latency and health state
+ *
+ * @param chat       /chat/completions
+ * @param embeddings /v1/embeddings
+ */
+public record LlmEndpoints(EndpointBalancer chat, EndpointBalancer embeddings) {
+}
@@ -0,0 +1,18 @@
+package com.buddy.ui.config;
+
+import lombok.Getter;
+
+/**
+ * The LLM gateway is at its concurrency limit and the wait queue is full (or the wait timed out)
+ * Mapped to 429 Too Many Requests with a Retry-After header
+ */
+@Getter
+public class LlmOverloadedException extends RuntimeException {
+    
+    private final long retryAfterSeconds;
+    
+    public LlmOverloadedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,12 @@
+package com.buddy.ui.config;
+
+/**
+ * The LLM gateway is considered down (circuit open), the call was not sent
+ * ChatService answers with an extractive fallback instead
+ */
+public class LlmUnavailableException extends RuntimeException {
+    
+    public LlmUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,14 @@
+package com.buddy.ui.config;
+
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Shared outbound HTTP clients, one connection pool per downstream
+ * Keeps the chat model, embedding calls and ChromaDB from starving each other's connections
+ *
+ * @param llm        OpenAI-compatible chat completions gateway
+ * @param embeddings OpenAI-compatible embeddings endpoint
+ * @param chroma     ChromaDB REST API
+ */
+public record OutboundHttpClients(RestTemplate llm, RestTemplate embeddings, RestTemplate chroma) {
+}
@@ -0,0 +1,179 @@
+package com.buddy.ui.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.ssl.NoopHostnameVerifier;
+import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactoryBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Outbound HTTP client configuration
+ * Builds one pooled HttpClient 5 per downstream (LLM, embeddings, ChromaDB) with its own
+ * pool limits, timeouts, keep-alive and idle eviction, and exports pool utilization metrics
+ * (httpcomponents.httpclient.pool.*, tagged with httpclient=llm|embeddings|chroma).
+ * The JSON POST hot path goes through an HttpTransport per downstream, either on top of these
+ * pools (classic, default) or on the JDK HttpClient with HTTP/2 (jdk).
+ * TLS is the same on both: the trust-all context of AiConfig, without hostname verification
+ * (NoopHostnameVerifier here, the context's extended trust manager for the JDK client).
+ */
+@Configuration
+@EnableConfigurationProperties(OutboundHttpConfig.OutboundHttpProperties.class)
+@RequiredArgsConstructor
+@Slf4j
+public class OutboundHttpConfig {
+    
+    private final AiConfig aiConfig;
+    private final MeterRegistry meterRegistry;
+    
+    private final List<AutoCloseable> httpClients = new ArrayList<>();
+    private final ExecutorService asyncExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    
+    @Bean
+    public OutboundHttpClients outboundHttpClients(OutboundHttpProperties properties) {
+        return new OutboundHttpClients(
+                restTemplate("llm", properties.getLlm()),
+                restTemplate("embeddings", properties.getEmbeddings()),
+                restTemplate("chroma", properties.getChroma()));
+    }
+    
+    @Bean
+    public HttpTransports httpTransports(OutboundHttpProperties properties, OutboundHttpClients clients) {
+        if (properties.getTransport() == Transport.JDK) {
+            log.info("Outbound HTTP transport: JDK HttpClient (HTTP/2)");
+            return new HttpTransports(
+                    jdkTransport(properties.getLlm()),
+                    jdkTransport(properties.getEmbeddings()),
+                    jdkTransport(properties.getChroma()));
+        }
+        log.info("Outbound HTTP transport: pooled Apache HttpClient");
+        return new HttpTransports(
+                new ClassicHttpTransport(clients.llm(), asyncExecutor),
+                new ClassicHttpTransport(clients.embeddings(), asyncExecutor),
+                new ClassicHttpTransport(clients.chroma(), asyncExecutor));
+    }
+    
+    private JdkHttpTransport jdkTransport(Pool pool) {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(pool.getConnectTimeout())
+                .sslContext(aiConfig.getSslContext())
+                .executor(asyncExecutor)
+                .build();
+        httpClients.add(httpClient);
+        return new JdkHttpTransport(httpClient, pool.getResponseTimeout());
+    }
+    
+    private RestTemplate restTemplate(String name, Pool pool) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setSSLSocketFactory(SSLConnectionSocketFactoryBuilder.create()
+                        .setSslContext(aiConfig.getSslContext())
+                        .setHostnameVerifier(NoopHostnameVerifier.INSTANCE)
+                        .build())
+                .setMaxConnTotal(pool.getMaxTotal())
+                .setMaxConnPerRoute(pool.getMaxPerRoute())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(pool.getConnectTimeout()))
+                        .setSocketTimeout(Timeout.of(pool.getResponseTimeout()))
+                        .setTimeToLive(TimeValue.of(pool.getTimeToLive()))
+                        .build())
+                .build();
+        
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.of(pool.getConnectionRequestTimeout()))
+                .setResponseTimeout(Timeout.of(pool.getResponseTimeout()))
+                // Used when the server does not send a Keep-Alive header
+                .setConnectionKeepAlive(TimeValue.of(pool.getKeepAlive()))
+                .build();
+        
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(pool.getIdleEviction()))
+                .build();
+        httpClients.add(httpClient);
+        
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, name).bindTo(meterRegistry);
+        log.info("Outbound HTTP pool '{}': max {} total / {} per route, response timeout {}",
+                name, pool.getMaxTotal(), pool.getMaxPerRoute(), pool.getResponseTimeout());
+        
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+        // Per-call timeouts (remaining chat turn deadline) of ClassicHttpTransport
+        requestFactory.setHttpContextFactory((method, uri) -> ClassicHttpTransport.callContext(requestConfig));
+        return new RestTemplate(requestFactory);
+    }
+    
+    @PreDestroy
+    public void close() {
+        for (AutoCloseable httpClient : httpClients) {
+            try {
+                httpClient.close();
+            } catch (Exception e) {
+                log.warn("Failed to close outbound HTTP client: {}", e.getMessage());
+            }
+        }
+        asyncExecutor.shutdown();
+    }
+    
+    /**
+     * Pool settings per downstream (spring.outbound-http.llm|embeddings|chroma.*)
+     */
+    @Data
+    @ConfigurationProperties(prefix = "spring.outbound-http")
+    public static class OutboundHttpProperties {
+        private Transport transport = Transport.CLASSIC;
+        private Pool llm = new Pool(50, 50, Duration.ofSeconds(60));
+        private Pool embeddings = new Pool(20, 20, Duration.ofSeconds(30));
+        private Pool chroma = new Pool(20, 20, Duration.ofSeconds(15));
+    }
+    
+    public enum Transport {
+        CLASSIC,
+        JDK
+    }
+    
+    @Data
+    public static class Pool {
+        private int maxTotal;
+        private int maxPerRoute;
+        private Duration responseTimeout;
+        private Duration connectTimeout = Duration.ofSeconds(5);
+        private Duration connectionRequestTimeout = Duration.ofSeconds(10);
+        private Duration keepAlive = Duration.ofSeconds(30);
+        private Duration idleEviction = Duration.ofSeconds(30);
+        private Duration timeToLive = Duration.ofMinutes(5);
+        
+        public Pool() {
+        }
+        
+        public Pool(int maxTotal, int maxPerRoute, Duration responseTimeout) {
+            this.maxTotal = maxTotal;
+            this.maxPerRoute = maxPerRoute;
+            this.responseTimeout = responseTimeout;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.buddy.ui.config;
+
+import com.buddy.ui.assistant.AgentAssistant;
+import com.buddy.ui.assistant.BuddyAssistant;
+import com.buddy.ui.assistant.RagAssistant;
+import com.buddy.ui.service.ChatRoute;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Holds one assistant per prompt/tool variant and dispatches a turn to the one matching its route
+ * Must be called within a ChatTurnContext, whose session selects the conversation
+ */
+@RequiredArgsConstructor
+public class RoutedAssistants {
+
+    private final BuddyAssistant fullAgent;
+    private final RagAssistant ragAssistant;
+    private final AgentAssistant accessRequestAgent;
+    private final AgentAssistant mentorMatchingAgent;
+
+    public String chat(ChatRoute route, String userMessage) {
+        return switch (route.mode()) {
+            case RAG_ONLY -> ragAssistant.chat(userMessage);
+            case TOOL_ONLY -> route.toolGroup() == ChatRoute.ToolGroup.MENTOR_MATCHING
+                    ? mentorMatchingAgent.chat(userMessage)
+                    : accessRequestAgent.chat(userMessage);
+            case FULL_AGENT -> fullAgent.chat(userMessage);
+        };
+    }
+}
@@ -0,0 +1,78 @@
+package com.buddy.ui.config;
+
+import com.buddy.ui.service.ChatRoute;
+import com.buddy.ui.service.ChatTurnContext;
+import com.buddy.ui.service.DeadlinePolicy;
+import com.buddy.ui.service.PromptAssembler;
+import com.buddy.ui.service.RetrievalCache;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.rag.RetrievalAugmentor;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Metadata;
+import dev.langchain4j.rag.query.Query;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * RetrievalAugmentor that honours the routing decision of the current chat turn
+ * Retrieval (embedding + ChromaDB query) only runs when the route asks for it,
+ * and the retrieved chunks are cut to the retrieved-context token budget;
+ * it is also skipped when the turn's deadline leaves too little time for it
+ * Within a batch, the results for a repeated question come from the batch's RetrievalCache
+ * The retrieved chunks are recorded on the turn, for the extractive fallback
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class RoutingRetrievalAugmentor implements RetrievalAugmentor {
+
+    private final ContentRetriever contentRetriever;
+    private final PromptAssembler promptAssembler;
+    private final DeadlinePolicy deadlinePolicy;
+
+    @Override
+    public UserMessage augment(UserMessage userMessage, Metadata metadata) {
+        Optional<ChatTurnContext> turn = ChatTurnContext.current();
+        boolean retrieve = turn.map(ChatTurnContext::getRoute)
+                .map(ChatRoute::retrieve)
+                .orElse(true);
+
+        if (!retrieve) {
+            log.debug("Skipping retrieval for this turn (route decided no RAG)");
+            return userMessage;
+        }
+        if (turn.isPresent() && !deadlinePolicy.canRetrieve(turn.get())) {
+            // Not enough time left for embedding + vector search, answer without context
+            log.info("Skipping retrieval for session {}, deadline too close", turn.get().getSessionId());
+            turn.get().recordDegradation("retrieval_skipped");
+            return userMessage;
+        }
+
+        Query query = Query.from(userMessage.singleText(), metadata);
+        List<Content> contents = RetrievalCache.current()
+                .map(cache -> cache.retrieval(query.text(), () -> contentRetriever.retrieve(query)))
+                .orElseGet(() -> contentRetriever.retrieve(query));
+        // Kept for the extractive fallback, should the LLM call fail
+        turn.ifPresent(context -> context.setRetrievedChunks(contents.stream()
+                .map(content -> Map.<String, Object>of(
+                        "id", Objects.toString(content.textSegment().metadata().get("id"), ""),
+                        "text", content.textSegment().text()))
+                .toList()));
+        if (contents.isEmpty()) {
+            return userMessage;
+        }
+
+        List<String> chunks = promptAssembler.selectRetrievedContext(contents.stream()
+                .map(content -> content.textSegment().text())
+                .collect(Collectors.toList()));
+
+        return UserMessage.from(userMessage.singleText()
+                + PromptAssembler.RETRIEVED_CONTEXT_MARKER + String.join("\n\n", chunks));
+    }
+}
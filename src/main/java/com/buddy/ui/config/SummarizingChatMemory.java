@@ -0,0 +1,77 @@
+package com.buddy.ui.config;
+
+import com.buddy.ui.service.ChatTurnContext;
+import com.buddy.ui.service.ConversationMemoryService;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ChatMemory backed by the messages table and its rolling summary, shared by every session
+ * Every turn starts with a user message; at that point the history of the turn's session is loaded
+ * (summary + recent persisted turns), so prompt size stays roughly constant
+ * regardless of conversation length and all route assistants see the same history.
+ * The messages are held by the ChatTurnContext, tool calls included, and dropped when the turn ends:
+ * nothing is kept per session between turns, so deleting a conversation leaves nothing to evict.
+ */
+public class SummarizingChatMemory implements ChatMemory {
+    
+    private final ConversationMemoryService conversationMemoryService;
+    
+    public SummarizingChatMemory(ConversationMemoryService conversationMemoryService) {
+        this.conversationMemoryService = conversationMemoryService;
+    }
+    
+    @Override
+    public Object id() {
+        return turn().getSessionId();
+    }
+    
+    @Override
+    public void add(ChatMessage message) {
+        ChatTurnContext turn = turn();
+        List<ChatMessage> messages = turn.getChatMemory();
+        if (message instanceof SystemMessage) {
+            if (!messages.isEmpty() && messages.get(0) instanceof SystemMessage) {
+                messages.set(0, message);
+            } else {
+                messages.add(0, message);
+            }
+        } else if (message instanceof UserMessage) {
+            List<ChatMessage> reloaded = new ArrayList<>();
+            if (!messages.isEmpty() && messages.get(0) instanceof SystemMessage) {
+                reloaded.add(messages.get(0));
+            }
+            reloaded.addAll(conversationMemoryService.loadHistory(turn.getSessionId()));
+            reloaded.add(message);
+            turn.setChatMemory(reloaded);
+        } else {
+            messages.add(message);
+        }
+    }
+    
+    @Override
+    public List<ChatMessage> messages() {
+        return new ArrayList<>(turn().getChatMemory());
+    }
+    
+    @Override
+    public void clear() {
+        ChatTurnContext turn = turn();
+        List<ChatMessage> messages = turn.getChatMemory();
+        List<ChatMessage> cleared = new ArrayList<>();
+        if (!messages.isEmpty() && messages.get(0) instanceof SystemMessage) {
+            cleared.add(messages.get(0));
+        }
+        turn.setChatMemory(cleared);
+    }
+    
+    private static ChatTurnContext turn() {
+        return ChatTurnContext.current()
+                .orElseThrow(() -> new IllegalStateException("Chat memory used outside of a chat turn"));
+    }
+}
@@ -0,0 +1,181 @@
+package com.buddy.ui.config;
+
+import com.buddy.ui.model.dto.ErrorResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Rejects oversized training uploads with 413 from their Content-Length, before any of the body is
+ * read or spooled
+ * - Documents (/train/document, /jobs/document): max-document-size
+ * - Archives (/train/archive): max-archive-size
+ * - JSON text bodies (other /train and /jobs endpoints), which are read into memory: max-text-size
+ * Bodies without a Content-Length (chunked) are counted as they are read instead, and fail with
+ * MaxUploadSizeExceededException (413) past the same limit; multipart bodies, parsed by the container,
+ * are bounded by spring.servlet.multipart.max-request-size
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@RequiredArgsConstructor
+@Slf4j
+public class UploadLimitFilter extends OncePerRequestFilter {
+
+    private static final String RAG_PATH = "/api/v1/rag/";
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${spring.rag.upload.max-document-size:50MB}")
+    private DataSize maxDocumentSize;
+
+    @Value("${spring.rag.upload.max-archive-size:512MB}")
+    private DataSize maxArchiveSize;
+
+    @Value("${spring.rag.upload.max-text-size:10MB}")
+    private DataSize maxTextSize;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !"POST".equals(request.getMethod())
+                || !(path.startsWith(RAG_PATH + "train/") || path.startsWith(RAG_PATH + "jobs/"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long length = request.getContentLengthLong();
+        DataSize limit = limitFor(request.getRequestURI().substring(request.getContextPath().length()));
+        if (length > limit.toBytes()) {
+            log.warn("Rejecting upload to {}: {} bytes, limit {}", request.getRequestURI(), length, limit);
+            ErrorResponse error = new ErrorResponse(
+                    "Upload too large: " + length + " bytes, the limit is " + limit,
+                    HttpStatus.PAYLOAD_TOO_LARGE.value(),
+                    LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+            response.setStatus(HttpStatus.PAYLOAD_TOO_LARGE.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            // The client may still be sending: don't keep the connection for the rest of the body
+            response.setHeader("Connection", "close");
+            objectMapper.writeValue(response.getOutputStream(), error);
+            return;
+        }
+        chain.doFilter(length < 0 ? new LimitedRequest(request, limit.toBytes()) : request, response);
+    }
+
+    private DataSize limitFor(String path) {
+        if (path.equals(RAG_PATH + "train/archive")) {
+            return maxArchiveSize;
+        }
+        if (path.equals(RAG_PATH + "train/document") || path.equals(RAG_PATH + "jobs/document")) {
+            return maxDocumentSize;
+        }
+        return maxTextSize;
+    }
+
+    /**
+     * Request whose body stream fails once more than maxBytes are read
+     */
+    private static final class LimitedRequest extends HttpServletRequestWrapper {
+
+        private final long maxBytes;
+        private ServletInputStream inputStream;
+
+        private LimitedRequest(HttpServletRequest request, long maxBytes) {
+            super(request);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (inputStream == null) {
+                inputStream = new LimitedInputStream(super.getInputStream(), maxBytes, getRequestURI());
+            }
+            return inputStream;
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            Charset charset = getCharacterEncoding() != null ? Charset.forName(getCharacterEncoding()) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+    }
+
+    private static final class LimitedInputStream extends ServletInputStream {
+
+        private final ServletInputStream delegate;
+        private final long maxBytes;
+        private final String uri;
+        private long read;
+
+        private LimitedInputStream(ServletInputStream delegate, long maxBytes, String uri) {
+            this.delegate = delegate;
+            this.maxBytes = maxBytes;
+            this.uri = uri;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = delegate.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = delegate.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return delegate.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            delegate.setReadListener(readListener);
+        }
+
+        private void count(int n) {
+            read += n;
+            if (read > maxBytes) {
+                log.warn("Rejecting upload to {}: body without Content-Length over the limit of {} bytes", uri, maxBytes);
+                throw new MaxUploadSizeExceededException(maxBytes);
+            }
+        }
+    }
+}
@@ -1,19 +1,38 @@
 package com.buddy.ui.controller;
 
+import com.buddy.ui.model.ChatJob;
 import com.buddy.ui.model.Message;
+import com.buddy.ui.model.dto.ChatBatchRequest;
+import com.buddy.ui.model.dto.ChatJobResponse;
 import com.buddy.ui.model.dto.ChatRequest;
 import com.buddy.ui.model.dto.ConversationPageResponse;
 import com.buddy.ui.model.dto.DeleteConversationRequest;
 import com.buddy.ui.model.dto.MessageResponseDTO;
+import com.buddy.ui.service.ChatBatchService;
+import com.buddy.ui.service.ChatJobService;
 import com.buddy.ui.service.ChatService;
+import com.buddy.ui.service.DeadlineExceededException;
+import com.buddy.ui.service.DeadlinePolicy;
+import com.buddy.ui.service.TurnCancellation;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/v1/chat")
@@ -22,15 +41,129 @@ import java.util.List;
 @Slf4j
 public class ChatController {
     
+    // Time after the turn's deadline before the request itself is timed out (the fallback answer may still be built)
+    private static final long RESPONSE_GRACE_MILLIS = 5_000;
+    
     private final ChatService chatService;
+    private final ChatJobService chatJobService;
+    private final ChatBatchService chatBatchService;
+    private final ObjectMapper objectMapper;
+    private final DeadlinePolicy deadlinePolicy;
+    private final ExecutorService chatTurnExecutor;
     
+    /**
+     * Served asynchronously so that a client disconnect (closed tab, frontend timeout) is noticed
+     * while the turn is running: the turn is then cancelled and its in-flight LLM calls aborted
+     */
     @PostMapping("/send")
-    public ResponseEntity<Message> sendMessage(@Valid @RequestBody ChatRequest request) {
+    public DeferredResult<ResponseEntity<Message>> sendMessage(
+            @Valid @RequestBody ChatRequest request,
+            @RequestHeader(value = DeadlinePolicy.TIMEOUT_HEADER, required = false) Long timeoutMillis) {
         log.info("Received chat request for session: {}", request.getSessionId());
         
-        Message response = chatService.processMessage(request);
+        // The turn's time budget starts when the request arrives
+        long deadlineNanos = deadlinePolicy.deadlineFor(timeoutMillis);
+        TurnCancellation cancellation = new TurnCancellation();
+        DeferredResult<ResponseEntity<Message>> result = new DeferredResult<>(
+                TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()) + RESPONSE_GRACE_MILLIS);
         
-        return ResponseEntity.status(HttpStatus.OK).body(response);
+        result.onError(error -> {
+            log.info("Client disconnected from session {}, cancelling the turn: {}",
+                    request.getSessionId(), error.getMessage());
+            cancellation.cancel();
+        });
+        result.onTimeout(() -> {
+            cancellation.cancel();
+            result.setErrorResult(new DeadlineExceededException(
+                    "No answer within the deadline for session " + request.getSessionId()));
+        });
+        
+        chatTurnExecutor.execute(() -> {
+            try {
+                Message response = chatService.processMessage(request, deadlineNanos, cancellation);
+                result.setResult(ResponseEntity.status(HttpStatus.OK).body(response));
+            } catch (Exception e) {
+                result.setErrorResult(e);
+            }
+        });
+        return result;
+    }
+    
+    /**
+     * Run many chat turns with bounded parallelism, streaming one NDJSON line (ChatBatchResult)
+     * per request as it completes; a client disconnect cancels the rest of the batch
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<ResponseBodyEmitter> processBatch(@Valid @RequestBody ChatBatchRequest batch) {
+        List<ChatRequest> requests = batch.getRequests();
+        log.info("Received chat batch of {} request(s)", requests.size());
+        
+        TurnCancellation cancellation = new TurnCancellation();
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(
+                chatBatchService.maxDuration(requests.size()).toMillis() + RESPONSE_GRACE_MILLIS);
+        emitter.onError(error -> {
+            log.info("Client disconnected from chat batch, cancelling it: {}", error.getMessage());
+            cancellation.cancel();
+        });
+        emitter.onTimeout(cancellation::cancel);
+        
+        chatBatchService.process(requests, cancellation, result -> {
+            try {
+                emitter.send(objectMapper.writeValueAsString(result) + "\n", MediaType.APPLICATION_NDJSON);
+            } catch (IOException | IllegalStateException e) {
+                cancellation.cancel();
+            }
+        }).whenComplete((done, error) -> {
+            if (error != null) {
+                emitter.completeWithError(error);
+            } else {
+                emitter.complete();
+            }
+        });
+        
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(emitter);
+    }
+    
+    /**
+     * Queue a chat turn and return at once; the answer is fetched with GET /jobs/{jobId}
+     */
+    @PostMapping("/jobs")
+    public ResponseEntity<ChatJobResponse> submitJob(@Valid @RequestBody ChatRequest request) {
+        log.info("Received chat job for session: {}", request.getSessionId());
+        
+        ChatJob job = chatJobService.submit(request);
+        
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .location(URI.create("/api/v1/chat/jobs/" + job.getId()))
+                .body(chatJobService.toResponse(job));
+    }
+    
+    /**
+     * Long-poll for a chat job: answers as soon as the job is done (200), or with its current
+     * state (202) once waitSeconds have passed
+     */
+    @GetMapping("/jobs/{jobId}")
+    public DeferredResult<ResponseEntity<ChatJobResponse>> getJob(
+            @PathVariable UUID jobId,
+            @RequestParam(defaultValue = "0") long waitSeconds) {
+        DeferredResult<ResponseEntity<ChatJobResponse>> result = new DeferredResult<>(
+                TimeUnit.SECONDS.toMillis(waitSeconds) + RESPONSE_GRACE_MILLIS);
+        
+        Optional<ChatJob> job = chatJobService.findJob(jobId);
+        if (job.isEmpty()) {
+            result.setResult(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+            return result;
+        }
+        
+        chatJobService.awaitJob(job.get(), Duration.ofSeconds(waitSeconds)).whenComplete((current, error) -> {
+            if (error != null) {
+                result.setErrorResult(error);
+                return;
+            }
+            HttpStatus status = current.getStatus().isDone() ? HttpStatus.OK : HttpStatus.ACCEPTED;
+            result.setResult(ResponseEntity.status(status).body(chatJobService.toResponse(current)));
+        });
+        return result;
     }
     
     @GetMapping("/conversations")
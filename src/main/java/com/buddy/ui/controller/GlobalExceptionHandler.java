@@ -1,13 +1,17 @@
 package com.buddy.ui.controller;
 
+import com.buddy.ui.config.LlmOverloadedException;
 import com.buddy.ui.model.dto.ErrorResponse;
+import com.buddy.ui.service.DeadlineExceededException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -40,6 +44,53 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
     }
     
+    @ExceptionHandler(LlmOverloadedException.class)
+    public ResponseEntity<ErrorResponse> handleLlmOverloadedException(
+            LlmOverloadedException ex, WebRequest request) {
+        
+        log.warn("Rejecting request, LLM overloaded: {}", ex.getMessage());
+        
+        ErrorResponse errorResponse = new ErrorResponse(
+                "The assistant is busy, please retry in " + ex.getRetryAfterSeconds() + " seconds",
+                HttpStatus.TOO_MANY_REQUESTS.value(),
+                LocalDateTime.now().format(FORMATTER)
+        );
+        
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(errorResponse);
+    }
+    
+    @ExceptionHandler(DeadlineExceededException.class)
+    public ResponseEntity<ErrorResponse> handleDeadlineExceededException(
+            DeadlineExceededException ex, WebRequest request) {
+        
+        log.warn("Request deadline exceeded: {}", ex.getMessage());
+        
+        ErrorResponse errorResponse = new ErrorResponse(
+                "Request timed out: " + ex.getMessage(),
+                HttpStatus.GATEWAY_TIMEOUT.value(),
+                LocalDateTime.now().format(FORMATTER)
+        );
+        
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(errorResponse);
+    }
+    
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<ErrorResponse> handleMaxUploadSizeExceededException(
+            MaxUploadSizeExceededException ex, WebRequest request) {
+        
+        log.warn("Rejecting upload: {}", ex.getMessage());
+        
+        ErrorResponse errorResponse = new ErrorResponse(
+                "Upload too large: " + ex.getMessage(),
+                HttpStatus.PAYLOAD_TOO_LARGE.value(),
+                LocalDateTime.now().format(FORMATTER)
+        );
+        
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(errorResponse);
+    }
+    
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleGenericException(
             Exception ex, WebRequest request) {
@@ -1,10 +1,16 @@
 package com.buddy.ui.controller;
 
+import com.buddy.ui.model.IngestionJob;
+import com.buddy.ui.model.IngestionJobType;
+import com.buddy.ui.service.ArchiveTrainingService;
 import com.buddy.ui.service.ChromaDbService;
 import com.buddy.ui.service.DocumentTrainingService;
+import com.buddy.ui.service.IngestionJobService;
+import com.buddy.ui.service.KnowledgeBaseIndex;
 import com.buddy.ui.service.TextTrainingService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
@@ -12,6 +18,8 @@ import org.springframework.web.multipart.MultipartFile;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
 
 /**
  * Controller for RAG operations (training and searching)
@@ -24,8 +32,11 @@ import java.util.Map;
 public class RagController {
     
     private final ChromaDbService chromaDbService;
+    private final ArchiveTrainingService archiveTrainingService;
     private final DocumentTrainingService documentTrainingService;
     private final TextTrainingService textTrainingService;
+    private final IngestionJobService ingestionJobService;
+    private final KnowledgeBaseIndex knowledgeBaseIndex;
     
     /**
      * Train with document (PDF/Word)
@@ -62,6 +73,42 @@ public class RagController {
         }
     }
     
+    /**
+     * Train with a zip or tar archive of documents (PDF/Word/...), parsed in parallel
+     * Returns one result per file and a throughput summary
+     */
+    @PostMapping("/train/archive")
+    public ResponseEntity<Map<String, Object>> trainWithArchive(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "source", required = false) String source,
+            @RequestParam(value = "category", required = false) String category) {
+        try {
+            if (file.isEmpty()) {
+                Map<String, Object> error = new HashMap<>();
+                error.put("error", "File cannot be empty");
+                return ResponseEntity.badRequest().body(error);
+            }
+            
+            // Prepare metadata
+            Map<String, Object> metadata = new HashMap<>();
+            if (source != null) {
+                metadata.put("source", source);
+            }
+            if (category != null) {
+                metadata.put("category", category);
+            }
+            
+            Map<String, Object> result = archiveTrainingService.trainWithArchive(file, metadata);
+            return ResponseEntity.ok(result);
+            
+        } catch (Exception e) {
+            log.error("Error training with archive", e);
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", "Failed to train with archive: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(error);
+        }
+    }
+    
     /**
      * Train with plain text
      */
@@ -185,6 +232,173 @@ public class RagController {
         }
     }
     
+    /**
+     * Submit a document (PDF/Word) ingestion job; returns 202 with the job, poll GET /jobs/{jobId} for progress
+     */
+    @PostMapping("/jobs/document")
+    public ResponseEntity<Map<String, Object>> submitDocumentJob(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "source", required = false) String source,
+            @RequestParam(value = "category", required = false) String category) {
+        try {
+            if (file.isEmpty()) {
+                Map<String, Object> error = new HashMap<>();
+                error.put("error", "File cannot be empty");
+                return ResponseEntity.badRequest().body(error);
+            }
+            
+            // Prepare metadata
+            Map<String, Object> metadata = new HashMap<>();
+            if (source != null) {
+                metadata.put("source", source);
+            }
+            if (category != null) {
+                metadata.put("category", category);
+            }
+            
+            IngestionJob job = ingestionJobService.submitDocument(file, metadata);
+            return ResponseEntity.accepted().body(ingestionJobService.toView(job));
+            
+        } catch (Exception e) {
+            log.error("Error submitting document job", e);
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", "Failed to submit document job: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(error);
+        }
+    }
+    
+    /**
+     * Submit a text ingestion job; the body is that of /train/text
+     */
+    @PostMapping("/jobs/text")
+    public ResponseEntity<Map<String, Object>> submitTextJob(@RequestBody Map<String, Object> request) {
+        Object text = request.get("text");
+        if (!(text instanceof String value) || value.trim().isEmpty()) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", "Text cannot be empty");
+            return ResponseEntity.badRequest().body(error);
+        }
+        return submitTextJob(IngestionJobType.TEXT, request);
+    }
+    
+    /**
+     * Submit a multiple-texts ingestion job; the body is that of /train/texts
+     */
+    @PostMapping("/jobs/texts")
+    public ResponseEntity<Map<String, Object>> submitTextsJob(@RequestBody Map<String, Object> request) {
+        Object texts = request.get("texts");
+        if (!(texts instanceof List<?> list) || list.isEmpty()) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", "Texts cannot be empty");
+            return ResponseEntity.badRequest().body(error);
+        }
+        return submitTextJob(IngestionJobType.TEXTS, request);
+    }
+    
+    /**
+     * Submit a documents ingestion job; the body is that of /train/documents
+     */
+    @PostMapping("/jobs/documents")
+    public ResponseEntity<Map<String, Object>> submitDocumentsJob(@RequestBody List<Map<String, Object>> documents) {
+        if (documents == null || documents.isEmpty()) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", "Documents cannot be empty");
+            return ResponseEntity.badRequest().body(error);
+        }
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("documents", documents);
+        return submitTextJob(IngestionJobType.DOCUMENTS, payload);
+    }
+    
+    /**
+     * Re-embed the knowledge base with another embedding model into a new collection, then cut retrieval
+     * over to it; body: {"model": "..."} (optional, defaults to the configured model)
+     * Returns 202 with the job, poll GET /jobs/{jobId} for progress; 409 if one is already queued or running
+     */
+    @PostMapping("/jobs/reembed")
+    public ResponseEntity<Map<String, Object>> submitReembedJob(@RequestBody(required = false) Map<String, Object> request) {
+        try {
+            Object model = request != null ? request.get("model") : null;
+            IngestionJob job = ingestionJobService.submitReembed(model instanceof String value ? value : null);
+            return ResponseEntity.accepted().body(ingestionJobService.toView(job));
+            
+        } catch (IllegalStateException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+        } catch (Exception e) {
+            log.error("Error submitting re-embedding job", e);
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", "Failed to submit re-embedding job: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(error);
+        }
+    }
+    
+    /**
+     * Collection and embedding model retrieval currently uses, and the configured model
+     */
+    @GetMapping("/index")
+    public ResponseEntity<Map<String, Object>> getIndex() {
+        KnowledgeBaseIndex.Index index = knowledgeBaseIndex.current();
+        Map<String, Object> response = new HashMap<>();
+        response.put("collection", index.collectionName());
+        response.put("embeddingModel", index.embeddingModel());
+        response.put("configuredModel", knowledgeBaseIndex.getConfiguredModel());
+        response.put("reembedNeeded", !index.embeddingModel().equals(knowledgeBaseIndex.getConfiguredModel()));
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Status and progress (processed / total chunks) of an ingestion job
+     */
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<Map<String, Object>> getJob(@PathVariable UUID jobId) {
+        return ingestionJobService.findJob(jobId)
+                .map(job -> ResponseEntity.ok(ingestionJobService.toView(job)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * Cancel an ingestion job; a running job stops after its in-flight batches
+     */
+    @PostMapping("/jobs/{jobId}/cancel")
+    public ResponseEntity<Map<String, Object>> cancelJob(@PathVariable UUID jobId) {
+        return updateJob(jobId, ingestionJobService.cancel(jobId), "Job is already finished");
+    }
+    
+    /**
+     * Resume a failed or cancelled ingestion job after its last committed chunks
+     */
+    @PostMapping("/jobs/{jobId}/resume")
+    public ResponseEntity<Map<String, Object>> resumeJob(@PathVariable UUID jobId) {
+        return updateJob(jobId, ingestionJobService.resume(jobId), "Only failed or cancelled jobs can be resumed");
+    }
+    
+    private ResponseEntity<Map<String, Object>> submitTextJob(IngestionJobType type, Map<String, Object> payload) {
+        try {
+            IngestionJob job = ingestionJobService.submitText(type, payload);
+            return ResponseEntity.accepted().body(ingestionJobService.toView(job));
+        } catch (Exception e) {
+            log.error("Error submitting {} job", type, e);
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", "Failed to submit job: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(error);
+        }
+    }
+    
+    private ResponseEntity<Map<String, Object>> updateJob(UUID jobId, boolean updated, String conflict) {
+        Optional<IngestionJob> job = ingestionJobService.findJob(jobId);
+        if (job.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!updated) {
+            Map<String, Object> error = ingestionJobService.toView(job.get());
+            error.put("error", conflict);
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+        }
+        return ResponseEntity.accepted().body(ingestionJobService.toView(job.get()));
+    }
+    
     /**
      * Search for similar documents
      */
@@ -0,0 +1,77 @@
+package com.buddy.ui.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Chat request accepted through the asynchronous job API
+ * Lives in Postgres so that any instance can claim it and any instance can answer a poll for it
+ */
+@Entity
+@Table(name = "chat_jobs", indexes = {
+    @Index(name = "idx_chat_jobs_status_created_at", columnList = "status, created_at")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatJob {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+    
+    @Column(name = "session_id", nullable = false, length = 255)
+    private String sessionId;
+    
+    @Column(name = "user_id", nullable = false, length = 255)
+    private String userId;
+    
+    @Column(name = "content", nullable = false, columnDefinition = "TEXT")
+    private String content;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 16)
+    private ChatJobStatus status;
+    
+    // Runs of the job; rejections by the LLM limiter are not counted
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+    
+    // A requeued job is not claimed before then (the limiter's retry-after)
+    @Column(name = "not_before")
+    private LocalDateTime notBefore;
+    
+    // Instance that claimed the job
+    @Column(name = "worker", length = 255)
+    private String worker;
+    
+    // The AI message answering the request, once SUCCEEDED
+    @Column(name = "result_message_id")
+    private UUID resultMessageId;
+    
+    @Column(name = "error", columnDefinition = "TEXT")
+    private String error;
+    
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+    
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+    }
+}
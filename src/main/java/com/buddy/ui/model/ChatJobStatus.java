@@ -0,0 +1,12 @@
+package com.buddy.ui.model;
+
+public enum ChatJobStatus {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED;
+
+    public boolean isDone() {
+        return this == SUCCEEDED || this == FAILED;
+    }
+}
@@ -0,0 +1,44 @@
+package com.buddy.ui.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Rolling summary of the older part of a conversation
+ * Messages created up to summarizedUntil are represented by the summary instead of being replayed
+ */
+@Entity
+@Table(name = "conversation_summaries")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationSummary {
+    
+    @Id
+    @Column(name = "session_id", nullable = false, length = 255)
+    private String sessionId;
+    
+    @Column(name = "summary", nullable = false, columnDefinition = "TEXT")
+    private String summary;
+    
+    @Column(name = "summarized_until", nullable = false)
+    private LocalDateTime summarizedUntil;
+    
+    @Column(name = "summarized_messages", nullable = false)
+    private long summarizedMessages;
+    
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = LocalDateTime.now();
+    }
+}
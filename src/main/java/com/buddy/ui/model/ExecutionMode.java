@@ -0,0 +1,7 @@
+package com.buddy.ui.model;
+
+public enum ExecutionMode {
+    RAG_ONLY,
+    TOOL_ONLY,
+    FULL_AGENT
+}
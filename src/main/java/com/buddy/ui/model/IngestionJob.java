@@ -0,0 +1,107 @@
+package com.buddy.ui.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Knowledge-base ingestion submitted as a job
+ * Chunk IDs are content-addressed and chunking is deterministic, so a cancelled, failed or interrupted
+ * job resumes after its last committed chunk (processedChunks) without duplicating anything
+ */
+@Entity
+@Table(name = "ingestion_jobs", indexes = {
+    @Index(name = "idx_ingestion_jobs_status_created_at", columnList = "status, created_at")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestionJob {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", nullable = false, length = 16)
+    private IngestionJobType type;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 16)
+    private IngestionJobStatus status;
+    
+    // Original filename for documents, a short label otherwise
+    @Column(name = "source_name", length = 512)
+    private String sourceName;
+    
+    // Source ID of DOCUMENT jobs (text jobs derive theirs from the payload), names the ingestion run
+    @Column(name = "base_id", nullable = false, length = 255)
+    private String baseId;
+    
+    // Uploaded file in the shared storage directory (DOCUMENT jobs)
+    @Column(name = "storage_path", length = 1024)
+    private String storagePath;
+    
+    // Request body for text jobs, extra metadata for document jobs
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "payload", columnDefinition = "jsonb")
+    @Builder.Default
+    private Map<String, Object> payload = new HashMap<>();
+    
+    // Leading chunks known to be in ChromaDB, the point a resumed job continues from
+    @Column(name = "processed_chunks", nullable = false)
+    private long processedChunks;
+    
+    // Known once the input has been fully chunked
+    @Column(name = "total_chunks")
+    private Long totalChunks;
+    
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "result", columnDefinition = "jsonb")
+    private Map<String, Object> result;
+    
+    @Column(name = "error", columnDefinition = "TEXT")
+    private String error;
+    
+    @Column(name = "cancel_requested", nullable = false)
+    private boolean cancelRequested;
+    
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+    
+    @Column(name = "worker", length = 255)
+    private String worker;
+    
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+    
+    @Column(name = "heartbeat_at")
+    private LocalDateTime heartbeatAt;
+    
+    // Set while a running REEMBED job cuts over: writes to the knowledge base wait (KnowledgeBaseIndex)
+    @Column(name = "fenced_at")
+    private LocalDateTime fencedAt;
+    
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+    }
+}
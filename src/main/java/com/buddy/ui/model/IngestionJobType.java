@@ -0,0 +1,10 @@
+package com.buddy.ui.model;
+
+public enum IngestionJobType {
+    DOCUMENT,
+    TEXT,
+    TEXTS,
+    DOCUMENTS,
+    // Copy of the knowledge base into a new collection embedded with another model
+    REEMBED
+}
@@ -0,0 +1,20 @@
+package com.buddy.ui.model.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatBatchRequest {
+    
+    @NotEmpty(message = "requests is required")
+    @Size(max = 500, message = "at most 500 requests per batch")
+    private List<@Valid ChatRequest> requests;
+}
@@ -0,0 +1,23 @@
+package com.buddy.ui.model.dto;
+
+import com.buddy.ui.model.Message;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One NDJSON line of a batch response; index is the position of the request in the batch
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatBatchResult {
+    private int index;
+    private String sessionId;
+    private String status; // "ok", "error"
+    private Message message;
+    private String error;
+    private long durationMillis;
+}
@@ -0,0 +1,27 @@
+package com.buddy.ui.model.dto;
+
+import com.buddy.ui.model.ChatJobStatus;
+import com.buddy.ui.model.Message;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatJobResponse {
+    private UUID jobId;
+    private String sessionId;
+    private ChatJobStatus status;
+    // The AI message, once the job has SUCCEEDED
+    private Message message;
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime completedAt;
+}
@@ -0,0 +1,69 @@
+package com.buddy.ui.repository;
+
+import com.buddy.ui.model.ChatJob;
+import com.buddy.ui.model.ChatJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface ChatJobRepository extends JpaRepository<ChatJob, UUID> {
+    
+    /**
+     * Claim the oldest queued job that is due (not backing off) for the worker; SKIP LOCKED lets several
+     * instances claim concurrently without blocking on, or double-claiming, the same row
+     */
+    @Transactional
+    @Query(value = "UPDATE chat_jobs SET status = 'RUNNING', worker = :worker, started_at = :now, attempts = attempts + 1 "
+            + "WHERE id = (SELECT id FROM chat_jobs WHERE status = 'QUEUED' "
+            + "AND (not_before IS NULL OR not_before <= :now) ORDER BY created_at LIMIT 1 "
+            + "FOR UPDATE SKIP LOCKED) RETURNING id", nativeQuery = true)
+    Optional<UUID> claimNext(@Param("worker") String worker, @Param("now") LocalDateTime now);
+    
+    /**
+     * Claim a specific job if it is still queued; returns the number of claimed rows (0 or 1)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ChatJob j SET j.status = :running, j.worker = :worker, j.startedAt = :now, j.attempts = j.attempts + 1 "
+            + "WHERE j.id = :id AND j.status = :queued")
+    int claim(@Param("id") UUID id, @Param("worker") String worker, @Param("now") LocalDateTime now,
+              @Param("queued") ChatJobStatus queued, @Param("running") ChatJobStatus running);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE ChatJob j SET j.status = :status, j.resultMessageId = :resultMessageId, j.error = :error, "
+            + "j.completedAt = :now WHERE j.id = :id")
+    void complete(@Param("id") UUID id, @Param("status") ChatJobStatus status,
+                  @Param("resultMessageId") UUID resultMessageId, @Param("error") String error,
+                  @Param("now") LocalDateTime now);
+    
+    /**
+     * Queue a job the LLM limiter rejected again, to be claimed from notBefore on; the rejected run
+     * does not count as an attempt
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ChatJob j SET j.status = :queued, j.worker = null, j.startedAt = null, "
+            + "j.attempts = j.attempts - 1, j.notBefore = :notBefore WHERE j.id = :id")
+    void requeue(@Param("id") UUID id, @Param("notBefore") LocalDateTime notBefore,
+                 @Param("queued") ChatJobStatus queued);
+    
+    /**
+     * Fail jobs whose worker has been running them for longer than any turn may take (the instance died)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ChatJob j SET j.status = :failed, j.error = :error, j.completedAt = :now "
+            + "WHERE j.status = :running AND j.startedAt < :startedBefore")
+    int failStale(@Param("startedBefore") LocalDateTime startedBefore, @Param("error") String error,
+                  @Param("now") LocalDateTime now, @Param("running") ChatJobStatus running,
+                  @Param("failed") ChatJobStatus failed);
+}
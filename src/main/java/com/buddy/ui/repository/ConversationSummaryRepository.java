@@ -0,0 +1,9 @@
+package com.buddy.ui.repository;
+
+import com.buddy.ui.model.ConversationSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ConversationSummaryRepository extends JpaRepository<ConversationSummary, String> {
+}
@@ -0,0 +1,106 @@
+package com.buddy.ui.repository;
+
+import com.buddy.ui.model.IngestionJob;
+import com.buddy.ui.model.IngestionJobStatus;
+import com.buddy.ui.model.IngestionJobType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface IngestionJobRepository extends JpaRepository<IngestionJob, UUID> {
+    
+    /**
+     * Claim the oldest queued job for the worker; SKIP LOCKED lets several instances claim concurrently
+     * without blocking on, or double-claiming, the same row
+     */
+    @Transactional
+    @Query(value = "UPDATE ingestion_jobs SET status = 'RUNNING', worker = :worker, started_at = :now, "
+            + "heartbeat_at = :now, attempts = attempts + 1 "
+            + "WHERE id = (SELECT id FROM ingestion_jobs WHERE status = 'QUEUED' ORDER BY created_at LIMIT 1 "
+            + "FOR UPDATE SKIP LOCKED) RETURNING id", nativeQuery = true)
+    Optional<UUID> claimNext(@Param("worker") String worker, @Param("now") LocalDateTime now);
+    
+    /**
+     * Move the committed watermark forward (callbacks may arrive out of order)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE IngestionJob j SET j.processedChunks = CASE WHEN j.processedChunks < :processed "
+            + "THEN :processed ELSE j.processedChunks END, j.heartbeatAt = :now WHERE j.id = :id")
+    void updateProgress(@Param("id") UUID id, @Param("processed") long processed, @Param("now") LocalDateTime now);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE IngestionJob j SET j.totalChunks = :total WHERE j.id = :id")
+    void updateTotal(@Param("id") UUID id, @Param("total") long total);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE IngestionJob j SET j.heartbeatAt = :now WHERE j.id IN :ids")
+    void heartbeat(@Param("ids") Collection<UUID> ids, @Param("now") LocalDateTime now);
+    
+    @Query("SELECT j.id FROM IngestionJob j WHERE j.id IN :ids AND j.cancelRequested = true")
+    List<UUID> findCancelRequested(@Param("ids") Collection<UUID> ids);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE IngestionJob j SET j.cancelRequested = true WHERE j.id = :id AND j.status = :running")
+    int requestCancel(@Param("id") UUID id, @Param("running") IngestionJobStatus running);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE IngestionJob j SET j.status = :cancelled, j.completedAt = :now WHERE j.id = :id AND j.status = :queued")
+    int cancelQueued(@Param("id") UUID id, @Param("now") LocalDateTime now,
+                     @Param("queued") IngestionJobStatus queued, @Param("cancelled") IngestionJobStatus cancelled);
+    
+    /**
+     * Queue a failed or cancelled job again; it continues after its processed chunks
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE IngestionJob j SET j.status = :queued, j.cancelRequested = false, j.error = null, j.worker = null, "
+            + "j.completedAt = null WHERE j.id = :id AND j.status IN :resumable")
+    int resume(@Param("id") UUID id, @Param("queued") IngestionJobStatus queued,
+               @Param("resumable") Collection<IngestionJobStatus> resumable);
+    
+    /**
+     * Queue again the running jobs whose worker stopped sending heartbeats (the instance died)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE IngestionJob j SET j.status = :queued, j.worker = null, j.fencedAt = null "
+            + "WHERE j.status = :running AND j.heartbeatAt < :heartbeatBefore")
+    int requeueStale(@Param("heartbeatBefore") LocalDateTime heartbeatBefore,
+                     @Param("running") IngestionJobStatus running, @Param("queued") IngestionJobStatus queued);
+    
+    /**
+     * Latest job of the type that ended with the status (the active knowledge-base index is the latest
+     * succeeded REEMBED job)
+     */
+    Optional<IngestionJob> findFirstByTypeAndStatusOrderByCompletedAtDesc(IngestionJobType type, IngestionJobStatus status);
+    
+    boolean existsByTypeAndStatusIn(IngestionJobType type, Collection<IngestionJobStatus> statuses);
+    
+    /**
+     * Fence writes to the knowledge base for the cutover of a running job
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE IngestionJob j SET j.fencedAt = :now WHERE j.id = :id AND j.status = :running")
+    int fence(@Param("id") UUID id, @Param("now") LocalDateTime now, @Param("running") IngestionJobStatus running);
+    
+    /**
+     * Whether a job of the type with the status holds a write fence
+     */
+    boolean existsByTypeAndStatusAndFencedAtIsNotNull(IngestionJobType type, IngestionJobStatus status);
+}
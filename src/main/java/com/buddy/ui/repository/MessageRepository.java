@@ -9,6 +9,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -34,6 +35,12 @@ public interface MessageRepository extends JpaRepository<Message, UUID> {
     @Query("SELECT m FROM Message m WHERE m.sessionId = :sessionId ORDER BY m.createdAt ASC")
     List<Message> findMessagesBySessionIdOrderByCreatedAtAsc(@Param("sessionId") String sessionId);
     
+    @Query("SELECT m FROM Message m WHERE m.sessionId = :sessionId AND m.createdAt > :after ORDER BY m.createdAt DESC")
+    List<Message> findLastMessagesBySessionIdCreatedAfter(@Param("sessionId") String sessionId, @Param("after") LocalDateTime after, Pageable pageable);
+    
+    @Query("SELECT m FROM Message m WHERE m.sessionId = :sessionId AND m.createdAt > :after ORDER BY m.createdAt ASC")
+    List<Message> findMessagesBySessionIdCreatedAfter(@Param("sessionId") String sessionId, @Param("after") LocalDateTime after);
+    
     @Modifying
     @Transactional
     @Query("DELETE FROM Message m WHERE m.sessionId = :sessionId AND m.userId = :userId")
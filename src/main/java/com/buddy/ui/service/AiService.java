@@ -1,6 +1,7 @@
 package com.buddy.ui.service;
 
 import com.buddy.ui.config.AiConfig;
+import com.buddy.ui.config.HttpTransports;
 import com.buddy.ui.model.Message;
 import com.buddy.ui.model.dto.ChatMessage;
 import com.buddy.ui.repository.MessageRepository;
@@ -11,15 +12,12 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -30,9 +28,10 @@ import java.util.stream.Collectors;
 public class AiService {
     
     private final MessageRepository messageRepository;
-    private final RestTemplate restTemplate;
+    private final HttpTransports httpTransports;
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final ChromaDbService chromaDbService;
+    private final PromptAssembler promptAssembler;
     
     @Value("${spring.ai.custom-llm.base-url}")
     private String baseUrl;
@@ -109,13 +108,17 @@ public class AiService {
                 return "";
             }
             
+            List<String> texts = results.stream()
+                    .map(result -> (String) result.get("text"))
+                    .filter(text -> text != null && !text.isEmpty())
+                    .collect(Collectors.toList());
+            
+            // Keep the most relevant chunks that fit the retrieved-context budget
+            List<String> selected = promptAssembler.selectRetrievedContext(texts);
+            
             StringBuilder context = new StringBuilder("Bilgi Tabanından İlgili Bilgiler:\n\n");
-            for (int i = 0; i < results.size(); i++) {
-                Map<String, Object> result = results.get(i);
-                String text = (String) result.get("text");
-                if (text != null && !text.isEmpty()) {
-                    context.append(String.format("%d. %s\n", i + 1, text));
-                }
+            for (int i = 0; i < selected.size(); i++) {
+                context.append(String.format("%d. %s\n", i + 1, selected.get(i)));
             }
             
             return context.toString();
@@ -132,22 +135,23 @@ public class AiService {
     private List<ChatMessage> buildMessagesListWithRAG(List<Message> recentMessages, String userMessage, String ragContext) {
         List<ChatMessage> messages = new ArrayList<>();
         
-        // Add system message with persona and RAG context
-        String systemMessage = AiConfig.SYSTEM_PROMPT;
-        if (!ragContext.isEmpty()) {
-            systemMessage += "\n\n### MEVCUT BAĞLAM (RAG)\n" + ragContext;
-            systemMessage += "\n\nÖNEMLİ: Yukarıdaki bağlamdan gelen bilgileri kullanarak soruları cevapla. Eğer bağlamda bilgi yoksa, kullanıcıyı ilgili ekibe yönlendir.";
-        }
+        // Static system prompt only: it must stay byte-identical across requests so the
+        // gateway can reuse its prefix cache; the per-query RAG context goes into the last message
         messages.add(ChatMessage.builder()
                 .role("system")
-                .content(systemMessage)
+                .content(AiConfig.SYSTEM_PROMPT)
                 .build());
         
-        // Add conversation history (chronological order)
+        // Add conversation history (chronological order), dropping the oldest turns over the history budget
         List<Message> chronological = recentMessages.stream()
                 .sorted((m1, m2) -> m1.getCreatedAt().compareTo(m2.getCreatedAt()))
                 .collect(Collectors.toList());
         
+        int historyTokens = chronological.stream().mapToInt(msg -> TokenEstimator.estimate(msg.getContent())).sum();
+        while (!chronological.isEmpty() && historyTokens > promptAssembler.getHistoryBudget()) {
+            historyTokens -= TokenEstimator.estimate(chronological.remove(0).getContent());
+        }
+        
         for (Message msg : chronological) {
             if (msg.getSenderType() == com.buddy.ui.model.SenderType.USER) {
                 messages.add(ChatMessage.builder()
@@ -162,10 +166,15 @@ public class AiService {
             }
         }
         
-        // Add current user message
+        // Add current user message, followed by the retrieved context for this query
+        String currentMessage = userMessage;
+        if (!ragContext.isEmpty()) {
+            currentMessage += "\n\n### MEVCUT BAĞLAM (RAG)\n" + ragContext;
+            currentMessage += "\n\nÖNEMLİ: Yukarıdaki bağlamdan gelen bilgileri kullanarak soruları cevapla. Eğer bağlamda bilgi yoksa, kullanıcıyı ilgili ekibe yönlendir.";
+        }
         messages.add(ChatMessage.builder()
                 .role("user")
-                .content(userMessage)
+                .content(currentMessage)
                 .build());
         
         return messages;
@@ -184,7 +193,7 @@ public class AiService {
             headers.set("Content-Type", "application/json");
             headers.set("Authorization", "Bearer " + apiKey);
             
-            Map<String, Object> requestBody = new HashMap<>();
+            Map<String, Object> requestBody = new LinkedHashMap<>();
             requestBody.put("model", model);
             requestBody.put("messages", messages);
             requestBody.put("temperature", temperature);
@@ -194,20 +203,18 @@ public class AiService {
             requestBody.put("presence_penalty", presencePenalty);
             requestBody.put("seed", seed);
             
-            Map<String, Object> metadata = new HashMap<>();
+            Map<String, Object> metadata = new LinkedHashMap<>();
             metadata.put("username", username);
             metadata.put("pwd", password);
             requestBody.put("metadata", metadata);
             
-            HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
-            
             log.debug("Request URL: {}", url);
             log.debug("Request Body: {}", objectMapper.writeValueAsString(requestBody));
             
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.POST, request, String.class);
+            byte[] response = httpTransports.llm().post(url, headers, objectMapper.writeValueAsBytes(requestBody));
             
             // Parse response (OpenAI-compatible format)
-            JsonNode jsonResponse = objectMapper.readTree(response.getBody());
+            JsonNode jsonResponse = objectMapper.readTree(response);
             JsonNode choices = jsonResponse.get("choices");
             
             if (choices != null && choices.isArray() && choices.size() > 0) {
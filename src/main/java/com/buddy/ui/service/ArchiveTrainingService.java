@@ -0,0 +1,301 @@
+package com.buddy.ui.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveException;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.ArchiveStreamFactory;
+import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk ingestion of a zip or tar archive (optionally gzip/bzip2/xz compressed), e.g. a department's
+ * document set
+ * - The upload is spooled to disk and read as a stream; each supported entry is copied to a temp file
+ *   and parsed, chunked and ingested like an uploaded document (DocumentTrainingService)
+ * - At most `parallelism` entries (default: available cores) are extracted at a time, which also bounds
+ *   the temp files on disk; embedding and upserts are shared through the ingestion pipeline
+ * - Entry names are only used as document names, never as paths
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ArchiveTrainingService {
+
+    private final DocumentTrainingService documentTrainingService;
+
+    // 0 = available cores
+    @Value("${spring.rag.archive.parallelism:0}")
+    private int configuredParallelism;
+
+    @Value("${spring.rag.archive.max-entries:2000}")
+    private int maxEntries;
+
+    @Value("${spring.rag.archive.max-entry-size:100MB}")
+    private DataSize maxEntrySize;
+
+    @Value("${spring.rag.archive.extensions:pdf,doc,docx,txt,md,rtf,odt,html,htm,pptx}")
+    private String extensions;
+
+    private int parallelism;
+    private Set<String> supportedExtensions;
+    private ExecutorService executor;
+
+    @PostConstruct
+    void start() {
+        parallelism = configuredParallelism > 0 ? configuredParallelism : Runtime.getRuntime().availableProcessors();
+        supportedExtensions = Arrays.stream(extensions.split(","))
+                .map(extension -> extension.trim().toLowerCase(Locale.ROOT))
+                .filter(extension -> !extension.isEmpty())
+                .collect(Collectors.toSet());
+        executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("archive-", 0).factory());
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Ingest every supported document of the archive
+     *
+     * @return per-file results (files) and a throughput summary
+     */
+    public Map<String, Object> trainWithArchive(MultipartFile archive, Map<String, Object> metadata) {
+        long start = System.nanoTime();
+        Path workDir = null;
+        List<CompletableFuture<Map<String, Object>>> files = new ArrayList<>();
+        try {
+            workDir = Files.createTempDirectory("buddy-archive-");
+            Path spooled = workDir.resolve("upload");
+            archive.transferTo(spooled);
+            log.info("Processing archive {} ({} bytes), parallelism {}", archive.getOriginalFilename(),
+                    Files.size(spooled), parallelism);
+
+            Map<String, Object> entryMetadata = new HashMap<>();
+            if (metadata != null) {
+                entryMetadata.putAll(metadata);
+            }
+            entryMetadata.put("archive", archive.getOriginalFilename());
+
+            extract(spooled, workDir, entryMetadata, files);
+            List<Map<String, Object>> results = new ArrayList<>(files.size());
+            for (CompletableFuture<Map<String, Object>> file : files) {
+                results.add(file.join());
+            }
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("message", "Archive processed and added to knowledge base");
+            result.put("archive", archive.getOriginalFilename());
+            result.put("files", results);
+            result.put("summary", summary(results, Files.size(spooled), System.nanoTime() - start));
+            return result;
+
+        } catch (Exception e) {
+            log.error("Error processing archive: {}", archive.getOriginalFilename(), e);
+            throw new RuntimeException("Failed to process archive: " + e.getMessage(), e);
+        } finally {
+            // Entries still being ingested (extraction failed half-way) read from the work directory
+            CompletableFuture.allOf(files.toArray(CompletableFuture[]::new)).exceptionally(e -> null).join();
+            if (workDir != null) {
+                try {
+                    FileSystemUtils.deleteRecursively(workDir);
+                } catch (IOException e) {
+                    log.warn("Failed to delete archive work directory {}: {}", workDir, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the archive sequentially, handing each supported entry to a worker as soon as it is on disk
+     */
+    private void extract(Path spooled, Path workDir, Map<String, Object> metadata,
+                         List<CompletableFuture<Map<String, Object>>> files) throws IOException, ArchiveException {
+        Semaphore slots = new Semaphore(parallelism);
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(spooled));
+             ArchiveInputStream entries = openArchive(in)) {
+            ArchiveEntry entry;
+            while ((entry = entries.getNextEntry()) != null) {
+                String name = entry.getName();
+                if (entry.isDirectory() || !entries.canReadEntryData(entry)) {
+                    continue;
+                }
+                if (!isSupported(name)) {
+                    files.add(CompletableFuture.completedFuture(fileResult(name, "skipped", "Unsupported file type")));
+                    continue;
+                }
+                if (entry.getSize() > maxEntrySize.toBytes()) {
+                    files.add(CompletableFuture.completedFuture(fileResult(name, "skipped", "File too large")));
+                    continue;
+                }
+                if (files.size() >= maxEntries) {
+                    throw new IllegalArgumentException("Archive has more than " + maxEntries + " files");
+                }
+
+                slots.acquireUninterruptibly();
+                Path file = workDir.resolve("entry-" + files.size());
+                long size;
+                try {
+                    size = copy(entries, file, maxEntrySize.toBytes() + 1);
+                } catch (IOException | RuntimeException e) {
+                    slots.release();
+                    throw e;
+                }
+                if (size > maxEntrySize.toBytes()) {
+                    // Size not in the header (streamed zip entry); the rest of the entry is skipped
+                    slots.release();
+                    Files.deleteIfExists(file);
+                    files.add(CompletableFuture.completedFuture(fileResult(name, "skipped", "File too large")));
+                    continue;
+                }
+                files.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return ingest(name, file, size, metadata);
+                    } finally {
+                        slots.release();
+                    }
+                }, executor));
+            }
+        }
+    }
+
+    /**
+     * Copy at most limit bytes of the current entry to file
+     */
+    private static long copy(InputStream entry, Path file, long limit) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long copied = 0;
+        try (OutputStream out = Files.newOutputStream(file)) {
+            int read;
+            while (copied < limit && (read = entry.read(buffer, 0, (int) Math.min(buffer.length, limit - copied))) > 0) {
+                out.write(buffer, 0, read);
+                copied += read;
+            }
+        }
+        return copied;
+    }
+
+    private Map<String, Object> ingest(String name, Path file, long size, Map<String, Object> metadata) {
+        long start = System.nanoTime();
+        Map<String, Object> result;
+        try {
+            Map<String, Object> document = documentTrainingService.trainWithDocument(new FileSystemResource(file),
+                    name, metadata, documentTrainingService.generateSourceId(name), null);
+            result = fileResult(name, "ok", null);
+            result.putAll(document);
+            result.remove("message");
+            result.remove("filename");
+        } catch (RuntimeException e) {
+            log.warn("Archive entry {} failed: {}", name, e.getMessage());
+            result = fileResult(name, "error", e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.debug("Failed to delete archive entry file {}: {}", file, e.getMessage());
+            }
+        }
+        result.put("bytes", size);
+        result.put("durationMillis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return result;
+    }
+
+    /**
+     * Archive stream over the (possibly compressed) upload; formats are detected from the content
+     */
+    private static ArchiveInputStream openArchive(InputStream in) throws ArchiveException {
+        InputStream archive = in;
+        try {
+            CompressorStreamFactory.detect(in);
+            archive = new BufferedInputStream(new CompressorStreamFactory().createCompressorInputStream(in));
+        } catch (CompressorException notCompressed) {
+            // Plain zip or tar
+        }
+        return new ArchiveStreamFactory().createArchiveInputStream(archive);
+    }
+
+    private boolean isSupported(String name) {
+        String fileName = name.substring(name.lastIndexOf('/') + 1);
+        if (fileName.startsWith(".") || name.startsWith("__MACOSX/")) {
+            return false;
+        }
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 && supportedExtensions.contains(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private static Map<String, Object> fileResult(String name, String status, String error) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("file", name);
+        result.put("status", status);
+        if (error != null) {
+            result.put("error", error);
+        }
+        return result;
+    }
+
+    private static Map<String, Object> summary(List<Map<String, Object>> results, long archiveBytes, long elapsedNanos) {
+        long ok = 0;
+        long failed = 0;
+        long skipped = 0;
+        long bytes = 0;
+        long chunks = 0;
+        for (Map<String, Object> result : results) {
+            switch ((String) result.get("status")) {
+                case "ok" -> ok++;
+                case "error" -> failed++;
+                default -> skipped++;
+            }
+            if (result.get("bytes") instanceof Number size) {
+                bytes += size.longValue();
+            }
+            if (result.get("chunks") instanceof Number count) {
+                chunks += count.longValue();
+            }
+        }
+        double seconds = Math.max(elapsedNanos / 1e9, 0.001);
+
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("files", results.size());
+        summary.put("succeeded", ok);
+        summary.put("failed", failed);
+        summary.put("skipped", skipped);
+        summary.put("archiveBytes", archiveBytes);
+        summary.put("extractedBytes", bytes);
+        summary.put("chunks", chunks);
+        summary.put("durationMillis", TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        summary.put("filesPerSecond", Math.round(ok / seconds * 100) / 100.0);
+        summary.put("megabytesPerSecond", Math.round(bytes / 1e6 / seconds * 100) / 100.0);
+        summary.put("chunksPerSecond", Math.round(chunks / seconds * 100) / 100.0);
+        return summary;
+    }
+}
@@ -0,0 +1,110 @@
+package com.buddy.ui.service;
+
+import com.buddy.ui.model.Message;
+import com.buddy.ui.model.dto.ChatBatchResult;
+import com.buddy.ui.model.dto.ChatRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Bulk chat turns, e.g. replaying the canned onboarding questions after a knowledge-base update
+ * - At most `parallelism` turns of a batch run at a time
+ * - Requests of the same session run one after another in batch order, so each turn sees the
+ *   previous ones in its conversation memory; different sessions run in parallel
+ * - Query embeddings and retrieval results are shared across the batch (RetrievalCache), so
+ *   repeated questions cost one embedding call and one vector search
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChatBatchService {
+
+    private final ChatService chatService;
+    private final DeadlinePolicy deadlinePolicy;
+    private final ExecutorService chatTurnExecutor;
+
+    @Value("${spring.ai.chat-batch.parallelism:4}")
+    private int parallelism;
+
+    /**
+     * Process the batch; onResult is called as each request completes (in completion order,
+     * never concurrently). Cancelling stops the running turns and skips the ones not started yet
+     */
+    public CompletableFuture<Void> process(List<ChatRequest> requests, TurnCancellation cancellation,
+                                           Consumer<ChatBatchResult> onResult) {
+        Map<String, List<Integer>> sessions = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            sessions.computeIfAbsent(requests.get(i).getSessionId(), sessionId -> new ArrayList<>()).add(i);
+        }
+        log.info("Processing chat batch of {} request(s) in {} session(s), parallelism {}",
+                requests.size(), sessions.size(), parallelism);
+
+        long start = System.nanoTime();
+        RetrievalCache cache = new RetrievalCache();
+        Semaphore slots = new Semaphore(parallelism, true);
+        Consumer<ChatBatchResult> sink = result -> {
+            synchronized (onResult) {
+                onResult.accept(result);
+            }
+        };
+
+        List<CompletableFuture<Void>> sessionRuns = new ArrayList<>();
+        for (List<Integer> indexes : sessions.values()) {
+            sessionRuns.add(CompletableFuture.runAsync(() -> {
+                for (int index : indexes) {
+                    if (cancellation.isCancelled()) {
+                        return;
+                    }
+                    slots.acquireUninterruptibly();
+                    try {
+                        sink.accept(processOne(index, requests.get(index), cache, cancellation));
+                    } finally {
+                        slots.release();
+                    }
+                }
+            }, chatTurnExecutor));
+        }
+
+        return CompletableFuture.allOf(sessionRuns.toArray(CompletableFuture[]::new))
+                .whenComplete((done, error) -> log.info(
+                        "Chat batch of {} request(s) finished in {} ms ({} embedding/retrieval call(s) shared{})",
+                        requests.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), cache.getHits(),
+                        cancellation.isCancelled() ? ", cancelled" : ""));
+    }
+
+    /**
+     * Upper bound on how long a batch can take: every turn within the default deadline, one after another
+     */
+    public Duration maxDuration(int requests) {
+        return deadlinePolicy.getDefaultBudget().multipliedBy(requests);
+    }
+
+    private ChatBatchResult processOne(int index, ChatRequest request, RetrievalCache cache,
+                                       TurnCancellation cancellation) {
+        long start = System.nanoTime();
+        ChatBatchResult.ChatBatchResultBuilder result = ChatBatchResult.builder()
+                .index(index)
+                .sessionId(request.getSessionId());
+        try (RetrievalCache.Scope scope = cache.bind()) {
+            Message answer = chatService.processMessage(request, deadlinePolicy.deadlineFor(null), cancellation);
+            result.status("ok").message(answer);
+        } catch (RuntimeException e) {
+            log.warn("Chat batch request {} (session {}) failed: {}", index, request.getSessionId(), e.getMessage());
+            result.status("error").error(e.getMessage());
+        }
+        return result.durationMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).build();
+    }
+}
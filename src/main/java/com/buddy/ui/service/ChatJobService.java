@@ -0,0 +1,222 @@
+package com.buddy.ui.service;
+
+import com.buddy.ui.config.LlmOverloadedException;
+import com.buddy.ui.model.ChatJob;
+import com.buddy.ui.model.ChatJobStatus;
+import com.buddy.ui.model.Message;
+import com.buddy.ui.model.dto.ChatJobResponse;
+import com.buddy.ui.model.dto.ChatRequest;
+import com.buddy.ui.repository.ChatJobRepository;
+import com.buddy.ui.repository.MessageRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous chat turns for clients that cannot hold a request open for the whole LLM latency
+ * - submit stores a QUEUED job and hands it to a local worker right away when one is free
+ * - Every instance polls for queued jobs (claimed with SKIP LOCKED), so a job submitted to a busy
+ *   instance is picked up by whichever instance has a free worker
+ * - Workers are virtual threads, at most `workers` per instance
+ * - Long-poll waiters are woken directly by a local worker, or by the periodic poll when the job
+ *   ran on another instance
+ * - A job the LLM limiter rejects is queued again and not claimed before the limiter's retry-after;
+ *   it keeps retrying until max-queue-time after its submission
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChatJobService {
+
+    private final ChatJobRepository chatJobRepository;
+    private final MessageRepository messageRepository;
+    private final ChatService chatService;
+    private final DeadlinePolicy deadlinePolicy;
+
+    @Value("${spring.ai.chat-jobs.workers:8}")
+    private int workers;
+
+    @Value("${spring.ai.chat-jobs.max-queue-time:10m}")
+    private Duration maxQueueTime;
+
+    @Value("${spring.ai.chat-jobs.max-wait:25s}")
+    private Duration maxWait;
+
+    private final String workerId = ManagementFactory.getRuntimeMXBean().getName();
+    private final Map<UUID, List<CompletableFuture<ChatJob>>> waiters = new ConcurrentHashMap<>();
+    private Semaphore freeWorkers;
+    private ExecutorService executor;
+
+    @PostConstruct
+    void start() {
+        freeWorkers = new Semaphore(workers);
+        executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("chat-job-", 0).factory());
+        log.info("Chat job workers: {} on {}", workers, workerId);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        executor.shutdown();
+        // Jobs still running here are failed as stale by another instance once they exceed the max deadline
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    public ChatJob submit(ChatRequest request) {
+        ChatJob job = chatJobRepository.save(ChatJob.builder()
+                .sessionId(request.getSessionId())
+                .userId(request.getUserId())
+                .content(request.getContent())
+                .status(ChatJobStatus.QUEUED)
+                .build());
+        log.info("Queued chat job {} for session: {}", job.getId(), job.getSessionId());
+
+        if (freeWorkers.tryAcquire()) {
+            if (chatJobRepository.claim(job.getId(), workerId, LocalDateTime.now(),
+                    ChatJobStatus.QUEUED, ChatJobStatus.RUNNING) == 1) {
+                executor.execute(() -> run(job.getId()));
+            } else {
+                freeWorkers.release();
+            }
+        }
+        return job;
+    }
+
+    public Optional<ChatJob> findJob(UUID jobId) {
+        return chatJobRepository.findById(jobId);
+    }
+
+    /**
+     * The job once it is done, or its current state after waiting at most min(wait, max-wait)
+     */
+    public CompletableFuture<ChatJob> awaitJob(ChatJob job, Duration wait) {
+        if (job.getStatus().isDone() || wait.isZero() || wait.isNegative()) {
+            return CompletableFuture.completedFuture(job);
+        }
+        UUID jobId = job.getId();
+        CompletableFuture<ChatJob> waiter = new CompletableFuture<>();
+        waiters.computeIfAbsent(jobId, id -> new CopyOnWriteArrayList<>()).add(waiter);
+        waiter.whenComplete((done, error) -> waiters.computeIfPresent(jobId, (id, list) -> {
+            list.remove(waiter);
+            return list.isEmpty() ? null : list;
+        }));
+
+        // The job may have finished between the read and the registration
+        chatJobRepository.findById(jobId)
+                .filter(current -> current.getStatus().isDone())
+                .ifPresent(waiter::complete);
+
+        Duration timeout = wait.compareTo(maxWait) > 0 ? maxWait : wait;
+        return waiter.completeOnTimeout(null, timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .thenApply(done -> done != null ? done : chatJobRepository.findById(jobId).orElse(job));
+    }
+
+    public ChatJobResponse toResponse(ChatJob job) {
+        Message message = job.getResultMessageId() == null ? null
+                : messageRepository.findById(job.getResultMessageId()).orElse(null);
+        return ChatJobResponse.builder()
+                .jobId(job.getId())
+                .sessionId(job.getSessionId())
+                .status(job.getStatus())
+                .message(message)
+                .error(job.getError())
+                .createdAt(job.getCreatedAt())
+                .startedAt(job.getStartedAt())
+                .completedAt(job.getCompletedAt())
+                .build();
+    }
+
+    /**
+     * Claim queued jobs for the free workers, wake waiters of jobs finished on other instances,
+     * and fail jobs abandoned by a dead instance
+     */
+    @Scheduled(initialDelayString = "${spring.ai.chat-jobs.poll-interval:PT1S}",
+               fixedDelayString = "${spring.ai.chat-jobs.poll-interval:PT1S}")
+    public void poll() {
+        while (freeWorkers.tryAcquire()) {
+            Optional<UUID> claimed = chatJobRepository.claimNext(workerId, LocalDateTime.now());
+            if (claimed.isEmpty()) {
+                freeWorkers.release();
+                break;
+            }
+            executor.execute(() -> run(claimed.get()));
+        }
+
+        if (!waiters.isEmpty()) {
+            for (ChatJob job : chatJobRepository.findAllById(List.copyOf(waiters.keySet()))) {
+                if (job.getStatus().isDone()) {
+                    wake(job);
+                }
+            }
+        }
+
+        // A turn never runs past the max deadline, the margin covers the fallback answer and persistence
+        LocalDateTime startedBefore = LocalDateTime.now().minus(deadlinePolicy.getMaxBudget()).minusMinutes(1);
+        int stale = chatJobRepository.failStale(startedBefore, "Worker stopped before finishing the job",
+                LocalDateTime.now(), ChatJobStatus.RUNNING, ChatJobStatus.FAILED);
+        if (stale > 0) {
+            log.warn("Failed {} stale chat job(s)", stale);
+        }
+    }
+
+    private void run(UUID jobId) {
+        try {
+            ChatJob job = chatJobRepository.findById(jobId).orElseThrow();
+            ChatRequest request = new ChatRequest(job.getSessionId(), job.getContent(), job.getUserId());
+            try {
+                // Nobody holds a connection open for the answer, so the turn gets the max budget
+                Message answer = chatService.processMessage(request,
+                        deadlinePolicy.deadlineFor(deadlinePolicy.getMaxBudget().toMillis()), new TurnCancellation());
+                chatJobRepository.complete(jobId, ChatJobStatus.SUCCEEDED, answer.getId(), null, LocalDateTime.now());
+                log.info("Chat job {} succeeded", jobId);
+            } catch (LlmOverloadedException e) {
+                // The turn rolled back, so it can simply run again once capacity frees up
+                long retryAfter = Math.max(e.getRetryAfterSeconds(), 1);
+                LocalDateTime notBefore = LocalDateTime.now().plusSeconds(retryAfter);
+                if (notBefore.isBefore(job.getCreatedAt().plus(maxQueueTime))) {
+                    log.info("Chat job {} rejected by the LLM limiter, retrying in {}s", jobId, retryAfter);
+                    chatJobRepository.requeue(jobId, notBefore, ChatJobStatus.QUEUED);
+                    return;
+                }
+                fail(jobId, e);
+            } catch (RuntimeException e) {
+                fail(jobId, e);
+            }
+        } finally {
+            freeWorkers.release();
+            chatJobRepository.findById(jobId)
+                    .filter(job -> job.getStatus().isDone())
+                    .ifPresent(this::wake);
+        }
+    }
+
+    private void fail(UUID jobId, RuntimeException e) {
+        log.error("Chat job {} failed", jobId, e);
+        chatJobRepository.complete(jobId, ChatJobStatus.FAILED, null, e.getMessage(), LocalDateTime.now());
+    }
+
+    private void wake(ChatJob job) {
+        List<CompletableFuture<ChatJob>> jobWaiters = waiters.remove(job.getId());
+        if (jobWaiters != null) {
+            jobWaiters.forEach(waiter -> waiter.complete(job));
+        }
+    }
+}
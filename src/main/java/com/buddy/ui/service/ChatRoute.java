@@ -0,0 +1,81 @@
+package com.buddy.ui.service;
+
+import com.buddy.ui.model.ExecutionMode;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Routing decision for a single chat turn
+ * Decides up front whether to retrieve, which tools to attach and which prompt variant to use
+ *
+ * @param queryEmbedding embedding of the message when the router computed one (centroids), reused by
+ *                       retrieval; null otherwise, and not part of the stored metadata
+ */
+public record ChatRoute(ExecutionMode mode, boolean retrieve, ToolGroup toolGroup, String reason,
+                        QueryEmbedding queryEmbedding) {
+
+    /**
+     * Tool sets that can be attached to a TOOL_ONLY route
+     */
+    public enum ToolGroup {
+        ACCESS_REQUEST,
+        MENTOR_MATCHING
+    }
+
+    public record QueryEmbedding(String text, String model, List<Float> vector) {
+    }
+
+    public static ChatRoute ragOnly(String reason) {
+        return new ChatRoute(ExecutionMode.RAG_ONLY, true, null, reason, null);
+    }
+
+    public static ChatRoute direct(String reason) {
+        return new ChatRoute(ExecutionMode.RAG_ONLY, false, null, reason, null);
+    }
+
+    public static ChatRoute toolOnly(ToolGroup toolGroup, String reason) {
+        return new ChatRoute(ExecutionMode.TOOL_ONLY, false, toolGroup, reason, null);
+    }
+
+    public static ChatRoute fullAgent(String reason) {
+        return new ChatRoute(ExecutionMode.FULL_AGENT, true, null, reason, null);
+    }
+
+    public ChatRoute withQueryEmbedding(QueryEmbedding queryEmbedding) {
+        return new ChatRoute(mode, retrieve, toolGroup, reason, queryEmbedding);
+    }
+
+    /**
+     * Route metadata stored on the AI message so the next turn can stay on the same route
+     */
+    public Map<String, Object> toMetadata() {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("route", mode.name());
+        metadata.put("retrieve", retrieve);
+        if (toolGroup != null) {
+            metadata.put("toolGroup", toolGroup.name());
+        }
+        metadata.put("routeReason", reason);
+        return metadata;
+    }
+
+    /**
+     * Restore a route from AI message metadata, returns null if metadata has no route
+     */
+    public static ChatRoute fromMetadata(Map<String, Object> metadata) {
+        if (metadata == null || !(metadata.get("route") instanceof String route)) {
+            return null;
+        }
+        try {
+            ExecutionMode mode = ExecutionMode.valueOf(route);
+            boolean retrieve = !Boolean.FALSE.equals(metadata.get("retrieve"));
+            ToolGroup toolGroup = metadata.get("toolGroup") instanceof String group
+                    ? ToolGroup.valueOf(group) : null;
+            return new ChatRoute(mode, retrieve, toolGroup, "previous turn", null);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package com.buddy.ui.service;
 
-import com.buddy.ui.assistant.BuddyAssistant;
+import com.buddy.ui.config.RoutedAssistants;
 import com.buddy.ui.model.Message;
 import com.buddy.ui.model.SenderType;
 import com.buddy.ui.model.dto.ChatRequest;
@@ -15,8 +15,13 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,10 +30,25 @@ import java.util.stream.Collectors;
 public class ChatService {
     
     private final MessageRepository messageRepository;
-    private final BuddyAssistant buddyAssistant;
+    private final RoutedAssistants routedAssistants;
+    private final IntentRouter intentRouter;
+    private final ConversationMemoryService conversationMemoryService;
+    private final ExtractiveFallbackService extractiveFallbackService;
+    private final DeadlinePolicy deadlinePolicy;
     
     @Transactional
     public Message processMessage(ChatRequest request) {
+        return processMessage(request, deadlinePolicy.deadlineFor(null), new TurnCancellation());
+    }
+    
+    /**
+     * Process a chat turn that must be answered by deadlineNanos (System.nanoTime() based)
+     * Every outbound call of the turn gets the remaining time as its timeout. If the turn is cancelled
+     * (client disconnected) before the answer is generated, in-flight calls are aborted, no AI message
+     * is stored and the user message is marked as abandoned; that user message is returned instead
+     */
+    @Transactional
+    public Message processMessage(ChatRequest request, long deadlineNanos, TurnCancellation cancellation) {
         log.info("Processing message for session: {}, user: {}", request.getSessionId(), request.getUserId());
         
         // Step 1: Save user message
@@ -42,26 +62,87 @@ public class ChatService {
         userMessage = messageRepository.save(userMessage);
         log.debug("User message saved with ID: {}", userMessage.getId());
         
-        // Step 2: Generate AI response using BuddyAssistant (LangChain4j)
-        String aiResponseText = buddyAssistant.chat(request.getContent());
-        log.debug("AI response generated: {}", aiResponseText);
+        ChatRoute previousRoute = findPreviousRoute(request.getSessionId());
+        String aiResponseText;
+        Map<String, Object> metadata = new HashMap<>();
+        ChatTurnContext turn = ChatTurnContext.open(
+                request.getSessionId(), request.getUserId(), null, deadlineNanos, cancellation);
+        try (turn) {
+            // Step 2: Route the turn (RAG-only, tool-only or full agent) before any LLM call; inside the
+            // turn, so the router's embedding calls share its deadline and cancellation
+            ChatRoute route = intentRouter.route(request.getContent(), previousRoute);
+            turn.setRoute(route);
+            metadata.putAll(route.toMetadata());
+            log.info("Routing session {} to {} (retrieve: {}, tools: {}, reason: {})",
+                    request.getSessionId(), route.mode(), route.retrieve(), route.toolGroup(), route.reason());
+            
+            // Step 3: Generate AI response using the assistant for the route (LangChain4j)
+            aiResponseText = routedAssistants.chat(route, request.getContent());
+            metadata.putAll(turn.tokenMetadata());
+        } catch (RuntimeException e) {
+            if (cancellation.isCancelled()) {
+                return markAbandoned(userMessage, turn);
+            }
+            if (!extractiveFallbackService.shouldFallBack(e)) {
+                throw e;
+            }
+            // Gateway down, circuit open or out of time: answer from the retrieved chunks instead of failing the turn
+            aiResponseText = extractiveFallbackService.answer(turn, e, metadata);
+        }
+        log.debug("AI response generated: {} (tokens: {})", aiResponseText, metadata);
         
-        // Step 3: Create AI message from response
+        // Step 4: Create AI message from response
         Message aiMessage = Message.builder()
                 .sessionId(request.getSessionId())
                 .senderType(SenderType.AI)
                 .content(aiResponseText)
                 .userId(request.getUserId())
+                .metadata(metadata)
                 .build();
         
-        // Step 4: Save AI response
+        // Step 5: Save AI response
         aiMessage = messageRepository.save(aiMessage);
         log.debug("AI message saved with ID: {}", aiMessage.getId());
         
-        // Step 5: Return AI message
+        // Step 6: Fold older turns into the rolling summary once this turn is committed
+        String sessionId = request.getSessionId();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                conversationMemoryService.scheduleSummarization(sessionId);
+            }
+        });
+        
+        // Step 7: Return AI message
         return aiMessage;
     }
     
+    /**
+     * Record how far a cancelled turn got (LLM calls, tokens) on its user message
+     * Tool calls made before the cancellation are not rolled back, so they stay visible here
+     */
+    private Message markAbandoned(Message userMessage, ChatTurnContext turn) {
+        Map<String, Object> metadata = new HashMap<>(turn.tokenMetadata());
+        metadata.put("abandoned", true);
+        metadata.put("abandonedAt", LocalDateTime.now().toString());
+        userMessage.setMetadata(metadata);
+        log.info("Chat turn of session {} abandoned by the client after {} LLM call(s)",
+                userMessage.getSessionId(), metadata.get("llmCalls"));
+        return messageRepository.save(userMessage);
+    }
+    
+    /**
+     * Route of the latest AI message in the session, used to keep multi-turn tool conversations sticky
+     */
+    private ChatRoute findPreviousRoute(String sessionId) {
+        List<Message> lastMessages = messageRepository.findLastMessagesBySessionId(sessionId, PageRequest.of(0, 2));
+        return lastMessages.stream()
+                .filter(message -> message.getSenderType() == SenderType.AI)
+                .findFirst()
+                .map(message -> ChatRoute.fromMetadata(message.getMetadata()))
+                .orElse(null);
+    }
+    
     @Transactional(readOnly = true)
     public ConversationPageResponse getConversationsByUserId(String userId, int page, int size) {
         log.info("Fetching conversations for user: {}, page: {}, size: {}", userId, page, size);
@@ -142,6 +223,7 @@ public class ChatService {
         
         // Delete all messages in the conversation
         messageRepository.deleteBySessionIdAndUserId(sessionId, userId);
+        conversationMemoryService.forget(sessionId);
         
         log.info("Successfully deleted {} messages for session: {}", messageCount, sessionId);
     }
@@ -0,0 +1,11 @@
+package com.buddy.ui.service;
+
+/**
+ * The chat turn was cancelled (client disconnected) before it could finish
+ */
+public class ChatTurnCancelledException extends RuntimeException {
+
+    public ChatTurnCancelledException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,226 @@
+package com.buddy.ui.service;
+
+import dev.langchain4j.data.message.ChatMessage;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Per-turn state shared between ChatService and the LangChain4j components it drives
+ * AiServices calls the model, retrieval augmentor and tools on the calling thread,
+ * so the context is bound to that thread for the duration of the turn
+ */
+public final class ChatTurnContext implements AutoCloseable {
+
+    private static final ThreadLocal<ChatTurnContext> CURRENT = new ThreadLocal<>();
+
+    private final String sessionId;
+    private final String userId;
+    // Set once the turn is routed (routing runs inside the turn), null until then
+    private volatile ChatRoute route;
+    // System.nanoTime() by which the turn must be answered, 0 when the turn has no deadline
+    private final long deadlineNanos;
+    private final TurnCancellation cancellation;
+    private final List<String> degradations = new ArrayList<>();
+    // Chat memory of the turn (SummarizingChatMemory), dropped with the context once the turn ends
+    private List<ChatMessage> chatMemory = new ArrayList<>();
+    // Chunks retrieved for the turn (id, text), most relevant first
+    private List<Map<String, Object>> retrievedChunks = List.of();
+
+    private int llmCalls;
+    private int estimatedPromptTokens;
+    private int actualPromptTokens;
+    private int cachedPromptTokens;
+    private int completionTokens;
+
+    private ChatTurnContext(String sessionId, String userId, ChatRoute route, long deadlineNanos,
+                            TurnCancellation cancellation) {
+        this.sessionId = sessionId;
+        this.userId = userId;
+        this.route = route;
+        this.deadlineNanos = deadlineNanos;
+        this.cancellation = cancellation;
+    }
+
+    /**
+     * Bind a new context to the current thread, use with try-with-resources
+     */
+    public static ChatTurnContext open(String sessionId, String userId, ChatRoute route) {
+        return open(sessionId, userId, route, 0, new TurnCancellation());
+    }
+
+    /**
+     * Bind a new context whose outbound calls must finish by deadlineNanos (System.nanoTime() based)
+     * and stop once the cancellation is triggered
+     */
+    public static ChatTurnContext open(String sessionId, String userId, ChatRoute route, long deadlineNanos,
+                                       TurnCancellation cancellation) {
+        ChatTurnContext context = new ChatTurnContext(sessionId, userId, route, deadlineNanos, cancellation);
+        CURRENT.set(context);
+        return context;
+    }
+
+    public static Optional<ChatTurnContext> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public ChatRoute getRoute() {
+        return route;
+    }
+
+    public void setRoute(ChatRoute route) {
+        this.route = route;
+    }
+
+    /**
+     * Time left until the deadline, empty when the turn has no deadline
+     * Throws DeadlineExceededException once the deadline has passed, and ChatTurnCancelledException
+     * once the turn is cancelled, so no further hop is started
+     */
+    public Optional<Duration> remaining() {
+        if (cancellation.isCancelled()) {
+            throw new ChatTurnCancelledException("Chat turn of session " + sessionId + " was cancelled");
+        }
+        if (deadlineNanos == 0) {
+            return Optional.empty();
+        }
+        long remaining = deadlineNanos - System.nanoTime();
+        if (remaining <= 0) {
+            throw new DeadlineExceededException("Chat turn deadline exceeded by "
+                    + Duration.ofNanos(-remaining).toMillis() + " ms");
+        }
+        return Optional.of(Duration.ofNanos(remaining));
+    }
+
+    public boolean isExpired() {
+        return deadlineNanos != 0 && deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Timeout for the next outbound call of the current turn: the remaining budget,
+     * or null (transport default) outside a turn or without a deadline
+     */
+    public static Duration callTimeout() {
+        ChatTurnContext context = CURRENT.get();
+        return context == null ? null : context.remaining().orElse(null);
+    }
+
+    public boolean isCancelled() {
+        return cancellation.isCancelled();
+    }
+
+    /**
+     * Register an outbound async call of this turn so that cancelling the turn cancels it
+     */
+    public <T> CompletableFuture<T> track(CompletableFuture<T> call) {
+        return cancellation.track(call);
+    }
+
+    /**
+     * Wait for an outbound call made on the current thread; cancelling the turn cancels the call
+     * and ends the wait with ChatTurnCancelledException. Outside a turn this is a plain join.
+     * Failures of the call are rethrown unwrapped
+     */
+    public static <T> T await(CompletableFuture<T> call) {
+        ChatTurnContext context = CURRENT.get();
+        if (context != null) {
+            context.track(call);
+        }
+        try {
+            return call.join();
+        } catch (CancellationException e) {
+            if (context != null && context.isCancelled()) {
+                throw new ChatTurnCancelledException("Chat turn of session " + context.sessionId + " was cancelled");
+            }
+            throw e;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Messages the assistant of this turn sees (system message, history, messages of the turn so far);
+     * mutable, owned by the chat memory
+     */
+    public List<ChatMessage> getChatMemory() {
+        return chatMemory;
+    }
+
+    public void setChatMemory(List<ChatMessage> chatMemory) {
+        this.chatMemory = chatMemory;
+    }
+
+    /**
+     * Chunks retrieved for this turn (id, text), most relevant first; empty when it did not retrieve
+     */
+    public List<Map<String, Object>> getRetrievedChunks() {
+        return retrievedChunks;
+    }
+
+    public void setRetrievedChunks(List<Map<String, Object>> retrievedChunks) {
+        this.retrievedChunks = List.copyOf(retrievedChunks);
+    }
+
+    /**
+     * Note a step that was cut short to stay within the deadline (e.g. retrieval skipped)
+     */
+    public void recordDegradation(String degradation) {
+        if (!degradations.contains(degradation)) {
+            degradations.add(degradation);
+        }
+    }
+
+    /**
+     * Record one LLM round-trip of this turn (a turn may take several with tool calls)
+     * cachedPromptTokens is negative when the gateway does not report prefix cache hits
+     */
+    public void recordLlmCall(int estimatedPromptTokens, int actualPromptTokens, int cachedPromptTokens,
+                              int completionTokens) {
+        this.llmCalls++;
+        this.estimatedPromptTokens += estimatedPromptTokens;
+        this.actualPromptTokens += actualPromptTokens;
+        this.cachedPromptTokens += Math.max(cachedPromptTokens, 0);
+        this.completionTokens += completionTokens;
+    }
+
+    /**
+     * Token accounting (and any deadline degradations) for the AI message metadata
+     */
+    public Map<String, Object> tokenMetadata() {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("llmCalls", llmCalls);
+        metadata.put("promptTokensEstimated", estimatedPromptTokens);
+        metadata.put("promptTokensActual", actualPromptTokens);
+        metadata.put("promptTokensCached", cachedPromptTokens);
+        metadata.put("completionTokens", completionTokens);
+        if (!degradations.isEmpty()) {
+            metadata.put("degradations", List.copyOf(degradations));
+        }
+        return metadata;
+    }
+
+    @Override
+    public void close() {
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+    }
+}
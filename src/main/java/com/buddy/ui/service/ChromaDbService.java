@@ -1,6 +1,9 @@
 package com.buddy.ui.service;
 
 import com.buddy.ui.config.ChromaDbConfig;
+import com.buddy.ui.config.HedgingPolicies;
+import com.buddy.ui.config.HttpTransports;
+import com.buddy.ui.config.OutboundHttpClients;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
@@ -8,9 +11,13 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Service for interacting with ChromaDB vector database
@@ -20,22 +27,34 @@ import java.util.*;
 @Slf4j
 public class ChromaDbService {
     
-    private final RestTemplate restTemplate;
+    private final OutboundHttpClients outboundHttpClients;
+    private final HttpTransports httpTransports;
+    private final HedgingPolicies hedgingPolicies;
     private final ChromaDbConfig chromaDbConfig;
     private final EmbeddingService embeddingService;
+    private final KnowledgeBaseIndex knowledgeBaseIndex;
     private final ObjectMapper objectMapper = new ObjectMapper();
     
     @Value("${spring.chromadb.top-k:5}")
     private int topK;
     
-    private String collectionId = null;
+    // Collection name → ID
+    private final Map<String, String> collectionIds = new ConcurrentHashMap<>();
+    
+    /**
+     * Initialize or get the active collection (see KnowledgeBaseIndex) and return its ID
+     */
+    public String ensureCollection() {
+        return ensureCollection(knowledgeBaseIndex.current().collectionName());
+    }
     
     /**
      * Initialize or get collection and return its ID
      * Using ChromaDB v1 API (more stable and widely supported)
      */
-    public String ensureCollection() {
+    public String ensureCollection(String collectionName) {
         try {
+            String collectionId = collectionIds.get(collectionName);
             if (collectionId != null) {
                 return collectionId;
             }
@@ -44,14 +63,12 @@ public class ChromaDbService {
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
             
-            String collectionName = chromaDbConfig.getCollectionName();
-            
             // Try to get collection by name using v1 API
             String getUrl = baseUrl + "/api/v1/collections/" + collectionName;
             HttpEntity<Void> getEntity = new HttpEntity<>(headers);
             
             try {
-                ResponseEntity<String> getResponse = restTemplate.exchange(
+                ResponseEntity<String> getResponse = outboundHttpClients.chroma().exchange(
                         getUrl, HttpMethod.GET, getEntity, String.class);
                 
                 if (getResponse.getStatusCode().is2xxSuccessful()) {
@@ -60,14 +77,14 @@ public class ChromaDbService {
                         collectionId = collection.get("id").asText();
                         log.info("Found existing ChromaDB collection: {} (ID: {})", 
                                 collectionName, collectionId);
-                        return collectionId;
+                        return cache(collectionName, collectionId);
                     } else if (collection.has("collection")) {
                         JsonNode coll = collection.get("collection");
                         if (coll.has("id")) {
                             collectionId = coll.get("id").asText();
                             log.info("Found existing ChromaDB collection: {} (ID: {})", 
                                     collectionName, collectionId);
-                            return collectionId;
+                            return cache(collectionName, collectionId);
                         }
                     }
                 }
@@ -86,7 +103,7 @@ public class ChromaDbService {
             
             try {
                 // Try POST first
-                ResponseEntity<String> createResponse = restTemplate.exchange(
+                ResponseEntity<String> createResponse = outboundHttpClients.chroma().exchange(
                         createUrl, HttpMethod.POST, createEntity, String.class);
                 
                 if (createResponse.getStatusCode().is2xxSuccessful()) {
@@ -103,17 +120,17 @@ public class ChromaDbService {
                     if (collectionId != null) {
                         log.info("Created ChromaDB collection: {} (ID: {})", 
                                 collectionName, collectionId);
-                        return collectionId;
+                        return cache(collectionName, collectionId);
                     } else {
                         // If ID not in response, try to get it by name
                         log.debug("Collection created but ID not in response, trying to get by name");
-                        ResponseEntity<String> getAfterCreate = restTemplate.exchange(
+                        ResponseEntity<String> getAfterCreate = outboundHttpClients.chroma().exchange(
                                 getUrl, HttpMethod.GET, getEntity, String.class);
                         if (getAfterCreate.getStatusCode().is2xxSuccessful()) {
                             JsonNode coll = objectMapper.readTree(getAfterCreate.getBody());
                             if (coll.has("id")) {
                                 collectionId = coll.get("id").asText();
-                                return collectionId;
+                                return cache(collectionName, collectionId);
                             }
                         }
                         throw new RuntimeException("Collection created but ID not found in response");
@@ -126,7 +143,7 @@ public class ChromaDbService {
                 log.warn("Failed to create collection, trying to get it again: {}", e.getMessage());
                 
                 try {
-                    ResponseEntity<String> retryResponse = restTemplate.exchange(
+                    ResponseEntity<String> retryResponse = outboundHttpClients.chroma().exchange(
                             getUrl, HttpMethod.GET, getEntity, String.class);
                     
                     if (retryResponse.getStatusCode().is2xxSuccessful()) {
@@ -135,7 +152,7 @@ public class ChromaDbService {
                             collectionId = retryCollection.get("id").asText();
                             log.info("Found ChromaDB collection after retry: {} (ID: {})", 
                                     collectionName, collectionId);
-                            return collectionId;
+                            return cache(collectionName, collectionId);
                         }
                     }
                 } catch (Exception e2) {
@@ -153,12 +170,17 @@ public class ChromaDbService {
         }
     }
     
+    private String cache(String collectionName, String collectionId) {
+        collectionIds.put(collectionName, collectionId);
+        return collectionId;
+    }
+    
     /**
      * Add documents to ChromaDB
      */
     public void addDocuments(List<String> texts, List<String> ids, Map<String, Object> metadata) {
-        try {
-            String collId = ensureCollection();
+        try (KnowledgeBaseIndex.Write write = knowledgeBaseIndex.beginWrite()) {
+            String collId = ensureCollection(write.index().collectionName());
             
             // Try /upsert endpoint first (newer ChromaDB versions, using v1 API)
             String url = chromaDbConfig.getBaseUrl() + "/api/v1/collections/" + collId + "/upsert";
@@ -167,7 +189,7 @@ public class ChromaDbService {
             headers.setContentType(MediaType.APPLICATION_JSON);
             
             // Generate embeddings
-            List<List<Float>> embeddings = embeddingService.generateEmbeddings(texts);
+            List<List<Float>> embeddings = embeddingService.generateEmbeddings(texts, write.index().embeddingModel());
             
             Map<String, Object> request = new HashMap<>();
             request.put("ids", ids);
@@ -185,13 +207,13 @@ public class ChromaDbService {
             HttpEntity<Map<String, Object>> entity = new HttpEntity<>(request, headers);
             
             try {
-                ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.POST, entity, String.class);
+                ResponseEntity<String> response = outboundHttpClients.chroma().exchange(url, HttpMethod.POST, entity, String.class);
                 log.debug("Added {} documents to ChromaDB collection {} using upsert", texts.size(), collId);
             } catch (Exception e) {
                 // If upsert fails, try /add endpoint (older ChromaDB versions, using v1 API)
                 log.debug("Upsert failed, trying /add endpoint: {}", e.getMessage());
                 String addUrl = chromaDbConfig.getBaseUrl() + "/api/v1/collections/" + collId + "/add";
-                ResponseEntity<String> response = restTemplate.exchange(addUrl, HttpMethod.POST, entity, String.class);
+                ResponseEntity<String> response = outboundHttpClients.chroma().exchange(addUrl, HttpMethod.POST, entity, String.class);
                 log.debug("Added {} documents to ChromaDB collection {} using add", texts.size(), collId);
             }
             
@@ -206,52 +228,12 @@ public class ChromaDbService {
      */
     public List<Map<String, Object>> searchSimilar(String queryText, int nResults) {
         try {
-            String collId = ensureCollection();
-            
-            // Use collection ID instead of name (using v1 API)
-            String url = chromaDbConfig.getBaseUrl() + "/api/v1/collections/" + collId + "/query";
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            
             // Generate query embedding
             List<Float> queryEmbedding = embeddingService.generateEmbedding(queryText);
+            return query(queryEmbedding, nResults);
             
-            Map<String, Object> request = new HashMap<>();
-            request.put("query_embeddings", Collections.singletonList(queryEmbedding));
-            request.put("n_results", nResults);
-            
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(request, headers);
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.POST, entity, String.class);
-            
-            // Parse response
-            JsonNode jsonResponse = objectMapper.readTree(response.getBody());
-            List<Map<String, Object>> results = new ArrayList<>();
-            
-            if (jsonResponse.has("documents") && jsonResponse.get("documents").isArray()) {
-                JsonNode documents = jsonResponse.get("documents").get(0); // First query result
-                JsonNode distances = jsonResponse.has("distances") ? 
-                        jsonResponse.get("distances").get(0) : null;
-                JsonNode ids = jsonResponse.has("ids") ? 
-                        jsonResponse.get("ids").get(0) : null;
-                
-                if (documents.isArray()) {
-                    for (int i = 0; i < documents.size(); i++) {
-                        Map<String, Object> result = new HashMap<>();
-                        result.put("text", documents.get(i).asText());
-                        if (distances != null && distances.isArray() && i < distances.size()) {
-                            result.put("distance", distances.get(i).asDouble());
-                        }
-                        if (ids != null && ids.isArray() && i < ids.size()) {
-                            result.put("id", ids.get(i).asText());
-                        }
-                        results.add(result);
-                    }
-                }
-            }
-            
-            return results;
-            
+        } catch (DeadlineExceededException | ChatTurnCancelledException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error searching ChromaDB", e);
             return Collections.emptyList();
@@ -265,29 +247,88 @@ public class ChromaDbService {
         return searchSimilar(queryText, topK);
     }
     
+    /**
+     * Non-blocking variant of searchSimilar: embedding and query calls are chained without holding a thread
+     */
+    public CompletableFuture<List<Map<String, Object>>> searchSimilarAsync(String queryText, int nResults) {
+        return embeddingService.generateEmbeddingAsync(queryText)
+                .thenCompose(queryEmbedding -> searchSimilarByEmbeddingAsync(queryEmbedding, nResults))
+                .exceptionally(e -> {
+                    log.error("Error searching ChromaDB", e);
+                    return Collections.emptyList();
+                });
+    }
+    
+    public CompletableFuture<List<Map<String, Object>>> searchSimilarAsync(String queryText) {
+        return searchSimilarAsync(queryText, topK);
+    }
+    
     /**
      * Search for similar documents using embedding vector directly
      * This is used by LangChain4j EmbeddingStore
      */
     public List<Map<String, Object>> searchSimilarByEmbedding(List<Float> queryEmbedding, int nResults) {
         try {
-            String collId = ensureCollection();
-            
-            // Use collection ID instead of name (using v1 API)
-            String url = chromaDbConfig.getBaseUrl() + "/api/v1/collections/" + collId + "/query";
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
+            return query(queryEmbedding, nResults);
             
-            Map<String, Object> request = new HashMap<>();
-            request.put("query_embeddings", Collections.singletonList(queryEmbedding));
-            request.put("n_results", nResults);
-            
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(request, headers);
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.POST, entity, String.class);
-            
-            // Parse response
-            JsonNode jsonResponse = objectMapper.readTree(response.getBody());
+        } catch (DeadlineExceededException | ChatTurnCancelledException e) {
+            // Out of time, not a ChromaDB failure: don't go on as if nothing was found
+            throw e;
+        } catch (Exception e) {
+            log.error("Error searching ChromaDB by embedding", e);
+            return Collections.emptyList();
+        }
+    }
+    
+    /**
+     * Non-blocking variant of searchSimilarByEmbedding
+     */
+    public CompletableFuture<List<Map<String, Object>>> searchSimilarByEmbeddingAsync(List<Float> queryEmbedding, int nResults) {
+        String url = queryUrl();
+        byte[] request = encodeQuery(queryEmbedding, nResults);
+        Duration timeout = ChatTurnContext.callTimeout();
+        return hedgingPolicies.chroma().execute(() -> httpTransports.chroma().postAsync(url, jsonHeaders(), request, timeout))
+                .thenApply(this::parseQueryResponse);
+    }
+    
+    private List<Map<String, Object>> query(List<Float> queryEmbedding, int nResults) {
+        String url = queryUrl();
+        byte[] request = encodeQuery(queryEmbedding, nResults);
+        Duration timeout = ChatTurnContext.callTimeout();
+        byte[] response = hedgingPolicies.chroma().isEnabled()
+                ? hedgingPolicies.chroma().executeBlocking(() -> httpTransports.chroma().postAsync(url, jsonHeaders(), request, timeout))
+                : httpTransports.chroma().post(url, jsonHeaders(), request, timeout);
+        return parseQueryResponse(response);
+    }
+    
+    private String queryUrl() {
+        // Use collection ID instead of name (using v1 API)
+        return chromaDbConfig.getBaseUrl() + "/api/v1/collections/" + ensureCollection() + "/query";
+    }
+    
+    private HttpHeaders jsonHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return headers;
+    }
+    
+    private byte[] encodeQuery(List<Float> queryEmbedding, int nResults) {
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("query_embeddings", Collections.singletonList(queryEmbedding));
+        request.put("n_results", nResults);
+        try {
+            return objectMapper.writeValueAsBytes(request);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode ChromaDB query", e);
+        }
+    }
+    
+    /**
+     * Flatten the first query result into text/distance/id maps
+     */
+    private List<Map<String, Object>> parseQueryResponse(byte[] response) {
+        try {
+            JsonNode jsonResponse = objectMapper.readTree(response);
             List<Map<String, Object>> results = new ArrayList<>();
             
             if (jsonResponse.has("documents") && jsonResponse.get("documents").isArray()) {
@@ -297,7 +338,7 @@ public class ChromaDbService {
                 JsonNode ids = jsonResponse.has("ids") ? 
                         jsonResponse.get("ids").get(0) : null;
                 
-                if (documents.isArray()) {
+                if (documents != null && documents.isArray()) {
                     for (int i = 0; i < documents.size(); i++) {
                         Map<String, Object> result = new HashMap<>();
                         result.put("text", documents.get(i).asText());
@@ -313,10 +354,8 @@ public class ChromaDbService {
             }
             
             return results;
-            
-        } catch (Exception e) {
-            log.error("Error searching ChromaDB by embedding", e);
-            return Collections.emptyList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to parse ChromaDB query response", e);
         }
     }
     
@@ -327,12 +366,40 @@ public class ChromaDbService {
      * @param metadatas List of metadata objects (one per document, must match texts size)
      */
     public void addDocumentsWithIndividualMetadata(List<String> texts, List<String> ids, List<Map<String, Object>> metadatas) {
+        if (texts.size() != ids.size() || texts.size() != metadatas.size()) {
+            throw new IllegalArgumentException("Texts, IDs, and metadatas lists must have the same size");
+        }
+        try (KnowledgeBaseIndex.Write write = knowledgeBaseIndex.beginWrite()) {
+            upsertWithEmbeddings(write.index().collectionName(), texts, ids,
+                    embeddingService.generateEmbeddings(texts, write.index().embeddingModel()), metadatas);
+        }
+    }
+    
+    /**
+     * Add documents whose embeddings were already computed (e.g. by the ingestion pipeline)
+     * @param texts List of text documents
+     * @param ids List of document IDs (must match texts size)
+     * @param embeddings List of embeddings (one per document, must match texts size)
+     * @param metadatas List of metadata objects (one per document, must match texts size)
+     */
+    public void upsertWithEmbeddings(List<String> texts, List<String> ids, List<List<Float>> embeddings,
+                                     List<Map<String, Object>> metadatas) {
+        try (KnowledgeBaseIndex.Write write = knowledgeBaseIndex.beginWrite()) {
+            upsertWithEmbeddings(write.index().collectionName(), texts, ids, embeddings, metadatas);
+        }
+    }
+    
+    /**
+     * Add documents with precomputed embeddings to the named collection (created if needed)
+     */
+    public void upsertWithEmbeddings(String collectionName, List<String> texts, List<String> ids,
+                                     List<List<Float>> embeddings, List<Map<String, Object>> metadatas) {
         try {
-            if (texts.size() != ids.size() || texts.size() != metadatas.size()) {
-                throw new IllegalArgumentException("Texts, IDs, and metadatas lists must have the same size");
+            if (texts.size() != ids.size() || texts.size() != embeddings.size() || texts.size() != metadatas.size()) {
+                throw new IllegalArgumentException("Texts, IDs, embeddings, and metadatas lists must have the same size");
             }
             
-            String collId = ensureCollection();
+            String collId = ensureCollection(collectionName);
             
             // Try /upsert endpoint first (newer ChromaDB versions, using v1 API)
             String url = chromaDbConfig.getBaseUrl() + "/api/v1/collections/" + collId + "/upsert";
@@ -340,9 +407,6 @@ public class ChromaDbService {
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
             
-            // Generate embeddings
-            List<List<Float>> embeddings = embeddingService.generateEmbeddings(texts);
-            
             Map<String, Object> request = new HashMap<>();
             request.put("ids", ids);
             request.put("embeddings", embeddings);
@@ -352,13 +416,13 @@ public class ChromaDbService {
             HttpEntity<Map<String, Object>> entity = new HttpEntity<>(request, headers);
             
             try {
-                ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.POST, entity, String.class);
+                ResponseEntity<String> response = outboundHttpClients.chroma().exchange(url, HttpMethod.POST, entity, String.class);
                 log.debug("Added {} documents to ChromaDB collection {} with individual metadata using upsert", texts.size(), collId);
             } catch (Exception e) {
                 // If upsert fails, try /add endpoint (older ChromaDB versions, using v1 API)
                 log.debug("Upsert failed, trying /add endpoint: {}", e.getMessage());
                 String addUrl = chromaDbConfig.getBaseUrl() + "/api/v1/collections/" + collId + "/add";
-                ResponseEntity<String> response = restTemplate.exchange(addUrl, HttpMethod.POST, entity, String.class);
+                ResponseEntity<String> response = outboundHttpClients.chroma().exchange(addUrl, HttpMethod.POST, entity, String.class);
                 log.debug("Added {} documents to ChromaDB collection {} with individual metadata using add", texts.size(), collId);
             }
             
@@ -367,5 +431,157 @@ public class ChromaDbService {
             throw new RuntimeException("Failed to add documents to ChromaDB: " + e.getMessage(), e);
         }
     }
+    
+    /**
+     * Get stored chunks matching a metadata filter, one page at a time
+     * @param where ChromaDB metadata filter, e.g. {"source_id": "..."}
+     * @param include fields to return besides the ID ("metadatas", "documents", "embeddings")
+     * @return one map per chunk with "id" and, when included, "metadata", "text" and "embedding"
+     */
+    public List<Map<String, Object>> getChunks(Map<String, Object> where, List<String> include, int limit, int offset) {
+        return getChunks(knowledgeBaseIndex.current().collectionName(), where, include, limit, offset);
+    }
+    
+    /**
+     * Page through the chunks of the named collection (where may be null: all chunks)
+     */
+    public List<Map<String, Object>> getChunks(String collectionName, Map<String, Object> where, List<String> include,
+                                               int limit, int offset) {
+        Map<String, Object> request = new HashMap<>();
+        if (where != null && !where.isEmpty()) {
+            request.put("where", where);
+        }
+        request.put("include", include);
+        request.put("limit", limit);
+        request.put("offset", offset);
+        return get(collectionName, request);
+    }
+    
+    /**
+     * Get the chunks with the given IDs from the named collection (missing IDs are left out)
+     */
+    public List<Map<String, Object>> getChunks(String collectionName, List<String> ids, List<String> include) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("ids", ids);
+        request.put("include", include);
+        return get(collectionName, request);
+    }
+    
+    private List<Map<String, Object>> get(String collectionName, Map<String, Object> request) {
+        try {
+            String url = chromaDbConfig.getBaseUrl() + "/api/v1/collections/" + ensureCollection(collectionName) + "/get";
+            
+            ResponseEntity<String> response = outboundHttpClients.chroma().exchange(
+                    url, HttpMethod.POST, new HttpEntity<>(request, jsonHeaders()), String.class);
+            JsonNode body = objectMapper.readTree(response.getBody());
+            
+            List<Map<String, Object>> chunks = new ArrayList<>();
+            JsonNode ids = body.get("ids");
+            if (ids == null || !ids.isArray()) {
+                return chunks;
+            }
+            JsonNode metadatas = body.get("metadatas");
+            JsonNode documents = body.get("documents");
+            JsonNode embeddings = body.get("embeddings");
+            for (int i = 0; i < ids.size(); i++) {
+                Map<String, Object> chunk = new HashMap<>();
+                chunk.put("id", ids.get(i).asText());
+                if (metadatas != null && metadatas.isArray() && !metadatas.get(i).isNull()) {
+                    chunk.put("metadata", objectMapper.convertValue(metadatas.get(i), Map.class));
+                }
+                if (documents != null && documents.isArray()) {
+                    chunk.put("text", documents.get(i).asText());
+                }
+                if (embeddings != null && embeddings.isArray()) {
+                    List<Float> embedding = new ArrayList<>(embeddings.get(i).size());
+                    for (JsonNode value : embeddings.get(i)) {
+                        embedding.add(value.floatValue());
+                    }
+                    chunk.put("embedding", embedding);
+                }
+                chunks.add(chunk);
+            }
+            return chunks;
+            
+        } catch (Exception e) {
+            log.error("Error getting chunks from ChromaDB", e);
+            throw new RuntimeException("Failed to get chunks from ChromaDB: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Number of chunks in the named collection
+     */
+    public long count(String collectionName) {
+        try {
+            String url = chromaDbConfig.getBaseUrl() + "/api/v1/collections/" + ensureCollection(collectionName) + "/count";
+            ResponseEntity<String> response = outboundHttpClients.chroma().exchange(
+                    url, HttpMethod.GET, new HttpEntity<>(jsonHeaders()), String.class);
+            return objectMapper.readTree(response.getBody()).asLong();
+            
+        } catch (Exception e) {
+            log.error("Error counting chunks in ChromaDB", e);
+            throw new RuntimeException("Failed to count chunks in ChromaDB: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Replace the metadata of stored chunks, keeping their text and embedding
+     */
+    public void updateMetadatas(List<String> ids, List<Map<String, Object>> metadatas) {
+        try (KnowledgeBaseIndex.Write write = knowledgeBaseIndex.beginWrite()) {
+            updateMetadatas(write.index().collectionName(), ids, metadatas);
+        }
+    }
+    
+    /**
+     * Replace the metadata of stored chunks of the named collection
+     */
+    public void updateMetadatas(String collectionName, List<String> ids, List<Map<String, Object>> metadatas) {
+        try {
+            if (ids.size() != metadatas.size()) {
+                throw new IllegalArgumentException("IDs and metadatas lists must have the same size");
+            }
+            String url = chromaDbConfig.getBaseUrl() + "/api/v1/collections/" + ensureCollection(collectionName) + "/update";
+            
+            Map<String, Object> request = new HashMap<>();
+            request.put("ids", ids);
+            request.put("metadatas", metadatas);
+            
+            outboundHttpClients.chroma().exchange(url, HttpMethod.POST, new HttpEntity<>(request, jsonHeaders()), String.class);
+            log.debug("Updated metadata of {} chunks", ids.size());
+            
+        } catch (Exception e) {
+            log.error("Error updating chunk metadata in ChromaDB", e);
+            throw new RuntimeException("Failed to update chunk metadata in ChromaDB: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Delete chunks by ID
+     */
+    public void deleteChunks(List<String> ids) {
+        try (KnowledgeBaseIndex.Write write = knowledgeBaseIndex.beginWrite()) {
+            deleteChunks(write.index().collectionName(), ids);
+        }
+    }
+    
+    /**
+     * Delete chunks of the named collection by ID
+     */
+    public void deleteChunks(String collectionName, List<String> ids) {
+        try {
+            String url = chromaDbConfig.getBaseUrl() + "/api/v1/collections/" + ensureCollection(collectionName) + "/delete";
+            
+            Map<String, Object> request = new HashMap<>();
+            request.put("ids", ids);
+            
+            outboundHttpClients.chroma().exchange(url, HttpMethod.POST, new HttpEntity<>(request, jsonHeaders()), String.class);
+            log.debug("Deleted {} chunks", ids.size());
+            
+        } catch (Exception e) {
+            log.error("Error deleting chunks from ChromaDB", e);
+            throw new RuntimeException("Failed to delete chunks from ChromaDB: " + e.getMessage(), e);
+        }
+    }
 }
-
@@ -0,0 +1,107 @@
+package com.buddy.ui.service;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Bounded hand-off of chunks from a parser worker to the thread that called DocumentParser.parse
+ * - The chunker on the parser thread puts chunks, the caller runs the consumer (embedding, upserts) on
+ *   them, so ingestion neither holds a parser worker nor counts against the parse timeout
+ * - The parser waits while the queue is full; that time is reported, so the timeout leaves it out
+ * - Once the parse has ended, chunks go straight to the consumer (the chunker's last one, on finish)
+ */
+public final class ChunkHandOff<T> {
+
+    private static final Object END = new Object();
+
+    private final BlockingQueue<Object> queue;
+    private final Consumer<T> consumer;
+    private volatile boolean ended;
+
+    // Guarded by this: time the parser spent waiting for room, and since when it waits (0 when it does not)
+    private long blockedNanos;
+    private long blockedSince;
+
+    public ChunkHandOff(int capacity, Consumer<T> consumer) {
+        this.queue = new LinkedBlockingQueue<>(Math.max(1, capacity));
+        this.consumer = consumer;
+    }
+
+    /**
+     * Hand a chunk over, waiting while the queue is full; runs the consumer directly once the parse ended
+     */
+    public void put(T chunk) {
+        if (ended) {
+            consumer.accept(chunk);
+            return;
+        }
+        try {
+            enqueue(chunk);
+        } catch (InterruptedException e) {
+            // The parse was stopped while waiting for the consumer
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while handing over a chunk", e);
+        }
+    }
+
+    /**
+     * The parse ended (called on the parser thread, also when it failed)
+     */
+    void end() {
+        try {
+            enqueue(END);
+        } catch (InterruptedException e) {
+            // Stopped: the caller no longer drains
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Time the parser has waited for the consumer so far
+     */
+    synchronized long blockedNanos() {
+        return blockedNanos + (blockedSince != 0 ? System.nanoTime() - blockedSince : 0);
+    }
+
+    /**
+     * Run the consumer on the next chunk, waiting up to maxWaitNanos for one
+     *
+     * @return true once the parse has ended and every chunk it handed over was consumed
+     */
+    boolean drain(long maxWaitNanos) throws InterruptedException {
+        Object next = queue.poll(maxWaitNanos, TimeUnit.NANOSECONDS);
+        if (next == END) {
+            ended = true;
+            return true;
+        }
+        if (next != null) {
+            consumer.accept(cast(next));
+        }
+        return false;
+    }
+
+    private void enqueue(Object item) throws InterruptedException {
+        if (queue.offer(item)) {
+            return;
+        }
+        long since = System.nanoTime();
+        synchronized (this) {
+            blockedSince = since;
+        }
+        try {
+            queue.put(item);
+        } finally {
+            synchronized (this) {
+                blockedNanos += System.nanoTime() - since;
+                blockedSince = 0;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object item) {
+        return (T) item;
+    }
+}
@@ -0,0 +1,61 @@
+package com.buddy.ui.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+
+/**
+ * Content-addressed chunk IDs: source ID + hash of the chunk text
+ * Re-ingesting a source gives its unchanged chunks the same IDs whatever their position, so only new
+ * or edited chunks need embedding. A text repeated within the source gets an occurrence suffix
+ */
+public final class ChunkIds {
+
+    private final String sourceId;
+    private final Map<String, Integer> occurrences = new HashMap<>();
+
+    public ChunkIds(String sourceId) {
+        this.sourceId = sourceId;
+    }
+
+    public String getSourceId() {
+        return sourceId;
+    }
+
+    /**
+     * ID of the next chunk of the source
+     */
+    public String next(String chunk) {
+        String hash = hash(chunk).substring(0, 16);
+        int occurrence = occurrences.merge(hash, 1, Integer::sum);
+        return occurrence == 1 ? sourceId + "-" + hash : sourceId + "-" + hash + "-" + occurrence;
+    }
+
+    /**
+     * Stable source ID from an exact name (file name, explicit source_id): prefix + hash of the name
+     * Names differing in any character (case, spacing, Turkish letters) get different IDs, a lossy slug
+     * would make one source replace another ("n" keeps them apart from content source IDs)
+     */
+    public static String sourceId(String prefix, String name) {
+        return prefix + "-n" + hash(name).substring(0, 24);
+    }
+
+    /**
+     * Source ID of unnamed content, from the content itself (only identical content is recognized)
+     */
+    public static String contentSourceId(String prefix, String content) {
+        return prefix + "-" + hash(content).substring(0, 24);
+    }
+
+    private static String hash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
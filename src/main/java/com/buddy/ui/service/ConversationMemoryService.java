@@ -0,0 +1,184 @@
+package com.buddy.ui.service;
+
+import com.buddy.ui.model.ConversationSummary;
+import com.buddy.ui.model.Message;
+import com.buddy.ui.model.SenderType;
+import com.buddy.ui.repository.ConversationSummaryRepository;
+import com.buddy.ui.repository.MessageRepository;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversation history for the LLM, bounded by a rolling summary
+ * History is rebuilt from the messages table on every turn: the stored summary of older turns
+ * plus the most recent messages. Once too many messages have accumulated after the summary,
+ * the older ones are folded into the summary by a background worker, off the request path.
+ */
+@Service
+@Slf4j
+public class ConversationMemoryService {
+
+    private static final LocalDateTime NO_SUMMARY = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private static final String SUMMARY_HEADER = "### CONVERSATION SUMMARY (earlier turns)\n";
+
+    private static final String SUMMARIZE_INSTRUCTIONS = """
+        You maintain a running summary of a conversation between a new Vodafone employee and "Pusula", the onboarding buddy.
+        Merge the existing summary with the new messages into a single updated summary, written in TURKISH.
+        Keep facts the user shared (role, team, experience, preferences), questions already answered, decisions,
+        and any pending actions such as access requests or mentor selections. Drop greetings and small talk.
+        Reply with the summary only, at most 150 words.
+        """;
+
+    private final MessageRepository messageRepository;
+    private final ConversationSummaryRepository summaryRepository;
+    private final ChatLanguageModel chatLanguageModel;
+
+    private final Set<String> summariesInFlight = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor summarizer;
+
+    @Value("${spring.ai.memory.max-recent-messages:10}")
+    private int maxRecentMessages;
+
+    @Value("${spring.ai.memory.summarize-threshold:12}")
+    private int summarizeThreshold;
+
+    @Value("${spring.ai.memory.keep-recent-messages:6}")
+    private int keepRecentMessages;
+
+    public ConversationMemoryService(MessageRepository messageRepository,
+                                     ConversationSummaryRepository summaryRepository,
+                                     ChatLanguageModel chatLanguageModel,
+                                     @Value("${spring.ai.memory.summarizer-threads:2}") int summarizerThreads,
+                                     @Value("${spring.ai.memory.summarizer-queue:100}") int summarizerQueue) {
+        this.messageRepository = messageRepository;
+        this.summaryRepository = summaryRepository;
+        this.chatLanguageModel = chatLanguageModel;
+        // Bounded pool; when saturated the request is dropped and retried after the next turn
+        this.summarizer = new ThreadPoolExecutor(summarizerThreads, summarizerThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(summarizerQueue),
+                Thread.ofVirtual().name("conversation-summarizer-", 0).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * History to replay before the current user message: summary (if any) followed by recent turns
+     * Trailing user messages are skipped, they belong to the turn being processed (or to a failed one)
+     */
+    public List<ChatMessage> loadHistory(String sessionId) {
+        Optional<ConversationSummary> summary = summaryRepository.findById(sessionId);
+        LocalDateTime after = summary.map(ConversationSummary::getSummarizedUntil).orElse(NO_SUMMARY);
+
+        List<Message> recent = new ArrayList<>(messageRepository.findLastMessagesBySessionIdCreatedAfter(
+                sessionId, after, PageRequest.of(0, maxRecentMessages)));
+        Collections.reverse(recent);
+        while (!recent.isEmpty() && recent.get(recent.size() - 1).getSenderType() == SenderType.USER) {
+            recent.remove(recent.size() - 1);
+        }
+
+        List<ChatMessage> history = new ArrayList<>(recent.size() + 1);
+        summary.ifPresent(s -> history.add(SystemMessage.from(SUMMARY_HEADER + s.getSummary())));
+        for (Message message : recent) {
+            history.add(message.getSenderType() == SenderType.USER
+                    ? UserMessage.from(message.getContent())
+                    : AiMessage.from(message.getContent()));
+        }
+        return history;
+    }
+
+    /**
+     * Fold older messages into the summary in the background if the session has grown past the threshold
+     */
+    public void scheduleSummarization(String sessionId) {
+        if (!summariesInFlight.add(sessionId)) {
+            return;
+        }
+        try {
+            summarizer.execute(() -> {
+                try {
+                    summarize(sessionId);
+                } catch (Exception e) {
+                    log.warn("Failed to summarize conversation {}: {}", sessionId, e.getMessage());
+                } finally {
+                    summariesInFlight.remove(sessionId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            summariesInFlight.remove(sessionId);
+            log.debug("Summarizer queue full, skipping summarization for session {}", sessionId);
+        }
+    }
+
+    /**
+     * Drop the stored summary of a deleted conversation
+     */
+    public void forget(String sessionId) {
+        summaryRepository.deleteById(sessionId);
+    }
+
+    private void summarize(String sessionId) {
+        Optional<ConversationSummary> existing = summaryRepository.findById(sessionId);
+        LocalDateTime after = existing.map(ConversationSummary::getSummarizedUntil).orElse(NO_SUMMARY);
+
+        List<Message> pending = messageRepository.findMessagesBySessionIdCreatedAfter(sessionId, after);
+        if (pending.size() <= summarizeThreshold) {
+            return;
+        }
+
+        List<Message> toFold = pending.subList(0, Math.max(0, pending.size() - keepRecentMessages));
+        if (toFold.isEmpty()) {
+            return;
+        }
+        log.info("Summarizing {} older messages of session {}", toFold.size(), sessionId);
+
+        StringBuilder transcript = new StringBuilder();
+        existing.ifPresent(s -> transcript.append("EXISTING SUMMARY:\n").append(s.getSummary()).append("\n\n"));
+        transcript.append("NEW MESSAGES:\n");
+        for (Message message : toFold) {
+            transcript.append(message.getSenderType() == SenderType.USER ? "Kullanıcı: " : "Pusula: ")
+                    .append(message.getContent())
+                    .append('\n');
+        }
+
+        String summaryText = chatLanguageModel.generate(List.of(
+                SystemMessage.from(SUMMARIZE_INSTRUCTIONS),
+                UserMessage.from(transcript.toString()))).content().text();
+
+        ConversationSummary summary = existing.orElseGet(() -> ConversationSummary.builder()
+                .sessionId(sessionId)
+                .summarizedMessages(0)
+                .build());
+        summary.setSummary(summaryText);
+        summary.setSummarizedUntil(toFold.get(toFold.size() - 1).getCreatedAt());
+        summary.setSummarizedMessages(summary.getSummarizedMessages() + toFold.size());
+        summaryRepository.save(summary);
+
+        log.info("Conversation {} summary updated ({} messages summarized in total)",
+                sessionId, summary.getSummarizedMessages());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        summarizer.shutdown();
+    }
+}
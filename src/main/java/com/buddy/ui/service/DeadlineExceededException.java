@@ -0,0 +1,11 @@
+package com.buddy.ui.service;
+
+/**
+ * The chat turn ran out of its time budget before the next outbound call could be made
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,88 @@
+package com.buddy.ui.service;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Time budget of a chat turn and how the pipeline degrades as it runs out
+ * - The budget comes from the X-Request-Timeout header (milliseconds), capped by max, or the default
+ * - Every outbound call gets the remaining budget as its timeout (ChatTurnContext.callTimeout)
+ * - Retrieval is skipped when less than min-retrieval-budget is left
+ * - max_tokens is cut to what can be generated in the remaining time
+ */
+@Service
+@Slf4j
+@Getter
+public class DeadlinePolicy {
+
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout";
+
+    @Value("${spring.ai.deadline.default:45s}")
+    private Duration defaultBudget;
+
+    @Value("${spring.ai.deadline.max:120s}")
+    private Duration maxBudget;
+
+    @Value("${spring.ai.deadline.min-retrieval-budget:10s}")
+    private Duration minRetrievalBudget;
+
+    @Value("${spring.ai.deadline.generation-overhead:2s}")
+    private Duration generationOverhead;
+
+    @Value("${spring.ai.deadline.generation-tokens-per-second:25}")
+    private int generationTokensPerSecond;
+
+    @Value("${spring.ai.deadline.min-max-tokens:128}")
+    private int minMaxTokens;
+
+    /**
+     * Deadline (System.nanoTime() based) of a turn starting now
+     *
+     * @param requestedTimeoutMillis the client's timeout header, null when absent
+     */
+    public long deadlineFor(Long requestedTimeoutMillis) {
+        Duration budget = defaultBudget;
+        if (requestedTimeoutMillis != null && requestedTimeoutMillis > 0) {
+            budget = Duration.ofMillis(requestedTimeoutMillis);
+            if (budget.compareTo(maxBudget) > 0) {
+                budget = maxBudget;
+            }
+        }
+        return System.nanoTime() + budget.toNanos();
+    }
+
+    /**
+     * Whether there is still time for embedding + vector search before generation
+     */
+    public boolean canRetrieve(ChatTurnContext turn) {
+        Optional<Duration> remaining = turn.remaining();
+        return remaining.isEmpty() || remaining.get().compareTo(minRetrievalBudget) >= 0;
+    }
+
+    /**
+     * max_tokens for the next LLM call: the configured value, or fewer when the remaining time
+     * (minus time to first token) cannot generate that many
+     */
+    public int maxTokens(ChatTurnContext turn, int configured) {
+        Optional<Duration> remaining = turn.remaining();
+        if (remaining.isEmpty()) {
+            return configured;
+        }
+        long generationMillis = remaining.get().minus(generationOverhead).toMillis();
+        long affordable = generationMillis * generationTokensPerSecond / 1000;
+        if (affordable >= configured) {
+            return configured;
+        }
+        int reduced = (int) Math.max(minMaxTokens, affordable);
+        if (reduced < configured) {
+            turn.recordDegradation("max_tokens_reduced");
+            log.debug("Reducing max_tokens to {} ({} ms left)", reduced, remaining.get().toMillis());
+        }
+        return Math.min(reduced, configured);
+    }
+}
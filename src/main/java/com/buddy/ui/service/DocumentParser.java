@@ -0,0 +1,343 @@
+package com.buddy.ui.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.Tika;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.parser.pdf.PDFParserConfig;
+import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.sax.ContentHandlerDecorator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Tika parsing isolated from the serving path
+ * - Documents are parsed on a small pool of dedicated platform threads (workers), not on the shared
+ *   virtual-thread carriers, so a parser spinning on a malformed file costs at most one of its cores
+ * - A worker slot is held until the parse really ends, so a parse that ignores the timeout still
+ *   counts against the pool instead of piling up more parsers
+ * - Chunks are handed over to the calling thread (ChunkHandOff), which ingests them while the worker
+ *   parses on; the worker waits while hand-off-capacity chunks are pending
+ * - Per document: timeout (the parse is stopped at the next element or text event, and interrupted;
+ *   time spent waiting for the caller to take chunks does not count), max-characters (the text is
+ *   truncated there), PDF main-memory cap (PDFBox spills to temp files)
+ * - A parse does not start while heap usage is above max-heap-usage
+ * - Metrics: document.parse.duration (outcome=ok|truncated|timeout|error)
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DocumentParser {
+
+    private final MeterRegistry meterRegistry;
+    private final Tika tika = new Tika();
+
+    // 0 = half the available cores
+    @Value("${spring.rag.parsing.workers:0}")
+    private int configuredWorkers;
+
+    @Value("${spring.rag.parsing.timeout:5m}")
+    private Duration timeout;
+
+    @Value("${spring.rag.parsing.max-characters:5000000}")
+    private long maxCharacters;
+
+    @Value("${spring.rag.parsing.max-heap-usage:0.85}")
+    private double maxHeapUsage;
+
+    @Value("${spring.rag.parsing.pdf-max-main-memory:64MB}")
+    private DataSize pdfMaxMainMemory;
+
+    @Value("${spring.rag.parsing.hand-off-capacity:64}")
+    private int handOffCapacity;
+
+    private Semaphore slots;
+    private ExecutorService executor;
+
+    @PostConstruct
+    void start() {
+        int workers = configuredWorkers > 0 ? configuredWorkers : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        slots = new Semaphore(workers, true);
+        executor = Executors.newFixedThreadPool(workers, Thread.ofPlatform().name("document-parser-", 0).daemon().factory());
+        log.info("Document parser workers: {}, timeout {}, max characters {}", workers, timeout, maxCharacters);
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Hand-off for the chunks of one document: the consumer runs on the thread calling parse
+     */
+    public <T> ChunkHandOff<T> handOff(Consumer<T> consumer) {
+        return new ChunkHandOff<>(handOffCapacity, consumer);
+    }
+
+    /**
+     * Parse the document, streaming its text into the chunker (called on the parser thread), whose
+     * chunks go into the hand-off; the calling thread consumes them until the parse ends
+     * Waiting for a free worker counts against the timeout
+     *
+     * @return true when the text was truncated at max-characters
+     */
+    public boolean parse(InputStreamSource source, String filename, IncrementalChunker chunker,
+                         ChunkHandOff<?> chunks) throws IOException {
+        return parse(source, filename, new DefaultHandler() {
+            @Override
+            public void characters(char[] ch, int start, int length) {
+                chunker.append(ch, start, length);
+            }
+
+            // Block boundaries arrive as ignorable whitespace
+            @Override
+            public void ignorableWhitespace(char[] ch, int start, int length) {
+                chunker.append(ch, start, length);
+            }
+        }, chunks);
+    }
+
+    /**
+     * Parse the document into a SAX handler receiving the XHTML body events (headings, paragraphs,
+     * lists, tables), called on the parser thread; same limits and hand-off as the text variant
+     *
+     * @return true when the text was truncated at max-characters
+     */
+    public boolean parse(InputStreamSource source, String filename, ContentHandler contentHandler,
+                         ChunkHandOff<?> chunks) throws IOException {
+        checkHeap(filename);
+        long start = System.nanoTime();
+        try {
+            if (!slots.tryAcquire(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new IOException("No document parser available within " + timeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a document parser", e);
+        }
+
+        LimitingContentHandler handler = new LimitingContentHandler(contentHandler, maxCharacters);
+        // Whoever claims first releases the slot: the task once it ends, or the caller if it never started
+        AtomicBoolean claimed = new AtomicBoolean();
+        Future<?> parse;
+        try {
+            parse = executor.submit(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    return null;
+                }
+                try {
+                    extract(source, filename, handler);
+                    return null;
+                } finally {
+                    chunks.end();
+                    slots.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+
+        String outcome = "error";
+        try {
+            await(parse, chunks, start);
+            outcome = handler.isTruncated() ? "truncated" : "ok";
+            if (handler.isTruncated()) {
+                log.warn("Document {} truncated at {} characters", filename, maxCharacters);
+            }
+            return handler.isTruncated();
+        } catch (TimeoutException e) {
+            outcome = "timeout";
+            stop(parse, handler, claimed);
+            throw new IOException("Parsing " + filename + " timed out after " + timeout);
+        } catch (InterruptedException e) {
+            stop(parse, handler, claimed);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing " + filename, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException io ? io : new IOException(cause.getMessage(), cause);
+        } catch (RuntimeException e) {
+            // The consumer failed (e.g. the ingestion run was cancelled)
+            stop(parse, handler, claimed);
+            throw e;
+        } finally {
+            Timer.builder("document.parse.duration")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Consume the handed-off chunks until the parse ends, or its time is up: the timeout runs from
+     * the start of the call, minus the time the parser waited for chunks to be taken
+     */
+    private void await(Future<?> parse, ChunkHandOff<?> chunks, long start)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        while (true) {
+            long remaining = timeout.toNanos() - (System.nanoTime() - start - chunks.blockedNanos());
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            if (chunks.drain(remaining)) {
+                // Only the worker's slot release is left
+                parse.get(remaining, TimeUnit.NANOSECONDS);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Extract text from document using Apache Tika, streaming it into the handler
+     * The source is opened once: TikaInputStream lets the detector peek at the head and rewind
+     * before the parser reads it
+     */
+    private void extract(InputStreamSource source, String filename, LimitingContentHandler handler) throws IOException {
+        Metadata tikaMetadata = new Metadata();
+        tikaMetadata.set(TikaCoreProperties.RESOURCE_NAME_KEY, filename);
+        try (TikaInputStream stream = open(source)) {
+            MediaType detectedType = tika.getDetector().detect(stream, tikaMetadata);
+            log.debug("Detected document type: {}", detectedType);
+            tikaMetadata.set(Metadata.CONTENT_TYPE, detectedType.toString());
+
+            Parser parser = tika.getParser();
+            ParseContext context = new ParseContext();
+            // Also extract embedded documents (attachments, embedded files), as parseToString did
+            context.set(Parser.class, parser);
+            PDFParserConfig pdfConfig = new PDFParserConfig();
+            pdfConfig.setMaxMainMemoryBytes(pdfMaxMainMemory.toBytes());
+            context.set(PDFParserConfig.class, pdfConfig);
+            parser.parse(stream, new BodyContentHandler(handler), tikaMetadata, context);
+        } catch (Exception e) {
+            if (handler.isTruncated()) {
+                // Stopped on purpose at max-characters, the text so far is kept
+                return;
+            }
+            log.error("Error extracting text from document", e);
+            throw new IOException("Failed to extract text from document: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * A file (spooled upload, job or archive entry) is opened by path: parsers that need random access,
+     * like PDFBox, read it in place instead of Tika copying the stream to a temp file first
+     */
+    private static TikaInputStream open(InputStreamSource source) throws IOException {
+        if (source instanceof Resource resource && resource.isFile()) {
+            return TikaInputStream.get(resource.getFile().toPath());
+        }
+        return TikaInputStream.get(source.getInputStream());
+    }
+
+    private void stop(Future<?> parse, LimitingContentHandler handler, AtomicBoolean claimed) {
+        handler.abort();
+        if (claimed.compareAndSet(false, true)) {
+            slots.release();
+        }
+        parse.cancel(true);
+    }
+
+    private void checkHeap(String filename) throws IOException {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        if (heap.getMax() > 0 && heap.getUsed() > heap.getMax() * maxHeapUsage) {
+            throw new IOException("Not enough memory to parse " + filename + " now, heap usage "
+                    + heap.getUsed() * 100 / heap.getMax() + "%");
+        }
+    }
+
+    /**
+     * Passes the SAX events on to the target handler, truncating the text at maxCharacters
+     * Stops the parse by throwing once aborted or past maxCharacters
+     */
+    private static final class LimitingContentHandler extends ContentHandlerDecorator {
+
+        private final long maxCharacters;
+        private long characters;
+        private volatile boolean truncated;
+        private volatile boolean aborted;
+
+        private LimitingContentHandler(ContentHandler handler, long maxCharacters) {
+            super(handler);
+            this.maxCharacters = maxCharacters;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String name, Attributes atts) throws SAXException {
+            check();
+            super.startElement(uri, localName, name, atts);
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            super.characters(ch, start, limit(length));
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+            super.ignorableWhitespace(ch, start, limit(length));
+        }
+
+        boolean isTruncated() {
+            return truncated;
+        }
+
+        void abort() {
+            aborted = true;
+        }
+
+        /**
+         * Count the characters, returning how many of them to pass on (fewer past maxCharacters)
+         */
+        private int limit(int length) throws SAXException {
+            check();
+            if (characters + length > maxCharacters) {
+                int kept = (int) (maxCharacters - characters);
+                characters = maxCharacters;
+                truncated = true;
+                return kept;
+            }
+            characters += length;
+            return length;
+        }
+
+        private void check() throws SAXException {
+            if (aborted) {
+                throw new SAXException("Parse aborted");
+            }
+            if (truncated) {
+                throw new SAXException("Max characters reached");
+            }
+        }
+    }
+}
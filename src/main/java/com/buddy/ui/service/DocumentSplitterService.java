@@ -6,6 +6,7 @@ import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Service for splitting documents into meaningful chunks
@@ -20,8 +21,34 @@ public class DocumentSplitterService {
     @Value("${spring.rag.chunk-overlap:50}")
     private int chunkOverlap;
     
+    /**
+     * How uploaded documents are chunked; plain text bodies are always chunked by characters
+     */
+    public enum ChunkingMode {
+        /** Collapsed text, chunk-size / chunk-overlap characters */
+        CHARACTERS,
+        /** Headings, paragraphs, lists and tables of the parsed document, max-tokens / overlap-tokens */
+        STRUCTURED
+    }
+    
+    @Value("${spring.rag.chunking.mode:characters}")
+    private ChunkingMode chunkingMode;
+    
+    @Value("${spring.rag.chunking.max-tokens:256}")
+    private int maxTokens;
+    
+    @Value("${spring.rag.chunking.overlap-tokens:32}")
+    private int overlapTokens;
+    
     /**
      * Split text into meaningful chunks with overlap
+     * A single pass over the text, without regular expressions or a normalized copy of it: whitespace
+     * is collapsed as sentences are appended to the chunk being built, so only about one chunk is
+     * buffered at a time
+     * - Sentences end at . ! or ? followed by whitespace; a sentence that would take the chunk past
+     *   chunkSize starts a new chunk, which begins with the last sentence fragment of the previous
+     *   chunk's last chunkOverlap characters
+     * - Text without any sentence boundary is cut every chunkSize characters
      */
     public List<String> splitText(String text) {
         List<String> chunks = new ArrayList<>();
@@ -30,95 +57,199 @@ public class DocumentSplitterService {
             return chunks;
         }
         
-        // Remove extra whitespace and normalize
-        text = text.replaceAll("\\s+", " ").trim();
-        
-        // Split by sentences first (basic approach)
-        // This regex splits on sentence endings (. ! ?) followed by whitespace
-        String[] sentences = text.split("(?<=[.!?])\\s+");
-        
-        // If no sentence boundaries found, split by paragraphs
-        if (sentences.length == 1) {
-            sentences = text.split("\\n\\n+");
+        // Ignore leading and trailing whitespace (and control characters, as String.trim does)
+        int start = 0;
+        int end = text.length();
+        while (end > 0 && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
         }
         
-        // If still no boundaries, split by newlines
-        if (sentences.length == 1) {
-            sentences = text.split("\\n");
+        ChunkBuilder builder = new ChunkBuilder(chunks);
+        boolean hasBoundary = false;
+        int sentenceStart = start;
+        int i = start;
+        while (i < end) {
+            if (isWhitespace(text.charAt(i)) && i > start && isSentenceEnd(text.charAt(i - 1))) {
+                builder.addSentence(text, sentenceStart, i);
+                hasBoundary = true;
+                while (i < end && isWhitespace(text.charAt(i))) {
+                    i++;
+                }
+                sentenceStart = i;
+            } else {
+                i++;
+            }
         }
+        builder.addSentence(text, sentenceStart, end);
         
-        // If still one piece, split by character count
-        if (sentences.length == 1 && text.length() > chunkSize) {
-            return splitByCharacterCount(text);
+        // No sentence boundary: the builder holds the whole (normalized) text as one sentence
+        if (!hasBoundary && builder.chunk.length() > chunkSize) {
+            return splitByCharacterCount(builder.chunk);
         }
+        builder.finish();
         
-        StringBuilder currentChunk = new StringBuilder();
-        int currentLength = 0;
+        log.debug("Split text into {} chunks (chunk size: {}, overlap: {})", 
+                chunks.size(), chunkSize, chunkOverlap);
         
-        for (String sentence : sentences) {
-            sentence = sentence.trim();
-            if (sentence.isEmpty()) {
-                continue;
+        return chunks;
+    }
+    
+    /**
+     * Packs sentences into chunks; currentLength is kept exactly as the chunking always did (it counts
+     * one separator more than the chunk holds when the chunk started empty)
+     */
+    private final class ChunkBuilder {
+        
+        private final List<String> chunks;
+        private final StringBuilder chunk = new StringBuilder();
+        private int currentLength;
+        
+        private ChunkBuilder(List<String> chunks) {
+            this.chunks = chunks;
+        }
+        
+        /**
+         * Append text[from, to) as a sentence: trimmed, with its whitespace runs collapsed to one space
+         */
+        private void addSentence(CharSequence text, int from, int to) {
+            while (from < to && text.charAt(from) <= ' ') {
+                from++;
+            }
+            while (to > from && text.charAt(to - 1) <= ' ') {
+                to--;
+            }
+            if (from == to) {
+                return;
             }
             
-            int sentenceLength = sentence.length();
-            
-            // If adding this sentence would exceed chunk size, save current chunk
-            if (currentLength + sentenceLength > chunkSize && currentChunk.length() > 0) {
-                chunks.add(currentChunk.toString().trim());
-                
-                // Start new chunk with overlap (last N characters)
-                String lastChunk = currentChunk.toString();
-                int overlapStart = Math.max(0, lastChunk.length() - chunkOverlap);
-                String overlapText = lastChunk.substring(overlapStart);
-                
-                // Find last sentence in overlap text
-                String[] overlapSentences = overlapText.split("(?<=[.!?])\\s+");
-                if (overlapSentences.length > 0) {
-                    currentChunk = new StringBuilder(overlapSentences[overlapSentences.length - 1]);
-                } else {
-                    currentChunk = new StringBuilder(overlapText);
+            boolean separated = chunk.length() > 0;
+            if (separated) {
+                chunk.append(' ');
+            }
+            int sentenceStart = chunk.length();
+            boolean pendingSpace = false;
+            for (int i = from; i < to; i++) {
+                char c = text.charAt(i);
+                if (isWhitespace(c)) {
+                    pendingSpace = true;
+                    continue;
                 }
-                currentLength = currentChunk.length();
+                if (pendingSpace) {
+                    chunk.append(' ');
+                    pendingSpace = false;
+                }
+                chunk.append(c);
             }
+            int sentenceLength = chunk.length() - sentenceStart;
             
-            if (currentChunk.length() > 0) {
-                currentChunk.append(" ");
+            // If adding this sentence would exceed chunk size, save current chunk
+            if (currentLength + sentenceLength > chunkSize && separated) {
+                int chunkEnd = sentenceStart - 1;
+                chunks.add(trimmed(chunk, 0, chunkEnd));
+                
+                // Start new chunk with overlap: the last sentence fragment of its last N characters
+                int overlapStart = overlapStart(chunkEnd);
+                currentLength = chunkEnd - overlapStart;
+                // Keep the separator only if the overlap is not empty
+                chunk.delete(0, currentLength > 0 ? overlapStart : sentenceStart);
             }
-            currentChunk.append(sentence);
             currentLength += sentenceLength + 1;
         }
         
-        // Add remaining chunk
-        if (currentChunk.length() > 0) {
-            chunks.add(currentChunk.toString().trim());
+        private void finish() {
+            // Add remaining chunk
+            if (chunk.length() > 0) {
+                chunks.add(trimmed(chunk, 0, chunk.length()));
+            }
         }
         
-        log.debug("Split text into {} chunks (chunk size: {}, overlap: {})", 
-                chunks.size(), chunkSize, chunkOverlap);
-        
-        return chunks;
+        /**
+         * Start of the text after the last sentence boundary within chunk[end - chunkOverlap, end)
+         * (the chunk ends with a sentence, so not with whitespace)
+         */
+        private int overlapStart(int end) {
+            int windowStart = Math.max(0, end - chunkOverlap);
+            for (int i = end - 1; i > windowStart; i--) {
+                if (isWhitespace(chunk.charAt(i)) && isSentenceEnd(chunk.charAt(i - 1))) {
+                    while (i < end && isWhitespace(chunk.charAt(i))) {
+                        i++;
+                    }
+                    return i;
+                }
+            }
+            return windowStart;
+        }
     }
     
     /**
      * Split by character count when no sentence boundaries found
      */
-    private List<String> splitByCharacterCount(String text) {
+    private List<String> splitByCharacterCount(CharSequence text) {
         List<String> chunks = new ArrayList<>();
         int start = 0;
         
         while (start < text.length()) {
             int end = Math.min(start + chunkSize, text.length());
-            String chunk = text.substring(start, end).trim();
+            String chunk = trimmed(text, start, end);
             if (!chunk.isEmpty()) {
                 chunks.add(chunk);
             }
-            start = end - chunkOverlap; // Overlap
+            if (end == text.length()) {
+                break;
+            }
+            // Overlap, always moving forward
+            start = Math.max(end - chunkOverlap, start + 1);
         }
         
         return chunks;
     }
     
+    /**
+     * text[from, to) without leading and trailing whitespace and control characters, as String.trim
+     */
+    private static String trimmed(CharSequence text, int from, int to) {
+        while (from < to && text.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && text.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        return text.subSequence(from, to).toString();
+    }
+    
+    /**
+     * The characters of the regex class \s
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+    
+    private static boolean isSentenceEnd(char c) {
+        return c == '.' || c == '!' || c == '?';
+    }
+    
+    /**
+     * Chunker for text that arrives incrementally (streaming document extraction), with the same
+     * chunk size and overlap as splitText
+     */
+    public IncrementalChunker incrementalChunker(Consumer<String> onChunk) {
+        return new IncrementalChunker(chunkSize, chunkOverlap, onChunk);
+    }
+    
+    public boolean isStructured() {
+        return chunkingMode == ChunkingMode.STRUCTURED;
+    }
+    
+    /**
+     * Chunker for the structure of a parsed document (structured mode), sized in estimated tokens
+     */
+    public StructuredChunker structuredChunker(Consumer<StructuredChunker.Chunk> onChunk) {
+        return new StructuredChunker(maxTokens, overlapTokens, onChunk);
+    }
+    
     /**
      * Split multiple texts
      */
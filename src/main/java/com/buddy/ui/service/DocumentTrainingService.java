@@ -2,13 +2,16 @@ package com.buddy.ui.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.tika.Tika;
-import org.apache.tika.exception.TikaException;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Service for training RAG system with PDF/Word documents
@@ -19,90 +22,137 @@ import java.util.*;
 public class DocumentTrainingService {
     
     private final DocumentSplitterService documentSplitterService;
-    private final EmbeddingService embeddingService;
-    private final ChromaDbService chromaDbService;
-    private final Tika tika = new Tika();
+    private final IngestionPipeline ingestionPipeline;
+    private final DocumentParser documentParser;
     
     /**
      * Process and train with a document (PDF/Word)
+     * The document is parsed in a single streaming pass: extracted text goes straight into an
+     * IncrementalChunker, and chunks go into the ingestion pipeline (batched embedding, pipelined
+     * upserts) as they are produced, so memory stays bounded whatever the document size
+     * Chunks are handed over from the parser worker to the calling thread, which ingests them
+     * In structured chunking mode, the parser's XHTML events go into a StructuredChunker instead
+     * The upload is moved to a temp file first (a rename when the container already spooled it to disk)
+     * so that the parser reads it from disk in place
      */
     public Map<String, Object> trainWithDocument(MultipartFile file, Map<String, Object> metadata) {
+        Path spooled = null;
         try {
-            log.info("Processing document: {} (size: {} bytes)", file.getOriginalFilename(), file.getSize());
-            
-            // Extract text from document
-            String extractedText = extractTextFromDocument(file);
-            
-            if (extractedText == null || extractedText.trim().isEmpty()) {
-                throw new RuntimeException("No text could be extracted from the document");
+            spooled = Files.createTempFile("buddy-upload-", ".tmp");
+            file.transferTo(spooled);
+            return trainWithDocument(new FileSystemResource(spooled), file.getOriginalFilename(), metadata,
+                    generateSourceId(file.getOriginalFilename()), null);
+        } catch (IOException e) {
+            log.error("Error spooling document: {}", file.getOriginalFilename(), e);
+            throw new RuntimeException("Failed to process document: " + e.getMessage(), e);
+        } finally {
+            if (spooled != null) {
+                try {
+                    Files.deleteIfExists(spooled);
+                } catch (IOException e) {
+                    log.warn("Failed to delete spooled upload {}: {}", spooled, e.getMessage());
+                }
             }
+        }
+    }
+    
+    /**
+     * Process a document read from source (an upload, or a file stored for an ingestion job)
+     *
+     * @param sourceId identifies the document across uploads: its stored chunks are replaced, and only
+     *                 the new or edited ones are embedded
+     * @param run ingestion run of a job (resumable, finished by the job), or null to ingest in a run of its own
+     */
+    public Map<String, Object> trainWithDocument(InputStreamSource source, String filename, Map<String, Object> metadata,
+                                                 String sourceId, IngestionPipeline.Run run) {
+        try {
+            log.info("Processing document: {}", filename);
             
-            log.debug("Extracted {} characters from document", extractedText.length());
-            
-            // Split into chunks
-            List<String> chunks = documentSplitterService.splitText(extractedText);
-            log.info("Split document into {} chunks", chunks.size());
-            
-            // Generate IDs for chunks
-            String baseId = generateBaseId(file.getOriginalFilename());
-            List<String> ids = new ArrayList<>();
-            for (int i = 0; i < chunks.size(); i++) {
-                ids.add(baseId + "-chunk-" + i);
+            // Metadata shared by every chunk; chunk_index (and section_path, tokens when structured) is added per chunk
+            Map<String, Object> documentMetadata = new HashMap<>();
+            if (metadata != null) {
+                documentMetadata.putAll(metadata);
             }
+            documentMetadata.put("source", filename);
+            documentMetadata.put("type", getFileType(filename));
+            documentMetadata.put(IngestionPipeline.SOURCE_ID, sourceId);
             
-            // Prepare metadata for each chunk
-            Map<String, Object> chunkMetadata = new HashMap<>();
-            if (metadata != null) {
-                chunkMetadata.putAll(metadata);
+            int chunks;
+            long characters;
+            Map<String, Object> summary = Map.of();
+            boolean truncated;
+            try (IngestionPipeline.Run ownRun = run == null ? ingestionPipeline.start(sourceId) : null) {
+                IngestionPipeline.Run target = run != null ? run : ownRun;
+                target.replace(sourceId);
+                ChunkIds chunkIds = new ChunkIds(sourceId);
+                AtomicInteger chunkIndex = new AtomicInteger();
+                
+                // Extract text from document (on a parser worker), chunking as it goes; the chunks are
+                // ingested on this thread while the worker parses on
+                if (documentSplitterService.isStructured()) {
+                    ChunkHandOff<StructuredChunker.Chunk> handOff = documentParser.handOff(chunk -> {
+                        Map<String, Object> chunkMetadata = new HashMap<>(documentMetadata);
+                        chunkMetadata.put("chunk_index", chunkIndex.getAndIncrement());
+                        chunkMetadata.put("section_path", chunk.sectionPathText());
+                        chunkMetadata.put("tokens", chunk.tokens());
+                        target.add(chunk.text(), chunkIds.next(chunk.text()), chunkMetadata);
+                    });
+                    StructuredChunker chunker = documentSplitterService.structuredChunker(handOff::put);
+                    truncated = documentParser.parse(source, filename, chunker.contentHandler(), handOff);
+                    chunker.finish();
+                    chunks = chunker.getChunks();
+                    characters = chunker.getCharacters();
+                } else {
+                    ChunkHandOff<String> handOff = documentParser.handOff(chunk -> {
+                        Map<String, Object> chunkMetadata = new HashMap<>(documentMetadata);
+                        chunkMetadata.put("chunk_index", chunkIndex.getAndIncrement());
+                        target.add(chunk, chunkIds.next(chunk), chunkMetadata);
+                    });
+                    IncrementalChunker chunker = documentSplitterService.incrementalChunker(handOff::put);
+                    truncated = documentParser.parse(source, filename, chunker, handOff);
+                    chunker.finish();
+                    chunks = chunker.getChunks();
+                    characters = chunker.getCharacters();
+                }
+                
+                if (chunks == 0) {
+                    throw new RuntimeException("No text could be extracted from the document");
+                }
+                if (ownRun != null) {
+                    ownRun.finish();
+                    summary = ownRun.getSummary();
+                }
             }
-            chunkMetadata.put("source", file.getOriginalFilename());
-            chunkMetadata.put("type", getFileType(file.getOriginalFilename()));
-            chunkMetadata.put("total_chunks", chunks.size());
             
-            // Add to ChromaDB
-            chromaDbService.addDocuments(chunks, ids, chunkMetadata);
+            log.debug("Extracted {} characters from document", characters);
             
             Map<String, Object> result = new HashMap<>();
             result.put("message", "Document processed and added to knowledge base");
-            result.put("filename", file.getOriginalFilename());
-            result.put("chunks", chunks.size());
-            result.put("totalCharacters", extractedText.length());
+            result.put("filename", filename);
+            result.put("chunks", chunks);
+            result.put("totalCharacters", characters);
+            result.put("truncated", truncated);
+            result.putAll(summary);
             
-            log.info("Successfully processed document: {} ({} chunks)", file.getOriginalFilename(), chunks.size());
+            log.info("Successfully processed document: {} ({} chunks)", filename, chunks);
             
             return result;
             
         } catch (Exception e) {
-            log.error("Error processing document: {}", file.getOriginalFilename(), e);
+            log.error("Error processing document: {}", filename, e);
             throw new RuntimeException("Failed to process document: " + e.getMessage(), e);
         }
     }
     
     /**
-     * Extract text from document using Apache Tika
-     */
-    private String extractTextFromDocument(MultipartFile file) throws IOException, TikaException {
-        try {
-            String detectedType = tika.detect(file.getInputStream());
-            log.debug("Detected document type: {}", detectedType);
-            
-            String text = tika.parseToString(file.getInputStream());
-            return text;
-        } catch (Exception e) {
-            log.error("Error extracting text from document", e);
-            throw new IOException("Failed to extract text from document: " + e.getMessage(), e);
-        }
-    }
-    
-    /**
-     * Generate base ID from filename
+     * Generate the source ID from filename: uploading a file with exactly the same name again replaces it
+     * Unnamed uploads cannot be matched to an earlier version and get a unique ID
      */
-    private String generateBaseId(String filename) {
+    public String generateSourceId(String filename) {
         if (filename == null) {
             return "doc-" + System.currentTimeMillis();
         }
-        String baseName = filename.replaceAll("[^a-zA-Z0-9]", "-");
-        return baseName.toLowerCase() + "-" + System.currentTimeMillis();
+        return ChunkIds.sourceId("doc", filename);
     }
     
     /**
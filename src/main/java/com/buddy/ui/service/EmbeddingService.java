@@ -1,5 +1,8 @@
 package com.buddy.ui.service;
 
+import com.buddy.ui.config.HedgingPolicies;
+import com.buddy.ui.config.HttpTransports;
+import com.buddy.ui.config.LlmEndpoints;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
@@ -7,9 +10,12 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Embedding service using OpenAI-compatible API
@@ -20,12 +26,12 @@ import java.util.*;
 @Slf4j
 public class EmbeddingService {
     
-    private final RestTemplate restTemplate;
+    private final HttpTransports httpTransports;
+    private final LlmEndpoints llmEndpoints;
+    private final HedgingPolicies hedgingPolicies;
+    private final KnowledgeBaseIndex knowledgeBaseIndex;
     private final ObjectMapper objectMapper = new ObjectMapper();
     
-    @Value("${spring.ai.custom-llm.base-url}")
-    private String baseUrl;
-    
     @Value("${spring.ai.custom-llm.api-key}")
     private String apiKey;
     
@@ -35,97 +41,184 @@ public class EmbeddingService {
     @Value("${spring.ai.custom-llm.password}")
     private String password;
     
-    @Value("${spring.ai.custom-embedding.model:practicus/gemma-300m-hackathon}")
-    private String embeddingModel;
-    
     /**
      * Generate embedding for a single text (equivalent to embed_query in Python)
+     * Inside a batch the embedding of a repeated text is taken from the batch's RetrievalCache; inside a
+     * chat turn the query the router already embedded (centroid routing) is not embedded again
      */
     public List<Float> generateEmbedding(String text) {
+        Optional<List<Float>> routed = routedEmbedding(text);
+        if (routed.isPresent()) {
+            return routed.get();
+        }
+        return RetrievalCache.current()
+                .map(cache -> cache.embedding(text, () -> embed(text)))
+                .orElseGet(() -> embed(text));
+    }
+    
+    private Optional<List<Float>> routedEmbedding(String text) {
+        return ChatTurnContext.current()
+                .map(ChatTurnContext::getRoute)
+                .map(ChatRoute::queryEmbedding)
+                .filter(embedding -> embedding.text().equals(text) && embedding.model().equals(currentModel()))
+                .map(ChatRoute.QueryEmbedding::vector);
+    }
+    
+    private List<Float> embed(String text) {
         try {
-            // OpenAI-compatible embeddings endpoint
-            String url = baseUrl.replace("/v1", "") + "/v1/embeddings";
-            
             log.debug("Generating embedding for text: {}", text.substring(0, Math.min(50, text.length())));
             
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Authorization", "Bearer " + apiKey);
-            
-            Map<String, Object> request = new HashMap<>();
-            request.put("model", embeddingModel);
-            request.put("input", text);
-            
-            // Add metadata (equivalent to extra_body in Python)
-            Map<String, Object> metadata = new HashMap<>();
-            metadata.put("username", username);
-            metadata.put("pwd", password);
-            request.put("metadata", metadata);
-            
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(request, headers);
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.POST, entity, String.class);
-            
-            // Parse response
-            JsonNode jsonResponse = objectMapper.readTree(response.getBody());
-            JsonNode data = jsonResponse.get("data");
-            
-            if (data != null && data.isArray() && data.size() > 0) {
-                JsonNode embedding = data.get(0).get("embedding");
-                if (embedding != null && embedding.isArray()) {
-                    List<Float> result = new ArrayList<>();
-                    for (JsonNode value : embedding) {
-                        result.add((float) value.asDouble());
-                    }
-                    log.debug("Generated embedding with dimension: {}", result.size());
-                    return result;
-                }
-            }
-            
-            throw new RuntimeException("Failed to parse embedding response");
-            
+            byte[] request = encodeRequest(text);
+            Duration timeout = ChatTurnContext.callTimeout();
+            // Waited on through the chat turn (if any), so a cancelled turn aborts the call
+            byte[] response = ChatTurnContext.await(
+                    hedgingPolicies.embeddings().execute(() -> postAsync(request, timeout)));
+            List<Float> result = parseEmbedding(response);
+            log.debug("Generated embedding with dimension: {}", result.size());
+            return result;
+            
+        } catch (DeadlineExceededException | ChatTurnCancelledException e) {
+            // The turn ended, not the embeddings endpoint: callers handle these as they are
+            log.debug("Embedding call abandoned: {}", e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("Error generating embedding", e);
             throw new RuntimeException("Failed to generate embedding: " + e.getMessage(), e);
         }
     }
     
+    /**
+     * Non-blocking variant of generateEmbedding
+     */
+    public CompletableFuture<List<Float>> generateEmbeddingAsync(String text) {
+        byte[] request = encodeRequest(text);
+        Duration timeout = ChatTurnContext.callTimeout();
+        return track(hedgingPolicies.embeddings().execute(() -> postAsync(request, timeout)))
+                .thenApply(this::parseEmbedding);
+    }
+    
     /**
      * Generate embeddings for multiple texts (equivalent to embed_documents in Python)
      */
     public List<List<Float>> generateEmbeddings(List<String> texts) {
+        return generateEmbeddings(texts, currentModel());
+    }
+    
+    /**
+     * Generate embeddings with the given model rather than the one of the active knowledge base index
+     * (re-embedding into a new collection)
+     */
+    public List<List<Float>> generateEmbeddings(List<String> texts, String model) {
         try {
-            // OpenAI-compatible embeddings endpoint
-            String url = baseUrl.replace("/v1", "") + "/v1/embeddings";
-            
-            log.debug("Generating embeddings for {} texts", texts.size());
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Authorization", "Bearer " + apiKey);
+            log.debug("Generating embeddings for {} texts with {}", texts.size(), model);
             
-            Map<String, Object> request = new HashMap<>();
-            request.put("model", embeddingModel);
-            request.put("input", texts);
+            byte[] request = encodeRequest(texts, model);
+            Duration timeout = ChatTurnContext.callTimeout();
+            List<List<Float>> results = parseEmbeddings(ChatTurnContext.await(postAsync(request, timeout)));
             
-            // Add metadata (equivalent to extra_body in Python)
-            Map<String, Object> metadata = new HashMap<>();
-            metadata.put("username", username);
-            metadata.put("pwd", password);
-            request.put("metadata", metadata);
+            log.debug("Generated {} embeddings with dimension: {}", 
+                    results.size(), 
+                    results.isEmpty() ? 0 : results.get(0).size());
             
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(request, headers);
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.POST, entity, String.class);
+            return results;
             
-            // Parse response
-            JsonNode jsonResponse = objectMapper.readTree(response.getBody());
-            JsonNode data = jsonResponse.get("data");
+        } catch (DeadlineExceededException | ChatTurnCancelledException e) {
+            // The turn ended, not the embeddings endpoint: callers handle these as they are
+            log.debug("Embedding call abandoned: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Error generating embeddings", e);
+            throw new RuntimeException("Failed to generate embeddings: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Non-blocking variant of generateEmbeddings
+     */
+    public CompletableFuture<List<List<Float>>> generateEmbeddingsAsync(List<String> texts) {
+        byte[] request = encodeRequest(texts);
+        return track(postAsync(request, ChatTurnContext.callTimeout()))
+                .thenApply(this::parseEmbeddings);
+    }
+    
+    /**
+     * Model the queries and ingested chunks are embedded with: the one of the active knowledge base index
+     */
+    public String currentModel() {
+        return knowledgeBaseIndex.current().embeddingModel();
+    }
+    
+    /**
+     * Tie an async call to the current chat turn (if any) so that cancelling the turn cancels it
+     */
+    private static <T> CompletableFuture<T> track(CompletableFuture<T> call) {
+        return ChatTurnContext.current().map(turn -> turn.track(call)).orElse(call);
+    }
+    
+    /**
+     * One attempt; each hedged attempt picks its own replica through the balancer
+     * timeout is captured on the caller's thread, attempts may start on another one
+     */
+    private CompletableFuture<byte[]> postAsync(byte[] request, Duration timeout) {
+        return llmEndpoints.embeddings().executeAsync(baseUrl ->
+                httpTransports.embeddings().postAsync(embeddingsUrl(baseUrl), headers(), request, timeout));
+    }
+    
+    private static String embeddingsUrl(String baseUrl) {
+        // OpenAI-compatible embeddings endpoint
+        return baseUrl.replace("/v1", "") + "/v1/embeddings";
+    }
+    
+    private HttpHeaders headers() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("Authorization", "Bearer " + apiKey);
+        return headers;
+    }
+    
+    private byte[] encodeRequest(Object input) {
+        return encodeRequest(input, currentModel());
+    }
+    
+    /**
+     * Request body; input is a single text or a list of texts
+     */
+    private byte[] encodeRequest(Object input, String model) {
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("model", model);
+        request.put("input", input);
+        
+        // Add metadata (equivalent to extra_body in Python)
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("username", username);
+        metadata.put("pwd", password);
+        request.put("metadata", metadata);
+        
+        try {
+            return objectMapper.writeValueAsBytes(request);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode embedding request", e);
+        }
+    }
+    
+    private List<Float> parseEmbedding(byte[] response) {
+        List<List<Float>> embeddings = parseEmbeddings(response);
+        if (embeddings.isEmpty()) {
+            throw new RuntimeException("Failed to parse embedding response");
+        }
+        return embeddings.get(0);
+    }
+    
+    private List<List<Float>> parseEmbeddings(byte[] response) {
+        try {
+            JsonNode data = objectMapper.readTree(response).get("data");
             
             List<List<Float>> results = new ArrayList<>();
             if (data != null && data.isArray()) {
                 for (JsonNode item : data) {
                     JsonNode embedding = item.get("embedding");
                     if (embedding != null && embedding.isArray()) {
-                        List<Float> embeddingList = new ArrayList<>();
+                        List<Float> embeddingList = new ArrayList<>(embedding.size());
                         for (JsonNode value : embedding) {
                             embeddingList.add((float) value.asDouble());
                         }
@@ -133,16 +226,9 @@ public class EmbeddingService {
                     }
                 }
             }
-            
-            log.debug("Generated {} embeddings with dimension: {}", 
-                    results.size(), 
-                    results.isEmpty() ? 0 : results.get(0).size());
-            
             return results;
-            
-        } catch (Exception e) {
-            log.error("Error generating embeddings", e);
-            throw new RuntimeException("Failed to generate embeddings: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to parse embedding response", e);
         }
     }
 }
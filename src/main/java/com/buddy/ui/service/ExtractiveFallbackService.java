@@ -0,0 +1,107 @@
+package com.buddy.ui.service;
+
+import com.buddy.ui.config.HttpTransportException;
+import com.buddy.ui.config.LlmUnavailableException;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Degraded answers while the LLM gateway is unavailable
+ * Builds an extractive response from the top chunks the turn already retrieved, without any LLM call
+ * or new retrieval (the embedding goes through the same gateway, and the turn may be out of time),
+ * so the user still gets the relevant onboarding content instead of an error
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ExtractiveFallbackService {
+
+    private static final int MAX_EXCERPT_CHARS = 600;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${spring.ai.circuit-breaker.fallback-chunks:3}")
+    private int fallbackChunks;
+
+    /**
+     * Whether a failed turn should be answered with a fallback: the circuit is open, the turn ran out
+     * of time, or the gateway itself failed (no response, 5xx, throttled); client errors and bugs
+     * still surface as errors
+     */
+    public boolean shouldFallBack(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof LlmUnavailableException || cause instanceof DeadlineExceededException) {
+                return true;
+            }
+            if (cause instanceof HttpTransportException transportException) {
+                return transportException.isServerError();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Fallback answer from the chunks retrieved for the turn (none when it did not get to retrieval);
+     * metadata (fallback flag, reason, sources) is added to the given map
+     */
+    public String answer(ChatTurnContext turn, Throwable error, Map<String, Object> metadata) {
+        String reason = hasCause(error, LlmUnavailableException.class) ? "circuit_open"
+                : hasCause(error, DeadlineExceededException.class) ? "deadline_exceeded"
+                : "llm_error";
+        List<Map<String, Object>> retrieved = turn.getRetrievedChunks();
+        List<Map<String, Object>> chunks = retrieved.subList(0, Math.min(fallbackChunks, retrieved.size()));
+        log.warn("LLM unavailable ({}), answering extractively from {} chunk(s)", reason, chunks.size());
+
+        meterRegistry.counter("chat.fallback.responses", "reason", reason,
+                "outcome", chunks.isEmpty() ? "no_context" : "extractive").increment();
+
+        metadata.put("fallback", true);
+        metadata.put("fallbackReason", reason);
+        metadata.put("fallbackSources", chunks.stream()
+                .map(chunk -> chunk.getOrDefault("id", ""))
+                .toList());
+
+        if (chunks.isEmpty()) {
+            return "Üzgünüm, şu anda asistana ulaşılamıyor ve sorunuzla ilgili bir kaynak bulamadım. "
+                    + "Lütfen birkaç dakika sonra tekrar deneyin.";
+        }
+
+        StringBuilder answer = new StringBuilder(
+                "Şu anda asistana ulaşılamıyor. Sorunuzla ilgili bilgi tabanında bulduğum içerikler:\n");
+        int index = 1;
+        for (Map<String, Object> chunk : chunks) {
+            answer.append('\n').append(index++).append(". ").append(excerpt((String) chunk.get("text"))).append('\n');
+        }
+        answer.append("\nAsistan yeniden erişilebilir olduğunda sorunuzu tekrar sorabilirsiniz.");
+        return answer.toString();
+    }
+
+    /**
+     * Chunk text cut at a sentence or word boundary
+     */
+    private static String excerpt(String text) {
+        String normalized = text == null ? "" : text.strip().replaceAll("\\s+", " ");
+        if (normalized.length() <= MAX_EXCERPT_CHARS) {
+            return normalized;
+        }
+        String cut = normalized.substring(0, MAX_EXCERPT_CHARS);
+        int sentenceEnd = cut.lastIndexOf(". ");
+        int end = sentenceEnd > MAX_EXCERPT_CHARS / 2 ? sentenceEnd + 1 : cut.lastIndexOf(' ');
+        return (end > 0 ? cut.substring(0, end) : cut) + " …";
+    }
+
+    private static boolean hasCause(Throwable error, Class<? extends Throwable> type) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,157 @@
+package com.buddy.ui.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Streaming counterpart of DocumentSplitterService.splitText
+ * Text is appended piece by piece (e.g. from a SAX handler); whitespace is collapsed on the fly and
+ * a chunk is emitted as soon as more than chunkSize characters are buffered, so memory stays at about
+ * one chunk whatever the document size
+ * - A chunk ends at the last sentence boundary within chunkSize (if it keeps at least half a chunk),
+ *   else at the last space, else it is cut at chunkSize
+ * - The next chunk starts with the last sentence fragment of the previous one's last chunkOverlap
+ *   characters, like splitText
+ */
+public final class IncrementalChunker {
+
+    private final int chunkSize;
+    private final int chunkOverlap;
+    private final Consumer<String> onChunk;
+
+    private final StringBuilder buffer = new StringBuilder();
+    // Length of the overlap carried over at the start of the buffer
+    private int carried;
+    private boolean pendingSpace;
+    private long characters;
+    private int chunks;
+
+    public IncrementalChunker(int chunkSize, int chunkOverlap, Consumer<String> onChunk) {
+        this.chunkSize = chunkSize;
+        // Each chunk must consume more than it carries over, or the chunker would not progress
+        this.chunkOverlap = Math.min(chunkOverlap, chunkSize / 2);
+        this.onChunk = onChunk;
+    }
+
+    public void append(char[] text, int start, int length) {
+        for (int i = start; i < start + length; i++) {
+            append(text[i]);
+        }
+    }
+
+    public void append(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            append(text.charAt(i));
+        }
+    }
+
+    /**
+     * Emit what is left; call once after the last append
+     */
+    public void finish() {
+        while (buffer.length() > chunkSize) {
+            emitChunk();
+        }
+        if (buffer.length() > carried) {
+            emit(buffer.toString().trim());
+        }
+        buffer.setLength(0);
+        carried = 0;
+    }
+
+    /**
+     * Characters consumed after whitespace normalization
+     */
+    public long getCharacters() {
+        return characters;
+    }
+
+    public int getChunks() {
+        return chunks;
+    }
+
+    private void append(char c) {
+        if (Character.isWhitespace(c)) {
+            pendingSpace = buffer.length() > 0;
+            return;
+        }
+        if (pendingSpace) {
+            buffer.append(' ');
+            characters++;
+            pendingSpace = false;
+        }
+        buffer.append(c);
+        characters++;
+        if (buffer.length() > chunkSize) {
+            emitChunk();
+        }
+    }
+
+    private void emitChunk() {
+        int end = chunkEnd();
+        String chunk = buffer.substring(0, end).trim();
+        emit(chunk);
+
+        String overlap = overlap(chunk);
+        int restStart = end;
+        while (restStart < buffer.length() && buffer.charAt(restStart) == ' ') {
+            restStart++;
+        }
+        String rest = buffer.substring(restStart);
+        buffer.setLength(0);
+        buffer.append(overlap);
+        if (!overlap.isEmpty() && !rest.isEmpty()) {
+            buffer.append(' ');
+        }
+        carried = buffer.length();
+        buffer.append(rest);
+    }
+
+    /**
+     * End (exclusive) of the next chunk in the buffer, which holds more than chunkSize characters
+     */
+    private int chunkEnd() {
+        int space = -1;
+        for (int i = Math.min(chunkSize, buffer.length() - 1); i > chunkOverlap + 1; i--) {
+            if (buffer.charAt(i) != ' ') {
+                continue;
+            }
+            if (space < 0) {
+                space = i;
+            }
+            if (isSentenceEnd(buffer.charAt(i - 1))) {
+                if (i >= chunkSize / 2) {
+                    return i;
+                }
+                break;
+            }
+        }
+        return space > 0 ? space : chunkSize;
+    }
+
+    /**
+     * Last sentence fragment of the chunk's last chunkOverlap characters
+     */
+    private String overlap(String chunk) {
+        if (chunkOverlap <= 0) {
+            return "";
+        }
+        String window = chunk.substring(Math.max(0, chunk.length() - chunkOverlap));
+        for (int i = window.length() - 1; i > 0; i--) {
+            if (window.charAt(i) == ' ' && isSentenceEnd(window.charAt(i - 1))) {
+                return window.substring(i + 1);
+            }
+        }
+        return window.strip();
+    }
+
+    private void emit(String chunk) {
+        if (!chunk.isEmpty()) {
+            chunks++;
+            onChunk.accept(chunk);
+        }
+    }
+
+    private static boolean isSentenceEnd(char c) {
+        return c == '.' || c == '!' || c == '?';
+    }
+}
@@ -0,0 +1,11 @@
+package com.buddy.ui.service;
+
+/**
+ * An ingestion job was cancelled while running; its committed chunks stay in the knowledge base
+ */
+public class IngestionCancelledException extends RuntimeException {
+
+    public IngestionCancelledException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,330 @@
+package com.buddy.ui.service;
+
+import com.buddy.ui.model.IngestionJob;
+import com.buddy.ui.model.IngestionJobStatus;
+import com.buddy.ui.model.IngestionJobType;
+import com.buddy.ui.repository.IngestionJobRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Knowledge-base ingestion as durable jobs
+ * - Submitting stores the job in Postgres (uploads go to the storage directory, which must be shared
+ *   by all instances) and returns at once; workers on any instance claim queued jobs with SKIP LOCKED
+ * - Progress is the committed chunk watermark of the ingestion run, persisted as batches complete
+ * - Cancel is a flag checked by the worker at every poll; cancelled and failed jobs can be resumed and
+ *   continue after their committed chunks; jobs of a dead instance (no heartbeat) are queued again
+ * - REEMBED jobs copy the knowledge base into a new collection embedded with another model
+ *   (ReembedService), and cut retrieval over to it when they succeed
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IngestionJobService {
+
+    private static final List<IngestionJobStatus> RESUMABLE = List.of(IngestionJobStatus.FAILED, IngestionJobStatus.CANCELLED);
+    private static final List<IngestionJobStatus> ACTIVE = List.of(IngestionJobStatus.QUEUED, IngestionJobStatus.RUNNING);
+
+    private final IngestionJobRepository ingestionJobRepository;
+    private final IngestionPipeline ingestionPipeline;
+    private final DocumentTrainingService documentTrainingService;
+    private final TextTrainingService textTrainingService;
+    private final ReembedService reembedService;
+    private final KnowledgeBaseIndex knowledgeBaseIndex;
+
+    @Value("${spring.rag.jobs.workers:2}")
+    private int workers;
+
+    @Value("${spring.rag.jobs.storage-dir:${java.io.tmpdir}/buddy-ingestion}")
+    private String storageDirectory;
+
+    @Value("${spring.rag.jobs.stale-after:5m}")
+    private Duration staleAfter;
+
+    private final String workerId = ManagementFactory.getRuntimeMXBean().getName();
+    // Jobs running on this instance
+    private final Map<UUID, IngestionPipeline.Run> running = new ConcurrentHashMap<>();
+    private Path storageDir;
+    private Semaphore freeWorkers;
+    private ExecutorService executor;
+    private volatile boolean stopping;
+
+    @PostConstruct
+    void start() throws IOException {
+        storageDir = Files.createDirectories(Path.of(storageDirectory));
+        freeWorkers = new Semaphore(workers);
+        executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ingestion-job-", 0).factory());
+        log.info("Ingestion job workers: {} on {}, storage: {}", workers, workerId, storageDir);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        // Running jobs stop after their in-flight batches and are queued again, to resume on another instance
+        stopping = true;
+        running.values().forEach(run -> run.abort(new IngestionCancelledException("Instance shutting down")));
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    public IngestionJob submitDocument(MultipartFile file, Map<String, Object> metadata) throws IOException {
+        Path stored = storageDir.resolve(UUID.randomUUID() + ".upload");
+        file.transferTo(stored);
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("metadata", metadata);
+        return submit(IngestionJob.builder()
+                .type(IngestionJobType.DOCUMENT)
+                .sourceName(file.getOriginalFilename())
+                .baseId(documentTrainingService.generateSourceId(file.getOriginalFilename()))
+                .storagePath(stored.toString())
+                .payload(payload));
+    }
+
+    /**
+     * Queue a text job; payload is the body of the matching /train endpoint
+     */
+    public IngestionJob submitText(IngestionJobType type, Map<String, Object> payload) {
+        String prefix = switch (type) {
+            case TEXT -> "text-";
+            case TEXTS -> "texts-";
+            case DOCUMENTS -> "docs-";
+            case DOCUMENT -> throw new IllegalArgumentException("Document jobs are submitted with a file");
+            case REEMBED -> throw new IllegalArgumentException("Re-embedding jobs are submitted with a model");
+        };
+        return submit(IngestionJob.builder()
+                .type(type)
+                .sourceName(type.name().toLowerCase())
+                .baseId(prefix + System.currentTimeMillis())
+                .payload(payload));
+    }
+
+    /**
+     * Queue the re-embedding of the knowledge base with the model (null: spring.ai.custom-embedding.model)
+     *
+     * @throws IllegalStateException when a re-embedding job is already queued or running
+     */
+    public IngestionJob submitReembed(String model) {
+        if (ingestionJobRepository.existsByTypeAndStatusIn(IngestionJobType.REEMBED, ACTIVE)) {
+            throw new IllegalStateException("A re-embedding job is already queued or running");
+        }
+        Map<String, Object> payload = reembedService.plan(model);
+        return submit(IngestionJob.builder()
+                .type(IngestionJobType.REEMBED)
+                .sourceName("reembed")
+                .baseId((String) payload.get(KnowledgeBaseIndex.TARGET_COLLECTION))
+                .payload(payload));
+    }
+
+    public Optional<IngestionJob> findJob(UUID jobId) {
+        return ingestionJobRepository.findById(jobId);
+    }
+
+    /**
+     * Cancel a queued job at once, or ask the worker of a running job to stop after its in-flight batches
+     *
+     * @return false when the job is already done
+     */
+    public boolean cancel(UUID jobId) {
+        return ingestionJobRepository.cancelQueued(jobId, LocalDateTime.now(),
+                IngestionJobStatus.QUEUED, IngestionJobStatus.CANCELLED) == 1
+                || ingestionJobRepository.requestCancel(jobId, IngestionJobStatus.RUNNING) == 1;
+    }
+
+    /**
+     * Queue a failed or cancelled job again
+     *
+     * @return false when the job is not failed or cancelled
+     */
+    public boolean resume(UUID jobId) {
+        return ingestionJobRepository.resume(jobId, IngestionJobStatus.QUEUED, RESUMABLE) == 1;
+    }
+
+    public Map<String, Object> toView(IngestionJob job) {
+        Map<String, Object> view = new HashMap<>();
+        view.put("jobId", job.getId());
+        view.put("type", job.getType());
+        view.put("status", job.getStatus());
+        view.put("source", job.getSourceName());
+        view.put("processedChunks", job.getProcessedChunks());
+        view.put("totalChunks", job.getTotalChunks());
+        if (job.getTotalChunks() != null && job.getTotalChunks() > 0) {
+            view.put("progressPercent", Math.min(100.0, Math.round(job.getProcessedChunks() * 1000.0 / job.getTotalChunks()) / 10.0));
+        }
+        view.put("cancelRequested", job.isCancelRequested());
+        view.put("attempts", job.getAttempts());
+        view.put("result", job.getResult());
+        view.put("error", job.getError());
+        view.put("createdAt", job.getCreatedAt());
+        view.put("startedAt", job.getStartedAt());
+        view.put("completedAt", job.getCompletedAt());
+        return view;
+    }
+
+    /**
+     * Claim queued jobs for the free workers, keep the heartbeat of local jobs alive, stop the ones
+     * whose cancel was requested, and queue again the jobs of instances that stopped
+     */
+    @Scheduled(initialDelayString = "${spring.rag.jobs.poll-interval:PT2S}",
+               fixedDelayString = "${spring.rag.jobs.poll-interval:PT2S}")
+    public void poll() {
+        while (freeWorkers.tryAcquire()) {
+            Optional<UUID> claimed = ingestionJobRepository.claimNext(workerId, LocalDateTime.now());
+            if (claimed.isEmpty()) {
+                freeWorkers.release();
+                break;
+            }
+            executor.execute(() -> run(claimed.get()));
+        }
+
+        if (!running.isEmpty()) {
+            List<UUID> local = List.copyOf(running.keySet());
+            ingestionJobRepository.heartbeat(local, LocalDateTime.now());
+            for (UUID jobId : ingestionJobRepository.findCancelRequested(local)) {
+                IngestionPipeline.Run run = running.get(jobId);
+                if (run != null) {
+                    log.info("Cancelling ingestion job {}", jobId);
+                    run.abort(new IngestionCancelledException("Ingestion job " + jobId + " cancelled"));
+                }
+            }
+        }
+
+        int stale = ingestionJobRepository.requeueStale(LocalDateTime.now().minus(staleAfter),
+                IngestionJobStatus.RUNNING, IngestionJobStatus.QUEUED);
+        if (stale > 0) {
+            log.warn("Requeued {} ingestion job(s) of stopped workers", stale);
+        }
+    }
+
+    private IngestionJob submit(IngestionJob.IngestionJobBuilder builder) {
+        IngestionJob job = ingestionJobRepository.save(builder.status(IngestionJobStatus.QUEUED).build());
+        log.info("Queued {} ingestion job {} ({})", job.getType(), job.getId(), job.getSourceName());
+        // Picked up by the next poll of whichever instance has a free worker
+        return job;
+    }
+
+    private void run(UUID jobId) {
+        try {
+            IngestionJob job = ingestionJobRepository.findById(jobId).orElseThrow();
+            log.info("Running ingestion job {} (attempt {}, resuming after {} chunks)",
+                    jobId, job.getAttempts(), job.getProcessedChunks());
+            boolean reembed = job.getType() == IngestionJobType.REEMBED;
+            long start = System.nanoTime();
+            try (IngestionPipeline.Run run = ingestionPipeline.start(job.getBaseId(), job.getProcessedChunks(),
+                    committed -> ingestionJobRepository.updateProgress(jobId, committed, LocalDateTime.now()),
+                    reembed ? reembedService.target(job) : null)) {
+                running.put(jobId, run);
+                Map<String, Object> result = new HashMap<>(execute(job, run));
+                // Everything is chunked, the total is known while the last batches are in flight
+                ingestionJobRepository.updateTotal(jobId, run.getChunks());
+                long total = run.finish();
+                result.putAll(run.getSummary());
+                if (reembed) {
+                    // Fence writes to the knowledge base until the cutover, then catch up with the changes
+                    // made to it meanwhile
+                    ingestionJobRepository.fence(jobId, LocalDateTime.now(), IngestionJobStatus.RUNNING);
+                    knowledgeBaseIndex.awaitFenced();
+                    result.putAll(reembedService.reconcile(job));
+                }
+                result.putAll(throughput(total - job.getProcessedChunks(), System.nanoTime() - start));
+                finish(jobId, IngestionJobStatus.SUCCEEDED, result, null, total);
+                if (reembed) {
+                    // The succeeded job is the new active index; other instances follow at their next refresh
+                    knowledgeBaseIndex.refresh();
+                }
+                if (job.getStoragePath() != null) {
+                    Files.deleteIfExists(Path.of(job.getStoragePath()));
+                }
+            }
+        } catch (Exception e) {
+            if (stopping) {
+                log.info("Ingestion job {} interrupted by shutdown, queueing it again", jobId);
+                finish(jobId, IngestionJobStatus.QUEUED, null, null, null);
+            } else if (hasCause(e, IngestionCancelledException.class)) {
+                log.info("Ingestion job {} cancelled", jobId);
+                finish(jobId, IngestionJobStatus.CANCELLED, null, null, null);
+            } else {
+                log.error("Ingestion job {} failed", jobId, e);
+                finish(jobId, IngestionJobStatus.FAILED, null, e.getMessage(), null);
+            }
+        } finally {
+            running.remove(jobId);
+            freeWorkers.release();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> execute(IngestionJob job, IngestionPipeline.Run run) {
+        Map<String, Object> payload = job.getPayload();
+        Map<String, Object> metadata = (Map<String, Object>) payload.get("metadata");
+        return switch (job.getType()) {
+            case DOCUMENT -> documentTrainingService.trainWithDocument(new FileSystemResource(job.getStoragePath()),
+                    job.getSourceName(), metadata, job.getBaseId(), run);
+            case TEXT -> textTrainingService.trainWithText((String) payload.get("text"), metadata, run);
+            case TEXTS -> textTrainingService.trainWithTexts((List<String>) payload.get("texts"), metadata, run);
+            case DOCUMENTS -> textTrainingService.trainWithDocuments(
+                    (List<Map<String, Object>>) payload.get("documents"), run);
+            case REEMBED -> reembedService.reembed(job, run, total -> ingestionJobRepository.updateTotal(job.getId(), total));
+        };
+    }
+
+    /**
+     * Rate of this attempt (chunks committed by earlier attempts are not counted)
+     */
+    private static Map<String, Object> throughput(long chunks, long elapsedNanos) {
+        double seconds = Math.max(elapsedNanos / 1e9, 0.001);
+        Map<String, Object> throughput = new HashMap<>();
+        throughput.put("durationMillis", TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        throughput.put("chunksPerSecond", Math.round(chunks / seconds * 100) / 100.0);
+        return throughput;
+    }
+
+    private void finish(UUID jobId, IngestionJobStatus status, Map<String, Object> result, String error,
+                        Long totalChunks) {
+        ingestionJobRepository.findById(jobId).ifPresent(job -> {
+            job.setStatus(status);
+            job.setResult(result);
+            job.setError(error);
+            job.setWorker(null);
+            // Lifts the write fence of a cutover, whether it succeeded or not
+            job.setFencedAt(null);
+            job.setCompletedAt(status.isDone() ? LocalDateTime.now() : null);
+            if (totalChunks != null) {
+                job.setTotalChunks(totalChunks);
+                job.setProcessedChunks(totalChunks);
+            }
+            ingestionJobRepository.save(job);
+        });
+    }
+
+    private static boolean hasCause(Throwable error, Class<? extends Throwable> type) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
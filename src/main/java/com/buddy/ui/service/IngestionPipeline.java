@@ -0,0 +1,425 @@
+package com.buddy.ui.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Staged ingestion: chunks → embed (batched) → upsert into ChromaDB
+ * - The producer (parser / splitter) adds chunks to a Run; every embed-batch-size chunks form a batch
+ * - At most embed-parallelism batches are embedded and upsert-parallelism batches upserted at a time,
+ *   across all runs, so ingestion runs at the gateway's throughput without overloading it
+ * - Each run has at most max-pending-batches batches in flight; add() blocks beyond that, which bounds
+ *   memory and slows the producer down to the pipeline's pace
+ * - Re-ingesting a source (replace()) only embeds its new or edited chunks and deletes the chunks that
+ *   disappeared, chunk IDs being content-addressed (ChunkIds)
+ * - Chunks go into the active knowledge base index (KnowledgeBaseIndex), or the target of a re-embedding run;
+ *   batches wait while a cutover fences writes to the active index
+ * - Metrics: ingestion.stage.duration and ingestion.stage.queued (stage=embed|upsert), ingestion.chunks
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IngestionPipeline {
+
+    // Chunk metadata key identifying the source (document, text) a chunk belongs to
+    public static final String SOURCE_ID = "source_id";
+    private static final int EXISTING_PAGE_SIZE = 1000;
+    // A batch spans at most this many embed batches of chunks (the rest being unchanged)
+    private static final int MAX_BATCH_SPAN = 8;
+
+    private final EmbeddingService embeddingService;
+    private final ChromaDbService chromaDbService;
+    private final KnowledgeBaseIndex knowledgeBaseIndex;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${spring.rag.ingestion.embed-batch-size:32}")
+    private int batchSize;
+
+    @Value("${spring.rag.ingestion.embed-parallelism:4}")
+    private int embedParallelism;
+
+    @Value("${spring.rag.ingestion.upsert-parallelism:2}")
+    private int upsertParallelism;
+
+    @Value("${spring.rag.ingestion.max-pending-batches:8}")
+    private int maxPendingBatches;
+
+    private Semaphore embedSlots;
+    private Semaphore upsertSlots;
+    private ExecutorService executor;
+
+    private final AtomicInteger embedQueued = new AtomicInteger();
+    private final AtomicInteger upsertQueued = new AtomicInteger();
+    private Timer embedDuration;
+    private Timer upsertDuration;
+    private Counter chunksIngested;
+    private Counter chunksFailed;
+    private Counter chunksUnchanged;
+    private Counter chunksDeleted;
+
+    @PostConstruct
+    void start() {
+        embedSlots = new Semaphore(embedParallelism, true);
+        upsertSlots = new Semaphore(upsertParallelism, true);
+        executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ingestion-", 0).factory());
+
+        embedDuration = Timer.builder("ingestion.stage.duration").tag("stage", "embed").register(meterRegistry);
+        upsertDuration = Timer.builder("ingestion.stage.duration").tag("stage", "upsert").register(meterRegistry);
+        Gauge.builder("ingestion.stage.queued", embedQueued, AtomicInteger::get)
+                .description("Batches waiting for an embedding slot")
+                .tag("stage", "embed")
+                .register(meterRegistry);
+        Gauge.builder("ingestion.stage.queued", upsertQueued, AtomicInteger::get)
+                .description("Batches waiting for an upsert slot")
+                .tag("stage", "upsert")
+                .register(meterRegistry);
+        chunksIngested = Counter.builder("ingestion.chunks").tag("outcome", "ingested").register(meterRegistry);
+        chunksFailed = Counter.builder("ingestion.chunks").tag("outcome", "failed").register(meterRegistry);
+        chunksUnchanged = Counter.builder("ingestion.chunks").tag("outcome", "unchanged").register(meterRegistry);
+        chunksDeleted = Counter.builder("ingestion.chunks").tag("outcome", "deleted").register(meterRegistry);
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Start an ingestion run; close it (try-with-resources) so that an abandoned run waits for its
+     * in-flight batches instead of leaving them behind
+     */
+    public Run start(String name) {
+        return start(name, 0, committed -> { });
+    }
+    
+    /**
+     * Start a resumable run (ingestion job)
+     * The first skipChunks chunks added are dropped, an earlier attempt already ingested them (chunking
+     * is deterministic, so the producer simply replays its input). onCommitted is called with the number
+     * of leading chunks, skipped ones included, that are known to be ingested: batches complete out of
+     * order, so this only advances over a contiguous prefix; it is a safe point to resume from
+     */
+    public Run start(String name, long skipChunks, LongConsumer onCommitted) {
+        return start(name, skipChunks, onCommitted, null);
+    }
+    
+    /**
+     * Start a resumable run writing into the given index (collection and embedding model) rather than
+     * the active one: re-embedding the knowledge base into a new collection
+     */
+    public Run start(String name, long skipChunks, LongConsumer onCommitted, KnowledgeBaseIndex.Index target) {
+        return new Run(name, skipChunks, onCommitted, target);
+    }
+
+    public final class Run implements AutoCloseable {
+
+        private final String name;
+        private final long skipChunks;
+        private final LongConsumer onCommitted;
+        // null: the active index when the batch is embedded
+        private final KnowledgeBaseIndex.Index target;
+        private final Semaphore pending = new Semaphore(maxPendingBatches);
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        private final long start = System.nanoTime();
+        private List<String> texts = new ArrayList<>();
+        private List<String> ids = new ArrayList<>();
+        private List<Map<String, Object>> metadatas = new ArrayList<>();
+        private List<String> updateIds = new ArrayList<>();
+        private List<Map<String, Object>> updateMetadatas = new ArrayList<>();
+        private long batchStart;
+        private long chunks;
+        private boolean finished;
+        // Completed batches beyond the committed prefix: first chunk index → end (exclusive)
+        private final TreeMap<Long, Long> completed = new TreeMap<>();
+        private long committed;
+        // Stored chunks of the replaced sources (ID → metadata), and the IDs this run produced
+        private final Map<String, Map<String, Object>> existing = new HashMap<>();
+        private final Set<String> replacedSources = new HashSet<>();
+        private final Set<String> seen = new HashSet<>();
+        private final AtomicLong embedded = new AtomicLong();
+        private long unchanged;
+        private long deleted;
+
+        private Run(String name, long skipChunks, LongConsumer onCommitted, KnowledgeBaseIndex.Index target) {
+            this.name = name;
+            this.skipChunks = skipChunks;
+            this.onCommitted = onCommitted;
+            this.target = target;
+            this.committed = skipChunks;
+            this.batchStart = skipChunks;
+        }
+
+        /**
+         * Declare that this run carries the complete content of a source (chunks with metadata
+         * source_id = sourceId); call before adding its chunks
+         * Chunks already stored with the same ID (content-addressed, see ChunkIds) are not embedded
+         * again, and the stored chunks the run did not produce are deleted once it finishes
+         */
+        public void replace(String sourceId) {
+            if (!replacedSources.add(sourceId)) {
+                return;
+            }
+            Map<String, Object> where = Map.of(SOURCE_ID, sourceId);
+            for (int offset = 0; ; offset += EXISTING_PAGE_SIZE) {
+                List<Map<String, Object>> page = chromaDbService.getChunks(where, List.of("metadatas"),
+                        EXISTING_PAGE_SIZE, offset);
+                for (Map<String, Object> chunk : page) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> metadata = (Map<String, Object>) chunk.get("metadata");
+                    existing.put((String) chunk.get("id"), metadata != null ? metadata : Map.of());
+                }
+                if (page.size() < EXISTING_PAGE_SIZE) {
+                    break;
+                }
+            }
+            log.debug("Ingestion run {}: {} chunk(s) stored for {}", name, existing.size(), sourceId);
+        }
+
+        /**
+         * Count the skipChunks chunks as added without replaying them, for a producer that can start
+         * after them (e.g. paging a collection from an offset); call before the first add
+         */
+        public void seekPastSkipped() {
+            if (chunks == 0) {
+                chunks = skipChunks;
+            }
+        }
+
+        /**
+         * Queue a chunk; blocks while the run has max-pending-batches batches in flight
+         * Fails fast with the first error of an earlier batch
+         */
+        public void add(String text, String id, Map<String, Object> metadata) {
+            throwIfFailed();
+            long index = chunks++;
+            seen.add(id);
+            if (index < skipChunks) {
+                return;
+            }
+            Map<String, Object> stored = existing.get(id);
+            if (stored == null) {
+                texts.add(text);
+                ids.add(id);
+                metadatas.add(metadata);
+            } else {
+                if (!stored.equals(metadata)) {
+                    // Same text, only its position (chunk_index, ...) moved: no need to embed it again
+                    updateIds.add(id);
+                    updateMetadatas.add(metadata);
+                }
+                unchanged++;
+            }
+            // Unchanged chunks still close batches now and then, so that progress keeps advancing
+            if (texts.size() + updateIds.size() >= batchSize || chunks - batchStart >= MAX_BATCH_SPAN * batchSize) {
+                submit();
+            }
+        }
+
+        /**
+         * Chunks added so far (skipped ones included)
+         */
+        public long getChunks() {
+            return chunks;
+        }
+
+        /**
+         * Chunk counts of the run: embedded (new or edited), unchanged (stored already), deleted (stale)
+         */
+        public Map<String, Object> getSummary() {
+            Map<String, Object> summary = new HashMap<>();
+            summary.put("embeddedChunks", embedded.get());
+            summary.put("unchangedChunks", unchanged);
+            summary.put("deletedChunks", deleted);
+            return summary;
+        }
+
+        /**
+         * Stop the run: add() and finish() throw the given reason, batches not started yet are skipped
+         */
+        public void abort(RuntimeException reason) {
+            failure.compareAndSet(null, reason);
+        }
+
+        /**
+         * Flush the last batch, wait until every chunk of the run is upserted, then delete the stale
+         * chunks of the replaced sources
+         *
+         * @return number of chunks in the run (skipped ones included)
+         */
+        public long finish() {
+            if (chunks > batchStart) {
+                submit();
+            }
+            awaitBatches();
+            finished = true;
+            throwIfFailed();
+            deleteStale();
+            log.info("Ingestion run {} finished: {} chunks ({} embedded, {} unchanged, {} deleted) in {} ms", name,
+                    chunks, embedded.get(), unchanged, deleted, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return chunks;
+        }
+
+        @Override
+        public void close() {
+            if (!finished) {
+                // The producer failed: skip the batches not started yet and wait for the running ones
+                failure.compareAndSet(null, new IllegalStateException("Ingestion run " + name + " aborted"));
+                awaitBatches();
+            }
+        }
+
+        private void submit() {
+            Batch batch = new Batch(batchStart, chunks, texts, ids, metadatas, updateIds, updateMetadatas);
+            batchStart = chunks;
+            texts = new ArrayList<>();
+            ids = new ArrayList<>();
+            metadatas = new ArrayList<>();
+            updateIds = new ArrayList<>();
+            updateMetadatas = new ArrayList<>();
+            try {
+                pending.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while queueing ingestion batch", e);
+            }
+            executor.execute(() -> {
+                try {
+                    process(batch);
+                } finally {
+                    pending.release();
+                }
+            });
+        }
+
+        private void process(Batch batch) {
+            if (failure.get() != null) {
+                chunksFailed.increment(batch.texts().size());
+                return;
+            }
+            try {
+                // Embedded and written with the same index, even if the active one changes in between;
+                // waits while a cutover fences writes
+                try (KnowledgeBaseIndex.Write write = knowledgeBaseIndex.beginWrite(target)) {
+                    KnowledgeBaseIndex.Index index = write.index();
+                    if (!batch.texts().isEmpty()) {
+                        List<List<Float>> embeddings = stage(embedSlots, embedQueued, embedDuration,
+                                () -> embeddingService.generateEmbeddings(batch.texts(), index.embeddingModel()));
+                        stage(upsertSlots, upsertQueued, upsertDuration, () -> {
+                            chromaDbService.upsertWithEmbeddings(index.collectionName(), batch.texts(), batch.ids(),
+                                    embeddings, batch.metadatas());
+                            return null;
+                        });
+                        embedded.addAndGet(batch.texts().size());
+                        chunksIngested.increment(batch.texts().size());
+                    }
+                    if (!batch.updateIds().isEmpty()) {
+                        stage(upsertSlots, upsertQueued, upsertDuration, () -> {
+                            chromaDbService.updateMetadatas(index.collectionName(), batch.updateIds(),
+                                    batch.updateMetadatas());
+                            return null;
+                        });
+                    }
+                }
+                chunksUnchanged.increment(batch.end() - batch.first() - batch.texts().size());
+                commit(batch);
+            } catch (RuntimeException e) {
+                chunksFailed.increment(batch.texts().size());
+                if (failure.compareAndSet(null, e)) {
+                    log.error("Ingestion run {} failed", name, e);
+                }
+            }
+        }
+
+        private void commit(Batch batch) {
+            long upTo;
+            synchronized (completed) {
+                completed.put(batch.first(), batch.end());
+                while (!completed.isEmpty() && completed.firstKey() == committed) {
+                    committed = completed.pollFirstEntry().getValue();
+                }
+                upTo = committed;
+            }
+            try {
+                onCommitted.accept(upTo);
+            } catch (RuntimeException e) {
+                log.warn("Ingestion run {} progress callback failed: {}", name, e.getMessage());
+            }
+        }
+
+        private void deleteStale() {
+            List<String> stale = new ArrayList<>();
+            for (String id : existing.keySet()) {
+                if (!seen.contains(id)) {
+                    stale.add(id);
+                }
+            }
+            for (int i = 0; i < stale.size(); i += EXISTING_PAGE_SIZE) {
+                List<String> page = stale.subList(i, Math.min(i + EXISTING_PAGE_SIZE, stale.size()));
+                stage(upsertSlots, upsertQueued, upsertDuration, () -> {
+                    try (KnowledgeBaseIndex.Write write = knowledgeBaseIndex.beginWrite(target)) {
+                        chromaDbService.deleteChunks(write.index().collectionName(), page);
+                    }
+                    return null;
+                });
+                deleted += page.size();
+                chunksDeleted.increment(page.size());
+            }
+        }
+
+        private void awaitBatches() {
+            pending.acquireUninterruptibly(maxPendingBatches);
+            pending.release(maxPendingBatches);
+        }
+
+        private void throwIfFailed() {
+            RuntimeException error = failure.get();
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
+    private static <T> T stage(Semaphore slots, AtomicInteger queued, Timer duration, Supplier<T> work) {
+        queued.incrementAndGet();
+        slots.acquireUninterruptibly();
+        queued.decrementAndGet();
+        try {
+            return duration.record(work);
+        } finally {
+            slots.release();
+        }
+    }
+
+    /**
+     * Chunks [first, end) of a run: the ones to embed and upsert, and the ones whose metadata only
+     * changed; the others are unchanged
+     */
+    private record Batch(long first, long end, List<String> texts, List<String> ids, List<Map<String, Object>> metadatas,
+                         List<String> updateIds, List<Map<String, Object>> updateMetadatas) {
+    }
+}
@@ -0,0 +1,349 @@
+package com.buddy.ui.service;
+
+import com.buddy.ui.model.ExecutionMode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Cheap in-process intent router
+ * Picks RAG-only, tool-only or full-agent execution before any LLM call, so that
+ * small talk skips retrieval and action requests only carry the tools they need.
+ * Keyword rules run first; embedding centroids per intent are consulted only when
+ * no rule fires and the message does not continue a previous tool conversation.
+ * Keywords match whole words ("kim" does not match "kimlik"); a trailing * matches
+ * any suffix, for Turkish inflections ("oluştur*" matches "oluşturur", "oluşturabilir").
+ * The query embedding the centroids were compared with is kept on the route, so
+ * retrieval in the same turn does not embed the message again.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IntentRouter {
+
+    private static final Locale TR = Locale.forLanguageTag("tr");
+
+    private static final List<String> ACCESS_KEYWORDS = List.of(
+            "erişim talebi", "erişim talep*", "erişim iste*", "erişimi iste*", "erişim oluştur*",
+            "portal erişim*", "yetki talebi", "yetki iste*", "access request*");
+
+    private static final List<String> MENTOR_FIND_KEYWORDS = List.of(
+            "bul", "bulur", "bulun", "bulabilir*", "bulmak", "bulmam*", "eşleş*", "arıyorum", "seçiyorum");
+
+    private static final List<String> MENTOR_REQUEST_KEYWORDS = List.of(
+            "istiyorum", "isterim", "görüşmek", "ile görüş*");
+
+    // Being a mentor rather than getting one ("mentor olmak istiyorum")
+    private static final List<String> MENTOR_ROLE_KEYWORDS = List.of(
+            "mentor olmak", "mentor olabilir*", "mentor olmayı", "mentor olarak");
+
+    private static final List<String> ACTION_KEYWORDS = List.of(
+            "oluştur*", "talep et*", "talep aç*", "iste", "istiyorum", "isterim", "yap", "yapar", "yapabilir*");
+
+    private static final List<String> QUESTION_KEYWORDS = List.of(
+            "nedir", "nasıl", "neden", "ne zaman", "nerede", "nereden", "hangi", "hangisi",
+            "kim", "kimdir", "kime", "kimin", "bilgi", "bilgiler", "bilgisi", "bilgilendir*",
+            "açıkla*", "anlat*");
+
+    // A failed centroid computation is started again after this long, not on every turn
+    private static final Duration CENTROID_RETRY_DELAY = Duration.ofSeconds(30);
+
+    private static final Set<String> SMALL_TALK = Set.of(
+            "merhaba", "selam", "selamlar", "günaydın", "iyi günler", "iyi akşamlar",
+            "teşekkürler", "teşekkür ederim", "sağol", "sağ ol", "tamam", "ok", "okey",
+            "nasılsın", "hi", "hello", "hey", "görüşürüz", "hoşça kal");
+
+    private static final Map<String, List<String>> CENTROID_EXAMPLES = Map.of(
+            "RAG", List.of(
+                    "VPN bağlantısını nasıl kurarım?",
+                    "Yıllık izin politikası nedir?",
+                    "Yemek kartı ne zaman yükleniyor?",
+                    "Ofis giriş kartımı nereden alabilirim?",
+                    "Oryantasyon eğitimleri hakkında bilgi verir misin?"),
+            "ACCESS_REQUEST", List.of(
+                    "Jira portalına erişim talebi oluştur",
+                    "Confluence için yetki istiyorum",
+                    "SuccessFactors portalına erişmem gerekiyor, talep açar mısın?"),
+            "MENTOR_MATCHING", List.of(
+                    "Bana bir mentor bulur musun?",
+                    "Deneyimli bir meslektaşla eşleşmek istiyorum",
+                    "Kariyerim için rehberlik edecek birini arıyorum"),
+            "SMALL_TALK", List.of(
+                    "Merhaba, nasılsın?",
+                    "Teşekkürler, çok yardımcı oldun",
+                    "Günaydın"));
+
+    private final EmbeddingService embeddingService;
+
+    @Value("${spring.ai.router.enabled:true}")
+    private boolean enabled;
+
+    @Value("${spring.ai.router.centroids-enabled:true}")
+    private boolean centroidsEnabled;
+
+    @Value("${spring.ai.router.centroid-threshold:0.75}")
+    private double centroidThreshold;
+
+    private final AtomicReference<Centroids> centroids = new AtomicReference<>();
+
+    // Centroids are only comparable with queries embedded by the same model
+    private record Centroids(String model, CompletableFuture<Map<String, float[]>> byIntent, long startedNanos) {
+
+        boolean retryDue() {
+            return byIntent.isCompletedExceptionally()
+                    && System.nanoTime() - startedNanos > CENTROID_RETRY_DELAY.toNanos();
+        }
+    }
+
+    /**
+     * Compute the centroids of the active model at startup rather than on the first turn
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void precomputeCentroids() {
+        if (enabled && centroidsEnabled) {
+            try {
+                getCentroids(embeddingService.currentModel());
+            } catch (RuntimeException e) {
+                // Started again by the first turn that needs them
+                log.warn("Could not start computing intent centroids: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Decide the execution route for a user message
+     *
+     * @param userMessage   The user's message
+     * @param previousRoute Route of the previous AI turn in the same session, may be null
+     */
+    public ChatRoute route(String userMessage, ChatRoute previousRoute) {
+        if (!enabled) {
+            return ChatRoute.fullAgent("router disabled");
+        }
+        String text = normalize(userMessage);
+        List<String> tokens = tokenize(text);
+
+        ChatRoute byRules = routeByRules(text, tokens, previousRoute);
+        if (byRules != null) {
+            return byRules;
+        }
+
+        if (centroidsEnabled) {
+            return routeByCentroid(userMessage);
+        }
+
+        return ChatRoute.fullAgent("no confident intent");
+    }
+
+    private ChatRoute routeByRules(String text, List<String> tokens, ChatRoute previousRoute) {
+        boolean questionWord = containsAny(tokens, QUESTION_KEYWORDS);
+        boolean question = questionWord || text.contains("?");
+        boolean action = containsAny(tokens, ACTION_KEYWORDS);
+
+        if (containsAny(tokens, ACCESS_KEYWORDS)) {
+            return ChatRoute.toolOnly(ChatRoute.ToolGroup.ACCESS_REQUEST, "access keyword");
+        }
+        if (containsAny(tokens, List.of("mentor*"))) {
+            boolean find = containsAny(tokens, MENTOR_FIND_KEYWORDS);
+            // "mentor olmak istiyorum", "mentorluk hakkında bilgi istiyorum": not a matching request
+            if (containsAny(tokens, MENTOR_ROLE_KEYWORDS) || (questionWord && !find)) {
+                return ChatRoute.fullAgent("mentor question");
+            }
+            if (find || containsAny(tokens, MENTOR_REQUEST_KEYWORDS)) {
+                return ChatRoute.toolOnly(ChatRoute.ToolGroup.MENTOR_MATCHING, "mentor keyword");
+            }
+            return ChatRoute.fullAgent("mentor mentioned without action");
+        }
+        if (containsAny(tokens, List.of("erişim*", "portal*")) && action) {
+            return ChatRoute.toolOnly(ChatRoute.ToolGroup.ACCESS_REQUEST, "access action");
+        }
+
+        // Follow-up answers ("Jira", "5 yıl", "hayır") keep the tool conversation going
+        if (previousRoute != null && previousRoute.mode() == ExecutionMode.TOOL_ONLY && !question) {
+            return ChatRoute.toolOnly(previousRoute.toolGroup(), "continuing tool conversation");
+        }
+
+        if (isSmallTalk(text)) {
+            return ChatRoute.direct("small talk");
+        }
+        if (question && !action) {
+            return ChatRoute.ragOnly("question keyword");
+        }
+        return null;
+    }
+
+    /**
+     * Route by the closest intent centroid; the full agent when none is close enough.
+     * Either way the route carries the query embedding for retrieval
+     */
+    private ChatRoute routeByCentroid(String userMessage) {
+        try {
+            String model = embeddingService.currentModel();
+            Map<String, float[]> intentCentroids = getCentroids(model);
+            if (intentCentroids == null) {
+                return ChatRoute.fullAgent("intent centroids not ready");
+            }
+            List<Float> embedding = embeddingService.generateEmbedding(userMessage);
+            ChatRoute.QueryEmbedding queryEmbedding = new ChatRoute.QueryEmbedding(userMessage, model, embedding);
+            float[] query = toArray(embedding);
+
+            String bestIntent = null;
+            double bestScore = -1;
+            for (Map.Entry<String, float[]> entry : intentCentroids.entrySet()) {
+                double score = cosine(query, entry.getValue());
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestIntent = entry.getKey();
+                }
+            }
+
+            log.debug("Centroid routing: best intent {} with score {}", bestIntent, bestScore);
+            if (bestIntent == null || bestScore < centroidThreshold) {
+                return ChatRoute.fullAgent("no confident intent").withQueryEmbedding(queryEmbedding);
+            }
+            String reason = String.format("centroid %s (%.2f)", bestIntent, bestScore);
+            ChatRoute route = switch (bestIntent) {
+                case "RAG" -> ChatRoute.ragOnly(reason);
+                case "ACCESS_REQUEST" -> ChatRoute.toolOnly(ChatRoute.ToolGroup.ACCESS_REQUEST, reason);
+                case "MENTOR_MATCHING" -> ChatRoute.toolOnly(ChatRoute.ToolGroup.MENTOR_MATCHING, reason);
+                case "SMALL_TALK" -> ChatRoute.direct(reason);
+                default -> ChatRoute.fullAgent("no confident intent");
+            };
+            return route.withQueryEmbedding(queryEmbedding);
+        } catch (DeadlineExceededException | ChatTurnCancelledException e) {
+            // The turn is over: don't carry on as the full agent
+            throw e;
+        } catch (Exception e) {
+            log.warn("Centroid routing failed, falling back to full agent: {}", e.getMessage());
+            return ChatRoute.fullAgent("no confident intent");
+        }
+    }
+
+    /**
+     * Centroids of the model, null while they are being computed (or failed)
+     * The intent examples are embedded once per embedding model and averaged per intent, on a thread of
+     * their own so that no turn waits for them; again once the knowledge base is re-embedded with another
+     * model, and after CENTROID_RETRY_DELAY when the computation failed
+     */
+    private Map<String, float[]> getCentroids(String model) {
+        Centroids current = centroids.get();
+        if (current == null || !current.model().equals(model) || current.retryDue()) {
+            Centroids started = new Centroids(model, new CompletableFuture<>(), System.nanoTime());
+            if (centroids.compareAndSet(current, started)) {
+                Thread.ofVirtual().name("intent-centroids").start(() -> computeCentroids(started));
+            }
+            return null;
+        }
+        CompletableFuture<Map<String, float[]>> byIntent = current.byIntent();
+        return byIntent.isDone() && !byIntent.isCompletedExceptionally() ? byIntent.join() : null;
+    }
+
+    private void computeCentroids(Centroids target) {
+        try {
+            Map<String, float[]> byIntent = new HashMap<>();
+            for (Map.Entry<String, List<String>> entry : CENTROID_EXAMPLES.entrySet()) {
+                List<List<Float>> embeddings = embeddingService.generateEmbeddings(entry.getValue(), target.model());
+                byIntent.put(entry.getKey(), average(embeddings));
+            }
+            target.byIntent().complete(byIntent);
+            log.info("Computed intent centroids for {} intents with {}", byIntent.size(), target.model());
+        } catch (RuntimeException e) {
+            log.warn("Computing intent centroids with {} failed, retrying in {}: {}",
+                    target.model(), CENTROID_RETRY_DELAY, e.getMessage());
+            target.byIntent().completeExceptionally(e);
+        }
+    }
+
+    private boolean isSmallTalk(String text) {
+        String stripped = text.replaceAll("[\\p{P}\\p{So}]+", "").trim();
+        return SMALL_TALK.contains(stripped)
+                || (stripped.split(" ").length <= 3 && SMALL_TALK.stream().anyMatch(k -> stripped.startsWith(k + " ")));
+    }
+
+    private static boolean containsAny(List<String> tokens, List<String> keywords) {
+        for (String keyword : keywords) {
+            if (matches(tokens, keyword.split(" "))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the keyword's words occur as consecutive tokens; a word ending in * matches as a prefix
+     */
+    private static boolean matches(List<String> tokens, String[] words) {
+        for (int start = 0; start + words.length <= tokens.size(); start++) {
+            int i = 0;
+            while (i < words.length && matchesWord(tokens.get(start + i), words[i])) {
+                i++;
+            }
+            if (i == words.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesWord(String token, String word) {
+        return word.endsWith("*")
+                ? token.startsWith(word.substring(0, word.length() - 1))
+                : token.equals(word);
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : text.split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(TR).replaceAll("\\s+", " ").trim();
+    }
+
+    private static float[] average(List<List<Float>> embeddings) {
+        float[] sum = new float[embeddings.get(0).size()];
+        for (List<Float> embedding : embeddings) {
+            for (int i = 0; i < sum.length; i++) {
+                sum[i] += embedding.get(i);
+            }
+        }
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] /= embeddings.size();
+        }
+        return sum;
+    }
+
+    private static float[] toArray(List<Float> values) {
+        float[] array = new float[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return -1;
+        }
+        double dot = 0, normA = 0, normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return normA == 0 || normB == 0 ? 0 : dot / (Math.sqrt(normA) * Math.sqrt(normB));
+    }
+}
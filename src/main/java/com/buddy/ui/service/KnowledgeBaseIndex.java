@@ -0,0 +1,256 @@
+package com.buddy.ui.service;
+
+import com.buddy.ui.config.ChromaDbConfig;
+import com.buddy.ui.model.IngestionJob;
+import com.buddy.ui.model.IngestionJobStatus;
+import com.buddy.ui.model.IngestionJobType;
+import com.buddy.ui.repository.IngestionJobRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ChromaDB collection retrieval and ingestion use, with the embedding model its vectors come from
+ * - The active index is the latest succeeded REEMBED job, so a re-embedding job cuts every instance
+ *   over at once by completing; instances pick it up at their next refresh (jobs poll interval)
+ * - The first start records the configured collection and model as the baseline. A changed
+ *   spring.ai.custom-embedding.model then no longer applies silently to a collection built with another
+ *   model: queries keep using the recorded model, with a warning, until a REEMBED job moves the
+ *   knowledge base to the configured one
+ * - Writes to the active index (beginWrite) wait while a REEMBED job cuts over: the job records a
+ *   fence, every instance sees it at its next refresh, and their in-flight writes end within
+ *   fence-grace; only then is the new collection reconciled and made active, so no write lands in
+ *   the previous collection after it was copied. The fence lifts with the refresh that picks up the
+ *   new index (or with the job failing, or its instance dying)
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class KnowledgeBaseIndex {
+
+    public static final String TARGET_COLLECTION = "targetCollection";
+    public static final String MODEL = "model";
+
+    private final IngestionJobRepository ingestionJobRepository;
+    private final ChromaDbConfig chromaDbConfig;
+
+    @Value("${spring.ai.custom-embedding.model:practicus/gemma-300m-hackathon}")
+    private String configuredModel;
+
+    @Value("${spring.rag.jobs.poll-interval:PT2S}")
+    private Duration pollInterval;
+
+    @Value("${spring.rag.reembed.fence-grace:PT1M}")
+    private Duration fenceGrace;
+
+    @Value("${spring.rag.reembed.fence-timeout:PT30M}")
+    private Duration fenceTimeout;
+
+    public record Index(String collectionName, String embeddingModel) {
+    }
+
+    /**
+     * A write in progress, into index; close it once the data is stored
+     */
+    public final class Write implements AutoCloseable {
+
+        private final Index index;
+        private final boolean fenced;
+        private boolean closed;
+
+        private Write(Index index, boolean fenced) {
+            this.index = index;
+            this.fenced = fenced;
+        }
+
+        public Index index() {
+            return index;
+        }
+
+        @Override
+        public void close() {
+            if (fenced && !closed) {
+                closed = true;
+                endWrite();
+            }
+        }
+    }
+
+    private volatile Index active;
+    // Guarded by this: writes wait while fenced; writes in progress to the active index
+    private boolean fenced;
+    private int writes;
+
+    @PostConstruct
+    void start() {
+        try {
+            if (latest().isEmpty()) {
+                recordBaseline();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not record the knowledge base baseline: {}", e.getMessage());
+        }
+        refresh();
+    }
+
+    public Index current() {
+        return active;
+    }
+
+    /**
+     * Start a write into the active index, waiting while a cutover fences writes (up to fence-timeout)
+     * The returned index is used for the whole write: embedding model and collection
+     */
+    public Write beginWrite() {
+        return beginWrite(null);
+    }
+
+    /**
+     * Start a write into target (not fenced, e.g. the collection a re-embedding job fills),
+     * or into the active index when target is null
+     */
+    public Write beginWrite(Index target) {
+        if (target != null) {
+            return new Write(target, false);
+        }
+        long deadline = System.nanoTime() + fenceTimeout.toNanos();
+        synchronized (this) {
+            while (fenced) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new IllegalStateException("Knowledge base cutover still in progress after " + fenceTimeout);
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the knowledge base cutover", e);
+                }
+            }
+            writes++;
+            return new Write(active, true);
+        }
+    }
+
+    /**
+     * Wait, once the cutover fence is recorded, until no instance writes to the active index any more:
+     * the others see the fence within a poll interval and end their in-flight writes within fence-grace;
+     * the writes of this instance are awaited
+     */
+    public void awaitFenced() throws InterruptedException {
+        long deadline = System.nanoTime() + pollInterval.plus(fenceGrace).toNanos();
+        synchronized (this) {
+            fenced = true;
+            while (writes > 0 || System.nanoTime() < deadline) {
+                TimeUnit.NANOSECONDS.timedWait(this, Math.max(deadline - System.nanoTime(), pollInterval.toNanos()));
+            }
+        }
+    }
+
+    /**
+     * Embedding model of spring.ai.custom-embedding.model, the default target of re-embedding
+     */
+    public String getConfiguredModel() {
+        return configuredModel;
+    }
+
+    /**
+     * Collection name new collections are derived from (spring.chromadb.collection-name)
+     */
+    public String getBaseCollectionName() {
+        return chromaDbConfig.getCollectionName();
+    }
+
+    /**
+     * Reload the active index and the write fence; keeps both if the database cannot be read
+     */
+    @Scheduled(initialDelayString = "${spring.rag.jobs.poll-interval:PT2S}",
+               fixedDelayString = "${spring.rag.jobs.poll-interval:PT2S}")
+    public void refresh() {
+        Index index;
+        boolean fence;
+        try {
+            // Fence first: a cutover completing in between is then seen with the new index
+            fence = ingestionJobRepository.existsByTypeAndStatusAndFencedAtIsNotNull(
+                    IngestionJobType.REEMBED, IngestionJobStatus.RUNNING);
+            index = latest().map(KnowledgeBaseIndex::toIndex)
+                    .orElseGet(() -> new Index(chromaDbConfig.getCollectionName(), configuredModel));
+        } catch (RuntimeException e) {
+            if (active == null) {
+                log.warn("Could not read the active knowledge base index, using the configured one: {}", e.getMessage());
+                active = new Index(chromaDbConfig.getCollectionName(), configuredModel);
+            } else {
+                log.debug("Could not refresh the active knowledge base index: {}", e.getMessage());
+            }
+            return;
+        }
+        Index previous;
+        synchronized (this) {
+            if (fence != fenced) {
+                log.info(fence ? "Knowledge base writes fenced for a cutover" : "Knowledge base writes resumed");
+            }
+            previous = active;
+            active = index;
+            fenced = fence;
+            notifyAll();
+        }
+        if (index.equals(previous)) {
+            return;
+        }
+        if (previous == null) {
+            log.info("Knowledge base collection: {} (embedding model {})", index.collectionName(), index.embeddingModel());
+        } else {
+            log.info("Knowledge base cut over from {} ({}) to {} ({})", previous.collectionName(),
+                    previous.embeddingModel(), index.collectionName(), index.embeddingModel());
+        }
+        if (!index.embeddingModel().equals(configuredModel)) {
+            log.warn("Configured embedding model {} differs from model {} of the knowledge base collection {}: "
+                    + "queries keep using {} until a re-embedding job (POST /api/v1/rag/jobs/reembed) moves it",
+                    configuredModel, index.embeddingModel(), index.collectionName(), index.embeddingModel());
+        }
+    }
+
+    private synchronized void endWrite() {
+        writes--;
+        notifyAll();
+    }
+
+    private Optional<IngestionJob> latest() {
+        return ingestionJobRepository.findFirstByTypeAndStatusOrderByCompletedAtDesc(
+                IngestionJobType.REEMBED, IngestionJobStatus.SUCCEEDED);
+    }
+
+    /**
+     * The collection in use before re-embedding existed was built with the configured model
+     */
+    private void recordBaseline() {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put(TARGET_COLLECTION, chromaDbConfig.getCollectionName());
+        payload.put(MODEL, configuredModel);
+        LocalDateTime now = LocalDateTime.now();
+        ingestionJobRepository.save(IngestionJob.builder()
+                .type(IngestionJobType.REEMBED)
+                .status(IngestionJobStatus.SUCCEEDED)
+                .sourceName("baseline")
+                .baseId(chromaDbConfig.getCollectionName())
+                .payload(payload)
+                .startedAt(now)
+                .completedAt(now)
+                .build());
+        log.info("Recorded knowledge base baseline: {} (embedding model {})", chromaDbConfig.getCollectionName(), configuredModel);
+    }
+
+    private static Index toIndex(IngestionJob job) {
+        return new Index((String) job.getPayload().get(TARGET_COLLECTION), (String) job.getPayload().get(MODEL));
+    }
+}
@@ -0,0 +1,155 @@
+package com.buddy.ui.service;
+
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Token-budgeted prompt assembly
+ * Enforces per-section budgets (system, history, retrieved context, tools) using the local
+ * TokenEstimator and trims the lowest-value items first:
+ * 1. retrieved context injected into earlier turns
+ * 2. lowest-ranked retrieved chunks of the current turn
+ * 3. oldest history messages
+ * The system prompt, the current user message and the current tool loop are never trimmed.
+ */
+@Service
+@Slf4j
+@Getter
+public class PromptAssembler {
+
+    /**
+     * Separator between the user's text and the retrieved context in an augmented user message
+     */
+    public static final String RETRIEVED_CONTEXT_MARKER = "\n\nAnswer using the following information:\n";
+
+    @Value("${spring.ai.prompt.budget.system:3000}")
+    private int systemBudget;
+
+    @Value("${spring.ai.prompt.budget.history:1500}")
+    private int historyBudget;
+
+    @Value("${spring.ai.prompt.budget.retrieved-context:1500}")
+    private int retrievedContextBudget;
+
+    @Value("${spring.ai.prompt.budget.tools:1000}")
+    private int toolsBudget;
+
+    /**
+     * Pick retrieved chunks (ordered by relevance) until the retrieved-context budget is used up
+     */
+    public List<String> selectRetrievedContext(List<String> chunks) {
+        List<String> selected = new ArrayList<>();
+        int used = 0;
+        for (String chunk : chunks) {
+            int tokens = TokenEstimator.estimate(chunk);
+            if (used + tokens > retrievedContextBudget && !selected.isEmpty()) {
+                break;
+            }
+            selected.add(chunk);
+            used += tokens;
+        }
+        if (selected.size() < chunks.size()) {
+            log.debug("Retrieved context trimmed from {} to {} chunks (~{} tokens)", chunks.size(), selected.size(), used);
+        }
+        return selected;
+    }
+
+    /**
+     * Apply the budgets to a full message list before it is sent to the LLM
+     */
+    public AssembledPrompt assemble(List<ChatMessage> messages, List<ToolSpecification> toolSpecifications) {
+        List<ChatMessage> system = new ArrayList<>();
+        List<ChatMessage> history = new ArrayList<>();
+        List<ChatMessage> currentTurn = new ArrayList<>();
+
+        int lastUserIndex = -1;
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (messages.get(i) instanceof UserMessage) {
+                lastUserIndex = i;
+                break;
+            }
+        }
+
+        for (int i = 0; i < messages.size(); i++) {
+            ChatMessage message = messages.get(i);
+            if (message instanceof SystemMessage && history.isEmpty() && (lastUserIndex < 0 || i < lastUserIndex)) {
+                system.add(message);
+            } else if (lastUserIndex >= 0 && i >= lastUserIndex) {
+                currentTurn.add(message);
+            } else {
+                history.add(stripRetrievedContext(message));
+            }
+        }
+
+        int systemTokens = TokenEstimator.estimateMessages(system);
+        if (systemTokens > systemBudget) {
+            log.warn("System prompt (~{} tokens) exceeds its budget of {} tokens", systemTokens, systemBudget);
+        }
+
+        int toolTokens = TokenEstimator.estimateTools(toolSpecifications);
+        if (toolTokens > toolsBudget) {
+            log.warn("Tool specifications (~{} tokens) exceed their budget of {} tokens", toolTokens, toolsBudget);
+        }
+
+        int droppedHistory = trimHistory(history);
+        int historyTokens = TokenEstimator.estimateMessages(history);
+        int currentTurnTokens = TokenEstimator.estimateMessages(currentTurn);
+
+        List<ChatMessage> assembled = new ArrayList<>(system.size() + history.size() + currentTurn.size());
+        assembled.addAll(system);
+        assembled.addAll(history);
+        assembled.addAll(currentTurn);
+
+        int total = systemTokens + historyTokens + currentTurnTokens + toolTokens;
+        log.debug("Prompt assembled: system ~{}, history ~{} ({} dropped), current turn ~{}, tools ~{}, total ~{} tokens",
+                systemTokens, historyTokens, droppedHistory, currentTurnTokens, toolTokens, total);
+
+        return new AssembledPrompt(assembled, total, systemTokens, historyTokens, currentTurnTokens, toolTokens, droppedHistory);
+    }
+
+    /**
+     * Drop the oldest history messages until the history fits its budget
+     * Tool results left without the AI message that requested them are dropped as well
+     */
+    private int trimHistory(List<ChatMessage> history) {
+        int dropped = 0;
+        int tokens = TokenEstimator.estimateMessages(history);
+        while (!history.isEmpty()
+                && (tokens > historyBudget || history.get(0) instanceof ToolExecutionResultMessage)) {
+            tokens -= TokenEstimator.estimate(history.remove(0));
+            dropped++;
+        }
+        return dropped;
+    }
+
+    /**
+     * Earlier turns keep only what the user typed; their retrieved context is stale
+     */
+    private ChatMessage stripRetrievedContext(ChatMessage message) {
+        if (message instanceof UserMessage userMessage) {
+            String text = userMessage.singleText();
+            int markerIndex = text.indexOf(RETRIEVED_CONTEXT_MARKER);
+            if (markerIndex >= 0) {
+                return UserMessage.from(text.substring(0, markerIndex));
+            }
+        }
+        return message;
+    }
+
+    /**
+     * Messages after budgeting together with the estimated token count per section
+     */
+    public record AssembledPrompt(List<ChatMessage> messages, int estimatedTokens, int systemTokens,
+                                  int historyTokens, int currentTurnTokens, int toolTokens, int droppedMessages) {
+    }
+}
@@ -0,0 +1,202 @@
+package com.buddy.ui.service;
+
+import com.buddy.ui.model.IngestionJob;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.LongConsumer;
+
+/**
+ * Re-embedding of the knowledge base into a shadow collection, run as a REEMBED ingestion job
+ * - The active collection is paged through (ids, documents, metadatas) and every chunk is added to an
+ *   ingestion run targeting the new collection and model: batched, parallel embedding and upserts,
+ *   progress committed as pages complete, so a cancelled or interrupted job resumes at its offset
+ * - Once paged, writes to the knowledge base are fenced (KnowledgeBaseIndex) and the two collections
+ *   are reconciled by ID, catching up with chunks ingested, updated or deleted meanwhile (offsets shift
+ *   when chunks are deleted); writes resume in the new collection
+ * - The job completing is the cutover (KnowledgeBaseIndex); the previous collection is kept, to roll
+ *   back to or delete by hand
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReembedService {
+
+    public static final String SOURCE_COLLECTION = "sourceCollection";
+    private static final int MAX_COLLECTION_NAME = 63;
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final ChromaDbService chromaDbService;
+    private final EmbeddingService embeddingService;
+    private final KnowledgeBaseIndex knowledgeBaseIndex;
+
+    @Value("${spring.rag.reembed.page-size:500}")
+    private int pageSize;
+
+    @Value("${spring.rag.ingestion.embed-batch-size:32}")
+    private int batchSize;
+
+    /**
+     * Job payload: the active collection, a new collection named after the configured one, and the
+     * target model (the configured one when model is null)
+     */
+    public Map<String, Object> plan(String model) {
+        String base = knowledgeBaseIndex.getBaseCollectionName();
+        String suffix = "-" + LocalDateTime.now().format(SUFFIX);
+        String target = base.substring(0, Math.min(base.length(), MAX_COLLECTION_NAME - suffix.length())) + suffix;
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put(SOURCE_COLLECTION, knowledgeBaseIndex.current().collectionName());
+        payload.put(KnowledgeBaseIndex.TARGET_COLLECTION, target);
+        payload.put(KnowledgeBaseIndex.MODEL, model != null && !model.isBlank() ? model : knowledgeBaseIndex.getConfiguredModel());
+        return payload;
+    }
+
+    /**
+     * Index the job writes into
+     */
+    public KnowledgeBaseIndex.Index target(IngestionJob job) {
+        return new KnowledgeBaseIndex.Index((String) job.getPayload().get(KnowledgeBaseIndex.TARGET_COLLECTION),
+                (String) job.getPayload().get(KnowledgeBaseIndex.MODEL));
+    }
+
+    /**
+     * Page the source collection into the run, starting after the chunks it already committed
+     *
+     * @param onTotal called with the size of the source collection, for progress
+     */
+    public Map<String, Object> reembed(IngestionJob job, IngestionPipeline.Run run, LongConsumer onTotal) {
+        String source = checkSource(job);
+        KnowledgeBaseIndex.Index target = target(job);
+        onTotal.accept(chromaDbService.count(source));
+        log.info("Re-embedding {} into {} with {}, from chunk {}", source, target.collectionName(),
+                target.embeddingModel(), job.getProcessedChunks());
+
+        run.seekPastSkipped();
+        List<String> include = List.of("documents", "metadatas");
+        while (true) {
+            List<Map<String, Object>> page = chromaDbService.getChunks(source, null, include, pageSize,
+                    Math.toIntExact(run.getChunks()));
+            for (Map<String, Object> chunk : page) {
+                run.add((String) chunk.get("text"), (String) chunk.get("id"), metadata(chunk));
+            }
+            if (page.size() < pageSize) {
+                break;
+            }
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("message", "Knowledge base re-embedded");
+        result.put(SOURCE_COLLECTION, source);
+        result.put(KnowledgeBaseIndex.TARGET_COLLECTION, target.collectionName());
+        result.put(KnowledgeBaseIndex.MODEL, target.embeddingModel());
+        return result;
+    }
+
+    /**
+     * Make the target hold exactly the chunks of the source: embed the ones it misses, delete the ones
+     * no longer in the source, copy the metadata changed since they were copied; call once the run is finished and writes are fenced, right before the cutover
+     */
+    public Map<String, Object> reconcile(IngestionJob job) {
+        String source = checkSource(job);
+        KnowledgeBaseIndex.Index target = target(job);
+        Map<String, Map<String, Object>> sourceChunks = metadatas(source);
+        Map<String, Map<String, Object>> targetChunks = metadatas(target.collectionName());
+
+        List<String> missing = new ArrayList<>();
+        List<String> changed = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Object>> chunk : sourceChunks.entrySet()) {
+            if (!targetChunks.containsKey(chunk.getKey())) {
+                missing.add(chunk.getKey());
+            } else if (!Objects.equals(chunk.getValue(), targetChunks.get(chunk.getKey()))) {
+                changed.add(chunk.getKey());
+            }
+        }
+        List<String> removed = new ArrayList<>();
+        for (String id : targetChunks.keySet()) {
+            if (!sourceChunks.containsKey(id)) {
+                removed.add(id);
+            }
+        }
+
+        long added = 0;
+        for (int i = 0; i < missing.size(); i += batchSize) {
+            List<Map<String, Object>> chunks = chromaDbService.getChunks(source,
+                    missing.subList(i, Math.min(i + batchSize, missing.size())), List.of("documents", "metadatas"));
+            if (chunks.isEmpty()) {
+                continue;
+            }
+            List<String> texts = new ArrayList<>(chunks.size());
+            List<String> ids = new ArrayList<>(chunks.size());
+            List<Map<String, Object>> metadatas = new ArrayList<>(chunks.size());
+            for (Map<String, Object> chunk : chunks) {
+                texts.add((String) chunk.get("text"));
+                ids.add((String) chunk.get("id"));
+                metadatas.add(metadata(chunk));
+            }
+            chromaDbService.upsertWithEmbeddings(target.collectionName(), texts, ids,
+                    embeddingService.generateEmbeddings(texts, target.embeddingModel()), metadatas);
+            added += chunks.size();
+        }
+        for (int i = 0; i < changed.size(); i += pageSize) {
+            List<String> ids = changed.subList(i, Math.min(i + pageSize, changed.size()));
+            chromaDbService.updateMetadatas(target.collectionName(), ids, ids.stream().map(sourceChunks::get).toList());
+        }
+        for (int i = 0; i < removed.size(); i += pageSize) {
+            chromaDbService.deleteChunks(target.collectionName(), removed.subList(i, Math.min(i + pageSize, removed.size())));
+        }
+        log.info("Reconciled {} with {}: {} chunk(s) added, {} updated, {} deleted", target.collectionName(), source,
+                added, changed.size(), removed.size());
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("reconciledChunks", added);
+        result.put("reconciledUpdates", changed.size());
+        result.put("reconciledDeletions", removed.size());
+        result.put("collectionChunks", sourceChunks.size());
+        return result;
+    }
+
+    /**
+     * The knowledge base must still be in the collection the job copies
+     */
+    private String checkSource(IngestionJob job) {
+        String source = (String) job.getPayload().get(SOURCE_COLLECTION);
+        String active = knowledgeBaseIndex.current().collectionName();
+        if (!active.equals(source)) {
+            throw new IllegalStateException("The knowledge base moved from " + source + " to " + active
+                    + " since the job was submitted, submit a new re-embedding job");
+        }
+        return source;
+    }
+
+    /**
+     * Metadata of every chunk of the collection, by ID
+     */
+    private Map<String, Map<String, Object>> metadatas(String collectionName) {
+        Map<String, Map<String, Object>> metadatas = new HashMap<>();
+        for (int offset = 0; ; offset += pageSize) {
+            List<Map<String, Object>> page = chromaDbService.getChunks(collectionName, null, List.of("metadatas"),
+                    pageSize, offset);
+            for (Map<String, Object> chunk : page) {
+                metadatas.put((String) chunk.get("id"), metadata(chunk));
+            }
+            if (page.size() < pageSize) {
+                return metadatas;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> metadata(Map<String, Object> chunk) {
+        return (Map<String, Object>) chunk.get("metadata");
+    }
+}
@@ -0,0 +1,90 @@
+package com.buddy.ui.service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Query embeddings and retrieval results shared by the turns of one batch
+ * Bound to the worker thread with bind(); EmbeddingService and RoutingRetrievalAugmentor look it up
+ * through current(). Concurrent turns asking for the same text wait for the first one's call
+ * instead of repeating it, a failed call is not cached
+ */
+public final class RetrievalCache {
+
+    private static final ThreadLocal<RetrievalCache> CURRENT = new ThreadLocal<>();
+
+    private final ConcurrentMap<String, CompletableFuture<List<Float>>> embeddings = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<List<?>>> retrievals = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+
+    public static Optional<RetrievalCache> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+
+    /**
+     * Make this cache current on the calling thread until the returned scope is closed
+     */
+    public Scope bind() {
+        RetrievalCache previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    public List<Float> embedding(String text, Supplier<List<Float>> compute) {
+        return shared(embeddings, text, compute);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> List<T> retrieval(String query, Supplier<List<T>> compute) {
+        return (List<T>) shared(retrievals, query, compute::get);
+    }
+
+    /**
+     * Number of calls answered from the cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    private <T> T shared(ConcurrentMap<String, CompletableFuture<T>> cache, String key, Supplier<T> compute) {
+        CompletableFuture<T> mine = new CompletableFuture<>();
+        CompletableFuture<T> existing = cache.putIfAbsent(key, mine);
+        if (existing != null) {
+            hits.incrementAndGet();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                // The first caller's error was already reported to it, compute again for this caller
+                return compute.get();
+            }
+        }
+        try {
+            T value = compute.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            cache.remove(key, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
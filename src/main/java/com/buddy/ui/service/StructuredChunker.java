@@ -0,0 +1,338 @@
+package com.buddy.ui.service;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Structure-aware chunking of Tika's XHTML output, the structured counterpart of IncrementalChunker
+ * - Headings (h1-h6) open a section: a chunk never spans two sections, and every chunk carries the
+ *   path of headings it belongs to; the heading line starts the section's first chunk
+ * - Paragraphs, list items ("- " prefixed) and table rows (cells joined by " | ") are kept whole on
+ *   lines of their own, and packed into chunks of at most maxTokens estimated tokens (TokenEstimator)
+ * - A block larger than maxTokens is cut at sentence ends, else at spaces
+ * - A chunk starts with the last blocks of the previous chunk of its section that fit in overlapTokens
+ */
+public final class StructuredChunker {
+
+    private static final String SECTION_SEPARATOR = " > ";
+
+    /**
+     * @param sectionPath headings from the outermost to the innermost section (empty before the first heading)
+     */
+    public record Chunk(String text, List<String> sectionPath, int tokens) {
+
+        public String sectionPathText() {
+            return String.join(SECTION_SEPARATOR, sectionPath);
+        }
+    }
+
+    private record Block(String text, int tokens) {
+    }
+
+    private record Section(int level, String title) {
+    }
+
+    private final int maxTokens;
+    private final int overlapTokens;
+    private final Consumer<Chunk> onChunk;
+
+    private final StructureHandler handler = new StructureHandler();
+    private final Deque<Section> sections = new ArrayDeque<>();
+    private final List<Block> blocks = new ArrayList<>();
+    private int tokens;
+    // Blocks of the current chunk besides its heading line
+    private int contentBlocks;
+    private long characters;
+    private int chunks;
+
+    public StructuredChunker(int maxTokens, int overlapTokens, Consumer<Chunk> onChunk) {
+        this.maxTokens = Math.max(1, maxTokens);
+        // A chunk must have room for more than its overlap, or the chunker would not progress
+        this.overlapTokens = Math.max(0, Math.min(overlapTokens, this.maxTokens / 2));
+        this.onChunk = onChunk;
+    }
+
+    /**
+     * SAX handler to parse into (wrapped in a BodyContentHandler, or receiving XHTML body events)
+     */
+    public ContentHandler contentHandler() {
+        return handler;
+    }
+
+    /**
+     * Emit the last chunk; call once after the document is parsed (also when it was truncated)
+     */
+    public void finish() {
+        handler.flushText();
+        flush(false);
+    }
+
+    /**
+     * Characters of text kept (whitespace collapsed)
+     */
+    public long getCharacters() {
+        return characters;
+    }
+
+    public int getChunks() {
+        return chunks;
+    }
+
+    private void heading(int level, String title) {
+        flush(false);
+        while (!sections.isEmpty() && sections.peekLast().level() >= level) {
+            sections.removeLast();
+        }
+        sections.addLast(new Section(level, title));
+        blocks.add(new Block(title, TokenEstimator.estimate(title) + 1));
+        tokens += blocks.get(blocks.size() - 1).tokens();
+    }
+
+    private void block(String text) {
+        int blockTokens = TokenEstimator.estimate(text) + 1;
+        if (blockTokens > maxTokens) {
+            for (String piece : cut(text)) {
+                block(piece);
+            }
+            return;
+        }
+        if (tokens + blockTokens > maxTokens && contentBlocks > 0) {
+            flush(true);
+        }
+        blocks.add(new Block(text, blockTokens));
+        tokens += blockTokens;
+        contentBlocks++;
+    }
+
+    /**
+     * Emit the current chunk (unless it is only a heading) and start the next one, with the overlap
+     * when it continues the same section
+     */
+    private void flush(boolean overlap) {
+        if (contentBlocks > 0) {
+            StringBuilder text = new StringBuilder();
+            for (Block block : blocks) {
+                if (!text.isEmpty()) {
+                    text.append('\n');
+                }
+                text.append(block.text());
+            }
+            List<String> path = sections.stream().map(Section::title).toList();
+            chunks++;
+            onChunk.accept(new Chunk(text.toString(), path, tokens));
+        }
+
+        int keep = blocks.size();
+        int kept = 0;
+        if (overlap && contentBlocks > 0) {
+            while (keep > 1 && kept + blocks.get(keep - 1).tokens() <= overlapTokens) {
+                keep--;
+                kept += blocks.get(keep).tokens();
+            }
+        }
+        List<Block> carried = new ArrayList<>(blocks.subList(keep, blocks.size()));
+        blocks.clear();
+        blocks.addAll(carried);
+        tokens = kept;
+        contentBlocks = 0;
+    }
+
+    /**
+     * Pieces of at most maxTokens: sentences packed together, long sentences cut at spaces,
+     * and words longer than a chunk cut anywhere
+     */
+    private List<String> cut(String text) {
+        List<String> pieces = new ArrayList<>();
+        StringBuilder piece = new StringBuilder();
+        for (String unit : units(text)) {
+            String candidate = piece.isEmpty() ? unit : piece + " " + unit;
+            if (TokenEstimator.estimate(candidate) + 1 <= maxTokens) {
+                piece.setLength(0);
+                piece.append(candidate);
+                continue;
+            }
+            if (!piece.isEmpty()) {
+                pieces.add(piece.toString());
+                piece.setLength(0);
+            }
+            if (TokenEstimator.estimate(unit) + 1 <= maxTokens) {
+                piece.append(unit);
+            } else {
+                // At most 2 characters per token (non-ASCII), so this always fits
+                int size = Math.max(1, (maxTokens - 1) * 2);
+                for (int i = 0; i < unit.length(); i += size) {
+                    pieces.add(unit.substring(i, Math.min(i + size, unit.length())));
+                }
+            }
+        }
+        if (!piece.isEmpty()) {
+            pieces.add(piece.toString());
+        }
+        return pieces;
+    }
+
+    /**
+     * Sentences of the text, or its words when a sentence alone is larger than a chunk
+     */
+    private List<String> units(String text) {
+        List<String> units = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= text.length(); i++) {
+            boolean end = i == text.length()
+                    || (text.charAt(i) == ' ' && isSentenceEnd(text.charAt(i - 1)));
+            if (!end) {
+                continue;
+            }
+            String sentence = text.substring(start, i);
+            if (TokenEstimator.estimate(sentence) + 1 <= maxTokens) {
+                units.add(sentence);
+            } else {
+                for (String word : sentence.split(" ")) {
+                    if (!word.isEmpty()) {
+                        units.add(word);
+                    }
+                }
+            }
+            start = i + 1;
+        }
+        return units;
+    }
+
+    private static boolean isSentenceEnd(char c) {
+        return c == '.' || c == '!' || c == '?';
+    }
+
+    /**
+     * Turns XHTML events into headings and blocks; text is collapsed to single spaces within a block
+     */
+    private final class StructureHandler extends DefaultHandler {
+
+        private final StringBuilder text = new StringBuilder();
+        private boolean pendingSpace;
+        private int heading;
+        private int listDepth;
+        // Inside a list item or table cell, paragraphs do not end the block
+        private int containers;
+        private List<String> row;
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "h1", "h2", "h3", "h4", "h5", "h6" -> {
+                    flushText();
+                    heading = localName.charAt(1) - '0';
+                }
+                case "li" -> {
+                    flushText();
+                    listDepth++;
+                    containers++;
+                }
+                case "tr" -> {
+                    flushText();
+                    row = new ArrayList<>();
+                }
+                case "td", "th" -> {
+                    text.setLength(0);
+                    pendingSpace = false;
+                    containers++;
+                }
+                case "p", "div", "pre", "blockquote", "dt", "dd", "caption", "br" -> boundary();
+                default -> {
+                }
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "h1", "h2", "h3", "h4", "h5", "h6" -> {
+                    String title = take();
+                    heading = 0;
+                    if (!title.isEmpty()) {
+                        heading(localName.charAt(1) - '0', title);
+                    }
+                }
+                case "li" -> {
+                    flushText();
+                    listDepth--;
+                    containers--;
+                }
+                case "td", "th" -> {
+                    containers--;
+                    String cell = take();
+                    if (row != null && !cell.isEmpty()) {
+                        row.add(cell);
+                    }
+                }
+                case "tr" -> {
+                    if (row != null && !row.isEmpty()) {
+                        block(String.join(" | ", row));
+                    }
+                    row = null;
+                }
+                case "p", "div", "pre", "blockquote", "dt", "dd", "caption" -> boundary();
+                default -> {
+                }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            for (int i = start; i < start + length; i++) {
+                char c = ch[i];
+                if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                    pendingSpace = !text.isEmpty();
+                    continue;
+                }
+                if (pendingSpace) {
+                    text.append(' ');
+                    characters++;
+                    pendingSpace = false;
+                }
+                text.append(c);
+                characters++;
+            }
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) {
+            pendingSpace = !text.isEmpty();
+        }
+
+        /**
+         * End of a paragraph-like element: a block of its own, or a space inside a list item or cell
+         */
+        private void boundary() {
+            if (containers > 0 || heading > 0) {
+                pendingSpace = !text.isEmpty();
+            } else {
+                flushText();
+            }
+        }
+
+        private void flushText() {
+            String block = take();
+            if (block.isEmpty()) {
+                return;
+            }
+            if (listDepth > 0) {
+                block = "  ".repeat(listDepth - 1) + "- " + block;
+            }
+            block(block);
+        }
+
+        private String take() {
+            String taken = text.toString();
+            text.setLength(0);
+            pendingSpace = false;
+            return taken;
+        }
+    }
+}
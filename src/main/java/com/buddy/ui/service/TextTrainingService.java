@@ -15,13 +15,22 @@ import java.util.*;
 public class TextTrainingService {
     
     private final DocumentSplitterService documentSplitterService;
-    private final EmbeddingService embeddingService;
-    private final ChromaDbService chromaDbService;
+    private final IngestionPipeline ingestionPipeline;
     
     /**
      * Process and train with plain text
      */
     public Map<String, Object> trainWithText(String text, Map<String, Object> metadata) {
+        return trainWithText(text, metadata, null);
+    }
+    
+    /**
+     * The text replaces the earlier version submitted with the same metadata source_id (or, without one,
+     * the same text)
+     *
+     * @param run ingestion run of a job (resumable, finished by the job), or null to ingest in a run of its own
+     */
+    public Map<String, Object> trainWithText(String text, Map<String, Object> metadata, IngestionPipeline.Run run) {
         try {
             log.info("Processing text (length: {} characters)", text != null ? text.length() : 0);
             
@@ -33,12 +42,9 @@ public class TextTrainingService {
             List<String> chunks = documentSplitterService.splitText(text);
             log.info("Split text into {} chunks", chunks.size());
             
-            // Generate IDs for chunks
-            String baseId = "text-" + System.currentTimeMillis();
-            List<String> ids = new ArrayList<>();
-            for (int i = 0; i < chunks.size(); i++) {
-                ids.add(baseId + "-chunk-" + i);
-            }
+            // Generate content-addressed IDs for chunks
+            String sourceId = sourceId("text", metadata, text);
+            List<String> ids = chunkIds(sourceId, chunks);
             
             // Prepare metadata for each chunk
             Map<String, Object> chunkMetadata = new HashMap<>();
@@ -47,14 +53,17 @@ public class TextTrainingService {
             }
             chunkMetadata.put("type", "text");
             chunkMetadata.put("total_chunks", chunks.size());
+            chunkMetadata.put(IngestionPipeline.SOURCE_ID, sourceId);
             
             // Add to ChromaDB
-            chromaDbService.addDocuments(chunks, ids, chunkMetadata);
+            Map<String, Object> summary = ingest(sourceId, Set.of(sourceId), chunks, ids,
+                    Collections.nCopies(chunks.size(), chunkMetadata), run);
             
             Map<String, Object> result = new HashMap<>();
             result.put("message", "Text processed and added to knowledge base");
             result.put("chunks", chunks.size());
             result.put("totalCharacters", text.length());
+            result.putAll(summary);
             
             log.info("Successfully processed text ({} chunks)", chunks.size());
             
@@ -70,6 +79,17 @@ public class TextTrainingService {
      * Process and train with multiple texts
      */
     public Map<String, Object> trainWithTexts(List<String> texts, Map<String, Object> metadata) {
+        return trainWithTexts(texts, metadata, null);
+    }
+    
+    /**
+     * The texts together replace the earlier version submitted with the same metadata source_id (or,
+     * without one, the same texts)
+     *
+     * @param run ingestion run of a job (resumable, finished by the job), or null to ingest in a run of its own
+     */
+    public Map<String, Object> trainWithTexts(List<String> texts, Map<String, Object> metadata,
+                                              IngestionPipeline.Run run) {
         try {
             log.info("Processing {} texts", texts.size());
             
@@ -81,12 +101,9 @@ public class TextTrainingService {
             List<String> allChunks = documentSplitterService.splitTexts(texts);
             log.info("Split {} texts into {} total chunks", texts.size(), allChunks.size());
             
-            // Generate IDs for chunks
-            String baseId = "texts-" + System.currentTimeMillis();
-            List<String> ids = new ArrayList<>();
-            for (int i = 0; i < allChunks.size(); i++) {
-                ids.add(baseId + "-chunk-" + i);
-            }
+            // Generate content-addressed IDs for chunks
+            String sourceId = sourceId("texts", metadata, String.join("\n", texts));
+            List<String> ids = chunkIds(sourceId, allChunks);
             
             // Prepare metadata
             Map<String, Object> chunkMetadata = new HashMap<>();
@@ -96,14 +113,17 @@ public class TextTrainingService {
             chunkMetadata.put("type", "texts");
             chunkMetadata.put("total_texts", texts.size());
             chunkMetadata.put("total_chunks", allChunks.size());
+            chunkMetadata.put(IngestionPipeline.SOURCE_ID, sourceId);
             
             // Add to ChromaDB
-            chromaDbService.addDocuments(allChunks, ids, chunkMetadata);
+            Map<String, Object> summary = ingest(sourceId, Set.of(sourceId), allChunks, ids,
+                    Collections.nCopies(allChunks.size(), chunkMetadata), run);
             
             Map<String, Object> result = new HashMap<>();
             result.put("message", "Texts processed and added to knowledge base");
             result.put("textCount", texts.size());
             result.put("chunks", allChunks.size());
+            result.putAll(summary);
             
             log.info("Successfully processed {} texts ({} chunks)", texts.size(), allChunks.size());
             
@@ -121,6 +141,16 @@ public class TextTrainingService {
      * Each document will be split into chunks, and each chunk will inherit the document's metadata
      */
     public Map<String, Object> trainWithDocuments(List<Map<String, Object>> documents) {
+        return trainWithDocuments(documents, null);
+    }
+    
+    /**
+     * Each document replaces the earlier version submitted with the same metadata source_id (or, without
+     * one, the same text)
+     *
+     * @param run ingestion run of a job (resumable, finished by the job), or null to ingest in a run of its own
+     */
+    public Map<String, Object> trainWithDocuments(List<Map<String, Object>> documents, IngestionPipeline.Run run) {
         try {
             log.info("Processing {} documents with individual metadata", documents.size());
             
@@ -129,7 +159,10 @@ public class TextTrainingService {
             }
             
             List<String> allTexts = new ArrayList<>();
+            List<String> ids = new ArrayList<>();
             List<Map<String, Object>> allMetadatas = new ArrayList<>();
+            // Documents sharing a source form one source, their chunks are numbered together
+            Map<String, ChunkIds> sources = new LinkedHashMap<>();
             int documentIndex = 0;
             int totalDocumentsProcessed = 0;
             
@@ -148,9 +181,13 @@ public class TextTrainingService {
                 List<String> chunks = documentSplitterService.splitText(text);
                 log.debug("Document {} split into {} chunks", documentIndex, chunks.size());
                 
+                String sourceId = sourceId("docs", metadata, text);
+                ChunkIds chunkIds = sources.computeIfAbsent(sourceId, ChunkIds::new);
+                
                 // For each chunk, use the document's metadata
                 for (int chunkIndex = 0; chunkIndex < chunks.size(); chunkIndex++) {
                     allTexts.add(chunks.get(chunkIndex));
+                    ids.add(chunkIds.next(chunks.get(chunkIndex)));
                     
                     // Create metadata for this chunk - copy original metadata and add chunk info
                     Map<String, Object> chunkMetadata = new HashMap<>();
@@ -161,6 +198,7 @@ public class TextTrainingService {
                     chunkMetadata.put("document_index", documentIndex);
                     chunkMetadata.put("chunk_index", chunkIndex);
                     chunkMetadata.put("total_chunks_in_document", chunks.size());
+                    chunkMetadata.put(IngestionPipeline.SOURCE_ID, sourceId);
                     allMetadatas.add(chunkMetadata);
                 }
                 
@@ -172,21 +210,16 @@ public class TextTrainingService {
                 throw new RuntimeException("No valid texts found in documents");
             }
             
-            // Generate IDs
-            String baseId = "docs-" + System.currentTimeMillis();
-            List<String> ids = new ArrayList<>();
-            for (int i = 0; i < allTexts.size(); i++) {
-                ids.add(baseId + "-chunk-" + i);
-            }
-            
             // Add to ChromaDB with individual metadata for each chunk
-            chromaDbService.addDocumentsWithIndividualMetadata(allTexts, ids, allMetadatas);
+            Map<String, Object> summary = ingest("docs-" + System.currentTimeMillis(), sources.keySet(), allTexts, ids,
+                    allMetadatas, run);
             
             Map<String, Object> result = new HashMap<>();
             result.put("message", "Documents processed and added to knowledge base");
             result.put("documentCount", totalDocumentsProcessed);
             result.put("totalDocumentsReceived", documents.size());
             result.put("chunks", allTexts.size());
+            result.putAll(summary);
             
             log.info("Successfully processed {} documents ({} total chunks)", totalDocumentsProcessed, allTexts.size());
             
@@ -197,5 +230,45 @@ public class TextTrainingService {
             throw new RuntimeException("Failed to process documents: " + e.getMessage(), e);
         }
     }
+    
+    /**
+     * Source ID from the caller's explicit metadata source_id (opting in to replacing what was submitted
+     * with it), else from the content, which only ever replaces the same content
+     * metadata source is just a label: texts sharing it stay separate sources
+     */
+    private static String sourceId(String prefix, Map<String, Object> metadata, String content) {
+        Object key = metadata != null ? metadata.get(IngestionPipeline.SOURCE_ID) : null;
+        return key != null ? ChunkIds.sourceId(prefix, key.toString()) : ChunkIds.contentSourceId(prefix, content);
+    }
+    
+    private static List<String> chunkIds(String sourceId, List<String> chunks) {
+        ChunkIds chunkIds = new ChunkIds(sourceId);
+        List<String> ids = new ArrayList<>(chunks.size());
+        for (String chunk : chunks) {
+            ids.add(chunkIds.next(chunk));
+        }
+        return ids;
+    }
+    
+    /**
+     * Embed and upsert the chunks through the ingestion pipeline (batched, parallel embedding), replacing
+     * the stored chunks of the sources, in the given run or in a run of their own
+     *
+     * @return chunk counts of the own run (embedded, unchanged, deleted), empty in the given run
+     */
+    private Map<String, Object> ingest(String runName, Collection<String> sourceIds, List<String> chunks,
+                                       List<String> ids, List<Map<String, Object>> metadatas, IngestionPipeline.Run run) {
+        if (run != null) {
+            sourceIds.forEach(run::replace);
+            for (int i = 0; i < chunks.size(); i++) {
+                run.add(chunks.get(i), ids.get(i), metadatas.get(i));
+            }
+            return Map.of();
+        }
+        try (IngestionPipeline.Run ownRun = ingestionPipeline.start(runName)) {
+            ingest(runName, sourceIds, chunks, ids, metadatas, ownRun);
+            ownRun.finish();
+            return ownRun.getSummary();
+        }
+    }
 }
-
@@ -0,0 +1,86 @@
+package com.buddy.ui.service;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+
+import java.util.List;
+
+/**
+ * Fast local token estimator for the OpenAI-compatible gateway
+ * Approximates BPE token counts without a vocabulary: ASCII text averages ~4 characters
+ * per token, while Turkish letters and other non-ASCII characters split into more tokens.
+ * Good enough for budgeting; actual counts come back in the API usage block.
+ */
+public final class TokenEstimator {
+
+    private static final int MESSAGE_OVERHEAD = 4;
+    private static final int TOOL_OVERHEAD = 8;
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(CharSequence text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int ascii = 0;
+        int nonAscii = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                ascii++;
+            } else {
+                nonAscii++;
+            }
+        }
+        return (int) Math.ceil(ascii / 4.0 + nonAscii / 2.0);
+    }
+
+    public static int estimate(ChatMessage message) {
+        int tokens = MESSAGE_OVERHEAD;
+        if (message instanceof UserMessage userMessage) {
+            tokens += estimate(userMessage.singleText());
+        } else if (message instanceof SystemMessage systemMessage) {
+            tokens += estimate(systemMessage.text());
+        } else if (message instanceof ToolExecutionResultMessage toolMessage) {
+            tokens += estimate(toolMessage.text());
+        } else if (message instanceof AiMessage aiMessage) {
+            tokens += estimate(aiMessage.text());
+            if (aiMessage.toolExecutionRequests() != null) {
+                for (ToolExecutionRequest request : aiMessage.toolExecutionRequests()) {
+                    tokens += estimate(request.name()) + estimate(request.arguments()) + TOOL_OVERHEAD;
+                }
+            }
+        } else {
+            tokens += estimate(message.toString());
+        }
+        return tokens;
+    }
+
+    public static int estimateMessages(List<ChatMessage> messages) {
+        int tokens = 0;
+        for (ChatMessage message : messages) {
+            tokens += estimate(message);
+        }
+        return tokens;
+    }
+
+    public static int estimateTools(List<ToolSpecification> toolSpecifications) {
+        if (toolSpecifications == null) {
+            return 0;
+        }
+        int tokens = 0;
+        for (ToolSpecification spec : toolSpecifications) {
+            tokens += TOOL_OVERHEAD + estimate(spec.name()) + estimate(spec.description());
+            if (spec.parameters() != null && spec.parameters().properties() != null) {
+                tokens += estimate(spec.parameters().properties().toString());
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,40 @@
+package com.buddy.ui.service;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cancellation signal of one chat turn, set when the client goes away
+ * Outbound calls registered with track() are cancelled with it (which aborts the HTTP exchange
+ * on the JDK transport); later hops see the flag through ChatTurnContext and do not start
+ */
+public final class TurnCancellation {
+
+    private final Set<CompletableFuture<?>> inFlight = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+        for (CompletableFuture<?> call : inFlight) {
+            call.cancel(true);
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Register an outbound call so that cancelling the turn cancels it
+     */
+    public <T> CompletableFuture<T> track(CompletableFuture<T> call) {
+        inFlight.add(call);
+        call.whenComplete((result, error) -> inFlight.remove(call));
+        // Cancelled between the check in the caller and the registration
+        if (cancelled) {
+            call.cancel(true);
+        }
+        return call;
+    }
+}